@@ -0,0 +1,240 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: GIMVBenchmark.java
+ - JMH benchmarks of the GIMV kernels on one synthetic block.
+   The legacy ArrayList kernels, the primitive DenseLongVector kernels and
+   the bitset kernel for dense blocks are measured on the same data.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Text;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GIMVBenchmark {
+    @Param({"16", "64", "256"})
+    public int block_width;
+
+    @Param({"0.01", "0.1", "0.5"})
+    public double density;
+
+    // multiply the block as a mapper reads it: in the SPARSE or BITMAP encoding chosen by
+    // BlockWritable.write(). false multiplies the decoded block. no effect on the legacy benchmarks.
+    @Param({"false", "true"})
+    public boolean encoded;
+
+    private SyntheticBlock data;
+    private final BlockWritable encoded_block = new BlockWritable();
+    private final BlockWritable block = new BlockWritable();
+
+    // legacy inputs
+    private ArrayList<BlockElem<Long>> block_list;
+    private ArrayList<VectorElem<Long>> vector_list;
+    private ArrayList<VectorElem<Long>> vector_list_copy;
+
+    // primitive inputs and scratch buffers
+    private DenseLongVector dense_copy;
+    private DenseLongVector out;
+    private DenseLongVector tmp1;
+    private DenseLongVector tmp2;
+    private final BitsetBlock dense_block = new BitsetBlock();
+    private UnionFind diag_sets;
+    private final VectorWritable out_vector = new VectorWritable();
+    private DenseDoubleVector double_vector;
+    private DenseDoubleVector double_out;
+    private DenseBitstringVector bitstring_vector;
+    private DenseBitstringVector bitstring_out;
+
+    @Setup
+    public void setup() throws IOException {
+        data = new SyntheticBlock(block_width, density, 1234);
+
+        DataOutputBuffer buffer = new DataOutputBuffer();
+        data.block.write(buffer);
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(buffer.getData(), buffer.getLength());
+        encoded_block.readFields(in);
+        block.set(encoded_block);
+
+        block_list = GIMV.parseBlockVal(data.block_text, Long.class);
+        vector_list = GIMV.parseVectorVal(data.vector_text, Long.class);
+        vector_list_copy = GIMV.parseVectorVal(data.vector_text, Long.class);
+
+        dense_copy = new DenseLongVector(block_width);
+        dense_copy.copyFrom(data.dense_vector);
+        out = new DenseLongVector(block_width);
+        tmp1 = new DenseLongVector(block_width);
+        tmp2 = new DenseLongVector(block_width);
+        diag_sets = new UnionFind(block_width);
+
+        double_vector = new DenseDoubleVector(block_width);
+        for (int i = 0; i < block_width; i++) {
+            if (data.dense_vector.isSet(i))
+                double_vector.set(i, 1.0 / (1 + data.dense_vector.get(i)));
+        }
+        double_out = new DenseDoubleVector(block_width);
+
+        bitstring_vector = new DenseBitstringVector(block_width, 32);
+        for (int i = 0; i < block_width; i++)
+            bitstring_vector.initial(i, i);
+        bitstring_out = new DenseBitstringVector(block_width, 32);
+    }
+
+    // the block of the benchmarks. an encoded block decoded by the last call is restored,
+    // so every call starts from the form the mapper reads, and pays the decoding like it.
+    private BlockWritable block() {
+        if (!encoded)
+            return data.block;
+        if (!block.isEncoded())
+            block.set(encoded_block);
+        return block;
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    // text parsing and formatting
+    //////////////////////////////////////////////////////////////////////
+    @Benchmark
+    public ArrayList<VectorElem<Long>> parseVectorVal() {
+        return GIMV.parseVectorVal(data.vector_text, Long.class);
+    }
+
+    @Benchmark
+    public ArrayList<BlockElem<Long>> parseBlockVal() {
+        return GIMV.parseBlockVal(data.block_text, Long.class);
+    }
+
+    @Benchmark
+    public Text formatVectorElemOutput() {
+        return GIMV.formatVectorElemOutput("msi", vector_list);
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    // block-vector multiplication
+    //////////////////////////////////////////////////////////////////////
+    @Benchmark
+    public ArrayList<VectorElem<Long>> minBlockVector() {
+        return GIMV.minBlockVector(block_list, vector_list, block_width, 0);
+    }
+
+    // the legacy 'fast' method on a diagonal block: multiply until the vector does not change, as the old mapper did.
+    @Benchmark
+    public ArrayList<VectorElem<Long>> minBlockVectorFast() {
+        ArrayList<VectorElem<Long>> cur = vector_list;
+        ArrayList<VectorElem<Long>> result = null;
+        for (int i = 0; i < block_width; i++) {
+            result = GIMV.minBlockVector(block_list, cur, block_width, 1);
+            if (result == null || GIMV.compareVectors(cur, result) == 0)
+                break;
+
+            cur = result;
+        }
+        return result;
+    }
+
+    @Benchmark
+    public DenseLongVector minBlockVectorDense() {
+        out.clear();
+        GIMV.minBlockVector(block(), data.dense_vector, out);
+        return out;
+    }
+
+    // the 'fast' method: multiply a diagonal block until the vector does not change.
+    @Benchmark
+    public DenseLongVector minBlockVectorRecursiveDense() {
+        return GIMV.minBlockVectorRecursive(block(), data.dense_vector, tmp1, tmp2, block_width);
+    }
+
+    // the bitset kernel, whatever the density. includes loading the block and sorting the vector.
+    @Benchmark
+    public DenseLongVector minBlockVectorBitset() {
+        out.clear();
+        dense_block.vectorChanged();
+        dense_block.load(block());
+        GIMV.minBitsetBlockVector(dense_block, data.dense_vector, out);
+        return out;
+    }
+
+    // the recursive multiplication, with the bitset kernel if the block is dense enough.
+    @Benchmark
+    public DenseLongVector minBlockVectorRecursiveBitset() {
+        return GIMV.minBlockVectorRecursive(block(), data.dense_vector, tmp1, tmp2, block_width, dense_block);
+    }
+
+    // the 'fast' method in one pass, with union-find over the block.
+    @Benchmark
+    public DenseLongVector minBlockVectorUnionFind() {
+        GIMV.minBlockVectorUnionFind(block(), data.dense_vector, out, diag_sets, tmp1);
+        return out;
+    }
+
+    // the semiring engine: MIN goes to the min kernels, which multiply an encoded block as is,
+    // with the bitset kernel if it is a dense BITMAP block.
+    @Benchmark
+    public DenseLongVector multiplyMin() {
+        out.clear();
+        GIMV.multiply(block(), data.dense_vector, out, LongSemiring.MIN, dense_block);
+        return out;
+    }
+
+    // the generic double path, as PagerankBlock on a 0-1 block.
+    @Benchmark
+    public DenseDoubleVector multiplySumProduct() {
+        double_out.clear();
+        GIMV.multiply(block(), double_vector, double_out, DoubleSemiring.SUM_PRODUCT);
+        return double_out;
+    }
+
+    // the bitwise-OR kernel of HADI, with 32 bitstrings per node.
+    @Benchmark
+    public DenseBitstringVector orBlockVector() {
+        bitstring_out.clear();
+        GIMV.orBlockVector(block(), bitstring_vector, bitstring_out);
+        return bitstring_out;
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    // convergence check
+    //////////////////////////////////////////////////////////////////////
+    @Benchmark
+    public int compareVectors() {
+        return GIMV.compareVectors(vector_list, vector_list_copy);
+    }
+
+    @Benchmark
+    public int compareVectorsDense() {
+        return GIMV.compareVectors(data.dense_vector, dense_copy);
+    }
+
+    @Benchmark
+    public VectorWritable makeLongVectorsDense() {
+        GIMV.makeLongVectors(data.dense_vector, out_vector);
+        return out_vector;
+    }
+}
@@ -0,0 +1,80 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: SyntheticBlock.java
+ - A random 0-1 matrix block and a full vector block, in every format the
+   benchmarks need: the legacy text format, BlockWritable/VectorWritable
+   and DenseLongVector.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+public class SyntheticBlock {
+    public final int block_width;
+
+    public final BlockWritable block = new BlockWritable();
+    public final VectorWritable vector = new VectorWritable();
+    public final DenseLongVector dense_vector;
+
+    // legacy text format, without prefix.
+    // block: (IN-BLOCK-COL IN-BLOCK-ROW)s, vector: (IN-BLOCK-INDEX VALUE)s
+    public final String block_text;
+    public final String vector_text;
+
+    // the elements of the block as "IN-BLOCK-COL IN-BLOCK-ROW", in shuffle order.
+    public final ArrayList<String> prep_values = new ArrayList<String>();
+
+    // every (row, col) is set with probability density, and at least one element is set.
+    // the vector is full, with values in [0, block_width * 16).
+    public SyntheticBlock(int block_width, double density, long seed) {
+        this.block_width = block_width;
+        Random rand = new Random(seed);
+
+        // the block is sorted by col, as MatvecPrep writes it.
+        StringBuilder sb = new StringBuilder();
+        for (int col = 0; col < block_width; col++) {
+            for (int row = 0; row < block_width; row++) {
+                if (rand.nextDouble() < density || (col == block_width - 1 && row == block_width - 1 && block.nnz == 0)) {
+                    block.add(row, col);
+                    if (sb.length() > 0)
+                        sb.append(' ');
+                    sb.append(col).append(' ').append(row);
+                    prep_values.add("" + col + " " + row);
+                }
+            }
+        }
+        block_text = sb.toString();
+        Collections.shuffle(prep_values, rand);
+
+        sb.setLength(0);
+        for (int i = 0; i < block_width; i++) {
+            long val = rand.nextInt(block_width * 16);
+            vector.add(i, val);
+            if (sb.length() > 0)
+                sb.append(' ');
+            sb.append(i).append(' ').append(val);
+        }
+        vector_text = sb.toString();
+
+        dense_vector = new DenseLongVector(block_width);
+        dense_vector.load(vector);
+    }
+}
@@ -0,0 +1,151 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: MatvecPrepBenchmark.java
+ - JMH benchmarks of the MatvecPrep hot paths for one block: parsing the
+   edge lines in MapStage1, sorting the serialized MvPrepKeys as the shuffle
+   does, and streaming the sorted values through RedStage1.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus.matvec;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reporter;
+import org.openjdk.jmh.annotations.*;
+
+import pegasus.MatVecWritable;
+import pegasus.SyntheticBlock;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatvecPrepBenchmark {
+    @Param({"16", "64", "256"})
+    public int block_width;
+
+    @Param({"0.01", "0.1", "0.5"})
+    public double density;
+
+    private final MvPrepKey.Comparator key_comparator = new MvPrepKey.Comparator();
+    private final MatvecPrep.MapStage1 mapper = new MatvecPrep.MapStage1();
+    private final MatvecPrep.RedStage1 reducer = new MatvecPrep.RedStage1();
+    private final MvPrepKey block_key = new MvPrepKey();
+
+    // edge lines "ROWID   TAB   COLID" of the block
+    private Text[] edge_lines;
+    private final LongWritable line_offset = new LongWritable();
+
+    // serialized keys in shuffle order
+    private byte[] key_bytes;
+    private Integer[] shuffled_offsets;
+    private Integer[] offsets;
+
+    // values in sorted order
+    private final ArrayList<MvPrepValue> sorted_values = new ArrayList<MvPrepValue>();
+
+    private final OutputCollector<LongWritable, MatVecWritable> sink = new OutputCollector<LongWritable, MatVecWritable>() {
+        public void collect(LongWritable key, MatVecWritable value) {
+            last_nnz = value.getBlock().nnz;
+        }
+    };
+    private int last_nnz;
+
+    private final OutputCollector<MvPrepKey, MvPrepValue> map_sink = new OutputCollector<MvPrepKey, MvPrepValue>() {
+        public void collect(MvPrepKey key, MvPrepValue value) {
+            map_count++;
+        }
+    };
+    private int map_count;
+
+    @Setup
+    public void setup() throws IOException {
+        SyntheticBlock data = new SyntheticBlock(block_width, density, 1234);
+        DataOutputBuffer buf = new DataOutputBuffer();
+        MvPrepKey key = new MvPrepKey();
+
+        edge_lines = new Text[data.prep_values.size()];
+        shuffled_offsets = new Integer[data.prep_values.size()];
+        for (int i = 0; i < shuffled_offsets.length; i++) {
+            // "IN-BLOCK-COL IN-BLOCK-ROW"
+            String[] tokens = data.prep_values.get(i).split(" ");
+            edge_lines[i] = new Text(tokens[1] + "\t" + tokens[0]);
+            key.set(0, 0, Integer.parseInt(tokens[0]), Integer.parseInt(tokens[1]));
+            shuffled_offsets[i] = buf.getLength();
+            key.write(buf);
+        }
+        key_bytes = Arrays.copyOf(buf.getData(), buf.getLength());
+        offsets = new Integer[shuffled_offsets.length];
+
+        for (int k = 0; k < data.block.nnz; k++) {
+            MvPrepValue value = new MvPrepValue();
+            value.setBinary(data.block.cols[k], data.block.rows[k]);
+            sorted_values.add(value);
+        }
+
+        JobConf conf = new JobConf(false);
+        conf.set("block_size", "" + block_width);
+        conf.set("matrix_row", "" + block_width);
+        conf.set("makesym", "0");
+        mapper.configure(conf);
+
+        block_key.set(0, 0, 0, 0);
+        reducer.configure(new JobConf(false));
+    }
+
+    // parse the edge lines of a block into MvPrepKey/MvPrepValue, as MapStage1 does.
+    @Benchmark
+    public int mapEdges() throws IOException {
+        map_count = 0;
+        for (Text line : edge_lines)
+            mapper.map(line_offset, line, map_sink, Reporter.NULL);
+        return map_count;
+    }
+
+    // sort the serialized keys of a block with the raw comparator, as the shuffle does.
+    @Benchmark
+    public Integer[] sortKeys() {
+        System.arraycopy(shuffled_offsets, 0, offsets, 0, offsets.length);
+        Arrays.sort(offsets, new Comparator<Integer>() {
+            public int compare(Integer o1, Integer o2) {
+                return key_comparator.compare(key_bytes, o1, 24, key_bytes, o2, 24);
+            }
+        });
+        return offsets;
+    }
+
+    // stream the sorted values of a block into a BlockWritable.
+    @Benchmark
+    public int buildBlock() throws IOException {
+        final Iterator<MvPrepValue> values = sorted_values.iterator();
+        reducer.reduce(block_key, values, sink, Reporter.NULL);
+        return last_nnz;
+    }
+}
@@ -0,0 +1,11 @@
+# Program : run_blocklayout.sh
+# Description : Run BlockLayoutGen which generates variable-size block boundaries from the node degrees.
+if [ $# -ne 6 ]; then
+	 echo 1>&2 Usage: $0 [input HDFS edge path] [output HDFS layout path] [#_of_nodes] [max block width] [edges per block] [#_of_reducers]
+	 echo 1>&2   Ex: $0 ya_edge ya_layout 1413511390 65536 100000 100
+	 exit 127
+fi
+
+hadoop dfs -rmr $2
+
+hadoop jar Pegasus-1.2-SNAPSHOT.jar pegasus.matvec.BlockLayoutGen $*
@@ -11,40 +11,47 @@ if test $status -ne 0 ; then
 fi
 
 
-if [ $# -ne 6 ]; then
-	 echo 1>&2 Usage: $0 [#_of_nodes] [#_of_reducers] [HDFS edge_file_path] [block_width]
+if [ $# -lt 6 ] || [ $# -gt 8 ]; then
+	 echo 1>&2 Usage: $0 [#_of_nodes] [#_of_reducers] [HDFS edge_file_path] [block_width] [max_convergence] [max_iters] [frontier] [resume]
 	 echo 1>&2 [#_of_nodes] : number of nodes in the graph
 	 echo 1>&2 [#_of_reducers] : number of reducers to use in hadoop
 	 echo 1>&2 [HDFS edge_file_path] : HDFS directory where edge file is located
 	 echo 1>&2 [block_width] : block width. usually set to 16.
 	 echo 1>&2 [max_convergence] : max number of active vertices for convergence. usually 0.
 	 echo 1>&2 [max_iters] : max number of iterations before convergence.
+	 echo 1>&2 [frontier] : optional. \"frontier\" multiplies only the blocks changed in the last iteration.
+	 echo 1>&2 [resume] : optional. \"resume\" continues an interrupted run from its last completed iteration,
+	 echo 1>&2            with the same arguments. Steps 1 and 2 are skipped, and the intermediate data is kept.
 	 echo 1>&2    ex: $0 6 3 cc_edge 16 0 1024
 	 exit 127
 fi
 
-#### Step 1. Generate Init Vector
-hadoop dfs -rmr cc_initvector
-hadoop jar Pegasus-1.2-SNAPSHOT.jar pegasus.ConCmptIVGen cc_initvector $1 $2
-
-#### Step 2. Run mv_prep
-hadoop dfs -rmr cc_iv_block
-hadoop dfs -rmr cc_edge_block
-./run_mvprep.sh cc_initvector cc_iv_block $1 $4 $2 msc makesym
-hadoop dfs -rmr cc_initvector
-
-./run_mvprep.sh $3 cc_edge_block $1 $4 $2 null makesym
+options=""
+resume=0
+for opt in $7 $8; do
+	if [ "$opt" = "resume" ]; then
+		resume=1
+	fi
+	options="$options $opt"
+done
+
+if [ $resume -eq 0 ]; then
+	#### Step 1. Generate Init Vector in block form
+	hadoop dfs -rmr cc_iv_block
+	hadoop jar Pegasus-1.2-SNAPSHOT.jar pegasus.ConCmptIVGen cc_iv_block $1 $2 $4
+
+	#### Step 2. Run mv_prep
+	hadoop dfs -rmr cc_edge_block
+	./run_mvprep.sh $3 cc_edge_block $1 $4 $2 null makesym
+
+	hadoop dfs -rmr concmpt_tempbm
+	hadoop dfs -rmr concmpt_nextbm
+	hadoop dfs -rmr concmpt_output
+fi
 
 #### Step 3. Run pegasus.ConCmptBlock
-rm -rf concmpt_output_temp
 hadoop dfs -rmr concmpt_curbm
-hadoop dfs -rmr concmpt_tempbm
-hadoop dfs -rmr concmpt_nextbm
-hadoop dfs -rmr concmpt_output
 hadoop dfs -rmr concmpt_summaryout
 hadoop dfs -rmr concmpt_curbm_unfold
 
-hadoop jar Pegasus-1.2-SNAPSHOT.jar pegasus.ConCmptBlock cc_edge_block cc_iv_block concmpt_tempbm concmpt_nextbm concmpt_output $1 $2 fast $4 $5 $6
-
-rm -rf concmpt_output_temp
-
+hadoop jar Pegasus-1.2-SNAPSHOT.jar pegasus.ConCmptBlock cc_edge_block cc_iv_block concmpt_tempbm concmpt_nextbm concmpt_output $1 $2 fast $4 $5 $6 $options
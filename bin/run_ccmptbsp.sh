@@ -0,0 +1,26 @@
+# Program : run_ccmptbsp.sh
+# Description : Run HCC-BLOCK with long-lived BSP workers, which keep the edge blocks in memory.
+
+if [ $# -ne 6 ] && [ $# -ne 7 ]; then
+	 echo 1>&2 Usage: $0 [#_of_nodes] [#_of_workers] [HDFS edge_file_path] [block_width] [max_convergence] [max_iters] [local]
+	 echo 1>&2 [#_of_nodes] : number of nodes in the graph
+	 echo 1>&2 [#_of_workers] : number of workers. they run at once, one map slot each.
+	 echo 1>&2 [HDFS edge_file_path] : HDFS directory where edge file is located
+	 echo 1>&2 [block_width] : block width. usually set to 16.
+	 echo 1>&2 [max_convergence] : max number of active vertices for convergence. usually 0.
+	 echo 1>&2 [max_iters] : max number of iterations before convergence.
+	 echo 1>&2 [local] : optional. \"local\" runs the workers as processes on this machine.
+	 echo 1>&2    ex: $0 6 3 cc_edge 16 0 1024
+	 exit 127
+fi
+
+#### Step 1. Run mv_prep
+hadoop dfs -rmr cc_edge_block
+./run_mvprep.sh $3 cc_edge_block $1 $4 $2 null makesym
+
+#### Step 2. Run pegasus.ConCmptBSP
+hadoop dfs -rmr concmpt_curbm
+hadoop dfs -rmr concmpt_summaryout
+hadoop dfs -rmr concmpt_bsp_workers
+
+hadoop jar Pegasus-1.2-SNAPSHOT.jar pegasus.ConCmptBSP cc_edge_block $1 $2 fast $4 $5 $6 $7
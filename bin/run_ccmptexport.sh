@@ -0,0 +1,12 @@
+# Program : run_ccmptexport.sh
+# Description : Export concmpt_curbm and concmpt_summaryout to a local file for memory-mapped lookups.
+
+if [ $# -ne 2 ]; then
+	 echo 1>&2 Usage: $0 [#_of_nodes] [local_output_file]
+	 echo 1>&2 [#_of_nodes] : number of nodes in the graph
+	 echo 1>&2 [local_output_file] : the store, read with pegasus.ComponentStore
+	 echo 1>&2    ex: $0 6 concmpt.store
+	 exit 127
+fi
+
+hadoop jar Pegasus-1.2-SNAPSHOT.jar pegasus.ConCmptExport concmpt_curbm concmpt_summaryout $2 $1
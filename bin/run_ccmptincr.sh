@@ -0,0 +1,47 @@
+# Program : run_ccmptincr.sh
+# Description : Add a batch of edges to the connected components computed by run_ccmptblk.sh,
+#               without recomputing the whole graph.
+
+which hadoop > /dev/null
+status=$?
+if test $status -ne 0 ; then
+	echo ""
+	echo "Hadoop is not installed in the system."
+	echo "Please install Hadoop and make sure the hadoop binary is accessible."
+	exit 127
+fi
+
+
+if [ $# -ne 6 ]; then
+	 echo 1>&2 Usage: $0 [#_of_nodes] [#_of_reducers] [HDFS delta_edge_file_path] [block_width] [max_convergence] [max_iters]
+	 echo 1>&2 [#_of_nodes] : number of nodes in the graph, including the new nodes
+	 echo 1>&2 [#_of_reducers] : number of reducers to use in hadoop
+	 echo 1>&2 [HDFS delta_edge_file_path] : HDFS directory where the new edges are located
+	 echo 1>&2 [block_width] : block width. must be the same as the previous run.
+	 echo 1>&2 [max_convergence] : max number of active vertices for convergence. usually 0.
+	 echo 1>&2 [max_iters] : max number of iterations before convergence.
+	 echo 1>&2    ex: $0 6 3 cc_delta_edge 16 0 1024
+	 echo 1>&2 cc_edge_block and cc_iv_block must be kept from the previous run.
+	 exit 127
+fi
+
+#### Step 1. Run mv_prep on the new edges
+hadoop dfs -rmr cc_delta_block
+./run_mvprep.sh $3 cc_delta_block $1 $4 $2 null makesym
+
+#### Step 2. Run pegasus.ConCmptBlock from the converged vector
+hadoop dfs -rmr concmpt_curbm
+hadoop dfs -rmr concmpt_tempbm
+hadoop dfs -rmr concmpt_nextbm
+hadoop dfs -rmr concmpt_output
+hadoop dfs -rmr concmpt_summaryout
+hadoop dfs -rmr concmpt_curbm_unfold
+
+hadoop jar Pegasus-1.2-SNAPSHOT.jar pegasus.ConCmptBlock cc_edge_block cc_iv_block concmpt_tempbm concmpt_nextbm concmpt_output $1 $2 fast $4 $5 $6 incremental cc_delta_block || exit 1
+
+#### Step 3. Add the new edge blocks to the edge matrix for the next batch
+batch=`date +%Y%m%d%H%M%S`
+for f in `hadoop dfs -ls cc_delta_block | grep -o 'part-[0-9]*$'`; do
+	hadoop dfs -mv cc_delta_block/$f cc_edge_block/delta-$batch-$f
+done
+hadoop dfs -rmr cc_delta_block
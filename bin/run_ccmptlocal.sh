@@ -0,0 +1,20 @@
+# Program : run_ccmptlocal.sh
+# Description : Run HCC-BLOCK in a single process, for graphs that fit in memory.
+
+if [ $# -ne 6 ] && [ $# -ne 7 ]; then
+	 echo 1>&2 Usage: $0 [#_of_nodes] [#_of_threads] [edge_file_path] [block_width] [max_convergence] [max_iters] [csr]
+	 echo 1>&2 [#_of_nodes] : number of nodes in the graph
+	 echo 1>&2 [#_of_threads] : number of worker threads
+	 echo 1>&2 [edge_file_path] : directory or file where edge file is located
+	 echo 1>&2 [block_width] : block width. usually set to 16.
+	 echo 1>&2 [max_convergence] : max number of active vertices for convergence. usually 0.
+	 echo 1>&2 [max_iters] : max number of iterations before convergence.
+	 echo 1>&2 [csr] : optional. \"csr\" if edge_file_path is a local CSR file made by run_csrconvert.sh.
+	 echo 1>&2    ex: $0 6 4 cc_edge 16 0 1024
+	 exit 127
+fi
+
+hadoop dfs -rmr concmpt_curbm
+hadoop dfs -rmr concmpt_summaryout
+
+hadoop jar Pegasus-1.2-SNAPSHOT.jar pegasus.ConCmptLocal $3 $1 $2 fast $4 $5 $6 $7
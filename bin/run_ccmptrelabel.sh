@@ -0,0 +1,20 @@
+# Program : run_ccmptrelabel.sh
+# Description : Run HCC-BLOCK on a graph relabeled by decreasing degree, and restore the original node ids.
+
+if [ $# -ne 6 ] && [ $# -ne 7 ]; then
+	 echo 1>&2 Usage: $0 [#_of_nodes] [#_of_reducers] [HDFS edge_file_path] [block_width] [max_convergence] [max_iters] [frontier]
+	 echo 1>&2 The arguments are the same as run_ccmptblk.sh.
+	 echo 1>&2    ex: $0 6 3 cc_edge 16 0 1024
+	 exit 127
+fi
+
+#### Step 1. Relabel the nodes
+hadoop dfs -rmr cc_edge_relabeled
+hadoop dfs -rmr cc_relabel_map
+hadoop jar Pegasus-1.2-SNAPSHOT.jar pegasus.matvec.NodeRelabel $3 cc_edge_relabeled cc_relabel_map $1 $2
+
+#### Step 2. Run HCC-BLOCK on the relabeled graph
+./run_ccmptblk.sh $1 $2 cc_edge_relabeled $4 $5 $6 $7
+
+#### Step 3. Restore the original node ids
+hadoop jar Pegasus-1.2-SNAPSHOT.jar pegasus.ConCmptRestoreIds cc_relabel_map $2
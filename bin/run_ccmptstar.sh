@@ -0,0 +1,20 @@
+# Program : run_ccmptstar.sh
+# Description : Run connected components with Large-Star/Small-Star rounds, which need O(log n) rounds.
+
+if [ $# -ne 4 ]; then
+	 echo 1>&2 Usage: $0 [#_of_nodes] [#_of_reducers] [edge_file_path] [max_iters]
+	 echo 1>&2 [#_of_nodes] : number of nodes in the graph
+	 echo 1>&2 [#_of_reducers] : number of reducers to use in hadoop
+	 echo 1>&2 [edge_file_path] : HDFS directory where edge file is located
+	 echo 1>&2 [max_iters] : max number of rounds before convergence.
+	 echo 1>&2    ex: $0 6 3 cc_edge 1024
+	 exit 127
+fi
+
+hadoop dfs -rmr concmpt_star_cur
+hadoop dfs -rmr concmpt_star_temp
+hadoop dfs -rmr concmpt_star_next
+hadoop dfs -rmr concmpt_curbm
+hadoop dfs -rmr concmpt_summaryout
+
+hadoop jar Pegasus-1.2-SNAPSHOT.jar pegasus.ConCmptStar $3 concmpt_star_cur concmpt_star_temp concmpt_star_next $1 $2 $4
@@ -0,0 +1,14 @@
+# Program : run_csrconvert.sh
+# Description : Convert an edge file to a local binary CSR file, which the local tools memory-map.
+
+if [ $# -ne 4 ]; then
+	 echo 1>&2 Usage: $0 [edge_file_path] [local_output_file] [#_of_nodes] [makesym or nosym]
+	 echo 1>&2 [edge_file_path] : directory or file where edge file is located
+	 echo 1>&2 [local_output_file] : the CSR file
+	 echo 1>&2 [#_of_nodes] : number of nodes in the graph
+	 echo 1>&2 [makesym or nosym] : makesym stores every edge in both directions.
+	 echo 1>&2    ex: $0 cc_edge cc_edge.csr 6 makesym
+	 exit 127
+fi
+
+hadoop jar Pegasus-1.2-SNAPSHOT.jar pegasus.CsrConvert $1 $2 $3 $4
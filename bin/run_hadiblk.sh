@@ -0,0 +1,36 @@
+# Program : run_hadiblk.sh
+# Description : Run HADI-BLOCK, a block version of HADI
+
+which hadoop > /dev/null
+status=$?
+if test $status -ne 0 ; then
+	echo ""
+	echo "Hadoop is not installed in the system."
+	echo "Please install Hadoop and make sure the hadoop binary is accessible."
+	exit 127
+fi
+
+
+if [ $# -ne 6 ]; then
+	 echo 1>&2 Usage: $0 [#_of_nodes] [#_of_reducers] [HDFS edge_file_path] [block_width] [#_of_bitstrings] [max_iters]
+	 echo 1>&2 [#_of_nodes] : number of nodes in the graph
+	 echo 1>&2 [#_of_reducers] : number of reducers to use in hadoop
+	 echo 1>&2 [HDFS edge_file_path] : HDFS directory where edge file is located
+	 echo 1>&2 [block_width] : block width. usually set to 16.
+	 echo 1>&2 [#_of_bitstrings] : number of Flajolet-Martin bitstrings per node. usually set to 32.
+	 echo 1>&2 [max_iters] : max number of hops before convergence.
+	 echo 1>&2    ex: $0 6 3 hd_edge 16 32 1024
+	 exit 127
+fi
+
+#### Step 1. Run mv_prep
+hadoop dfs -rmr hd_edge_block
+./run_mvprep.sh $3 hd_edge_block $1 $4 $2 null makesym
+
+#### Step 2. Run pegasus.HadiBlock
+hadoop dfs -rmr hd_curbm
+hadoop dfs -rmr hd_tempbm
+hadoop dfs -rmr hd_nextbm
+hadoop dfs -rmr hd_output
+
+hadoop jar Pegasus-1.2-SNAPSHOT.jar pegasus.HadiBlock hd_edge_block hd_curbm hd_tempbm hd_nextbm hd_output $1 $2 $4 $5 0 $6
@@ -1,9 +1,10 @@
 # Program : run_mvprep.sh
 # Description : Run MatvecPrep which preprocess normal edge files or vector files to block forms.
-if [ $# -ne 7 ]; then
-	 echo 1>&2 Usage: $0 [input HDFS path] [output HDFS path] [#_of_rows] [block size] [#_of_reducers] [out_prefix or null] [makesym or nosym]
+if [ $# -ne 7 ] && [ $# -ne 8 ]; then
+	 echo 1>&2 Usage: $0 [input HDFS path] [output HDFS path] [#_of_rows] [block size] [#_of_reducers] [out_prefix or null] [makesym or nosym] [block layout path]
 	 echo 1>&2   Ex1: $0 ya_edge ya_blockedge 1413511390 32 100 null makesym
 	 echo 1>&2   Ex2: $0 mv_edge mv_outedge 5 2 3 msc nosym
+	 echo 1>&2   Ex3: $0 ya_edge ya_blockedge 1413511390 65536 100 null makesym ya_layout
 	 exit 127
 fi
 
@@ -0,0 +1,45 @@
+# Program : run_prblk.sh
+# Description : Run PageRank-BLOCK, a block version of PageRank
+
+which hadoop > /dev/null
+status=$?
+if test $status -ne 0 ; then
+	echo ""
+	echo "Hadoop is not installed in the system."
+	echo "Please install Hadoop and make sure the hadoop binary is accessible."
+	exit 127
+fi
+
+
+if [ $# -ne 5 ] && [ $# -ne 6 ]; then
+	 echo 1>&2 Usage: $0 [#_of_nodes] [#_of_reducers] [HDFS edge_file_path] [block_width] [max_iters] [mixing_c]
+	 echo 1>&2 [#_of_nodes] : number of nodes in the graph
+	 echo 1>&2 [#_of_reducers] : number of reducers to use in hadoop
+	 echo 1>&2 [HDFS edge_file_path] : HDFS directory where edge file is located
+	 echo 1>&2 [block_width] : block width. usually set to 16.
+	 echo 1>&2 [max_iters] : max number of iterations before convergence.
+	 echo 1>&2 [mixing_c] : optional. probability to follow an edge. default 0.85.
+	 echo 1>&2    ex: $0 6 3 pr_edge 16 1024
+	 exit 127
+fi
+
+MIXING=""
+if [ $# -eq 6 ]; then
+	MIXING="mixing $6"
+fi
+
+#### Step 1. Column-normalize the edges
+hadoop dfs -rmr pr_edge_norm
+hadoop jar Pegasus-1.2-SNAPSHOT.jar pegasus.PagerankPrep $3 pr_edge_norm $2
+
+#### Step 2. Run mv_prep
+hadoop dfs -rmr pr_edge_block
+./run_mvprep.sh pr_edge_norm pr_edge_block $1 $4 $2 null nosym
+
+#### Step 3. Run pegasus.PagerankBlock
+hadoop dfs -rmr pr_curbm
+hadoop dfs -rmr pr_tempbm
+hadoop dfs -rmr pr_nextbm
+hadoop dfs -rmr pr_vector
+
+hadoop jar Pegasus-1.2-SNAPSHOT.jar pegasus.PagerankBlock pr_edge_block pr_curbm pr_tempbm pr_nextbm pr_vector $1 $2 $4 $5 $MIXING
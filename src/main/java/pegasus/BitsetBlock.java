@@ -0,0 +1,196 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: BitsetBlock.java
+ - A dense 0-1 block as one bitset of rows per column, and the scratch of the
+   bitset kernel of GIMV. The bitsets cover the bounding box of the block and
+   every column starts at a word boundary.
+   The kernel visits the columns by increasing vector value, so the first value
+   reaching a row is its minimum. The order is computed once per vector: call
+   vectorChanged() whenever the vector passed to the kernel is modified.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+public class BitsetBlock {
+    // blocks with at least this fraction of their bounding box set use the bitset kernel.
+    public static final double DENSITY_THRESHOLD = 1.0 / 16;
+
+    public int min_col;
+    public int num_cols;
+    public int min_row;
+    public int num_rows;
+    public int words;               // per column
+    public int num_active_rows;     // rows with at least one element
+    public long[] bits = new long[0];
+    public long[] done = new long[0];
+
+    // the defined indices of the vector, by increasing value.
+    private DenseLongVector order_vector = null;
+    private int[] order = new int[0];
+    private long[] keys = new long[0];
+    private int order_length = 0;
+
+    // true if the bitset kernel should be used for the block.
+    public static boolean isDense(BlockWritable block) {
+        if (block.hasValues() || block.nnz == 0)
+            return false;
+
+        if (block.isEncoded()) {
+            if (block.encoding != BlockWritable.BITMAP)
+                return false;    // the codec found the block sparse
+
+            int[] pos = new int[1];
+            BlockWritable.readVarInt(block.data, pos);
+            long area = (long) BlockWritable.readVarInt(block.data, pos);
+            BlockWritable.readVarInt(block.data, pos);
+            area *= BlockWritable.readVarInt(block.data, pos);
+            return block.nnz >= area * DENSITY_THRESHOLD;
+        }
+
+        int min_r = Integer.MAX_VALUE, max_r = -1, min_c = Integer.MAX_VALUE, max_c = -1;
+        for (int i = 0; i < block.nnz; i++) {
+            min_r = Math.min(min_r, block.rows[i]);
+            max_r = Math.max(max_r, block.rows[i]);
+            min_c = Math.min(min_c, block.cols[i]);
+            max_c = Math.max(max_c, block.cols[i]);
+        }
+        long area = (long) (max_r - min_r + 1) * (max_c - min_c + 1);
+        return block.nnz >= area * DENSITY_THRESHOLD;
+    }
+
+    public void load(BlockWritable block) {
+        if (block.isEncoded() && block.encoding == BlockWritable.BITMAP) {
+            int[] pos = new int[1];
+            min_col = BlockWritable.readVarInt(block.data, pos);
+            num_cols = BlockWritable.readVarInt(block.data, pos);
+            min_row = BlockWritable.readVarInt(block.data, pos);
+            num_rows = BlockWritable.readVarInt(block.data, pos);
+            resize();
+
+            // the bitmap is packed, num_rows bits per column. copy it 64 bits at a time.
+            for (int c = 0; c < num_cols; c++) {
+                long bit = (long) c * num_rows;
+                for (int w = 0; w < words; w++) {
+                    int n = Math.min(64, num_rows - (w << 6));
+                    long v = BlockWritable.readBits(block.data, pos[0], block.data_length, bit + (w << 6));
+                    bits[c * words + w] = n == 64 ? v : v & ((1L << n) - 1);
+                }
+            }
+        } else {
+            block.decode();
+            min_row = Integer.MAX_VALUE;
+            int max_row = -1;
+            for (int i = 0; i < block.nnz; i++) {
+                min_row = Math.min(min_row, block.rows[i]);
+                max_row = Math.max(max_row, block.rows[i]);
+            }
+            min_col = block.cols[0];
+            int max_col = block.cols[0];
+            for (int i = 1; i < block.nnz; i++) {
+                min_col = Math.min(min_col, block.cols[i]);
+                max_col = Math.max(max_col, block.cols[i]);
+            }
+            num_cols = max_col - min_col + 1;
+            num_rows = max_row - min_row + 1;
+            resize();
+
+            Arrays.fill(bits, 0, num_cols * words, 0);
+            for (int i = 0; i < block.nnz; i++) {
+                int r = block.rows[i] - min_row;
+                bits[(block.cols[i] - min_col) * words + (r >>> 6)] |= 1L << r;
+            }
+        }
+
+        // count the rows reached by some column, for the early exit of the kernel.
+        Arrays.fill(done, 0, words, 0);
+        for (int c = 0; c < num_cols; c++) {
+            for (int w = 0; w < words; w++)
+                done[w] |= bits[c * words + w];
+        }
+        num_active_rows = 0;
+        for (int w = 0; w < words; w++)
+            num_active_rows += Long.bitCount(done[w]);
+    }
+
+    private void resize() {
+        words = (num_rows + 63) >>> 6;
+        if (bits.length < num_cols * words)
+            bits = new long[num_cols * words];
+        if (done.length < words)
+            done = new long[words];
+    }
+
+    public void vectorChanged() {
+        order_vector = null;
+    }
+
+    // the defined indices of vector by increasing value. the length is orderLength().
+    public int[] order(DenseLongVector vector) {
+        if (vector == order_vector)
+            return order;
+
+        if (order.length < vector.width) {
+            order = new int[vector.width];
+            keys = new long[vector.width];
+        }
+
+        // values below 2^32 are sorted packed with their index, others with a comparator.
+        boolean packable = true;
+        order_length = 0;
+        for (int w = 0; w < vector.present.length; w++) {
+            long present = vector.present[w];
+            while (present != 0) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(present);
+                long val = vector.vals[i];
+                if (val < 0 || val >= (1L << 32))
+                    packable = false;
+                keys[order_length] = (val << 31) | i;
+                order[order_length++] = i;
+                present &= present - 1;
+            }
+        }
+
+        if (packable) {
+            Arrays.sort(keys, 0, order_length);
+            for (int k = 0; k < order_length; k++)
+                order[k] = (int) (keys[k] & Integer.MAX_VALUE);
+        } else {
+            final long[] vals = vector.vals;
+            Integer[] boxed = new Integer[order_length];
+            for (int k = 0; k < order_length; k++)
+                boxed[k] = order[k];
+            Arrays.sort(boxed, new Comparator<Integer>() {
+                public int compare(Integer a, Integer b) {
+                    return Long.compare(vals[a], vals[b]);
+                }
+            });
+            for (int k = 0; k < order_length; k++)
+                order[k] = boxed[k];
+        }
+
+        order_vector = vector;
+        return order;
+    }
+
+    public int orderLength() {
+        return order_length;
+    }
+}
@@ -0,0 +1,123 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: BitstringVectorWritable.java
+ - Binary form of a vector block of Flajolet-Martin bitstrings for HADI:
+   (IN-BLOCK-INDEX RADIUS BITSTRINGS)s plus the kind/status bytes of
+   VectorWritable. The nbits bitstrings of an element are packed in nbits
+   consecutive longs of bits. radius is the last hop at which they changed.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+public class BitstringVectorWritable implements Writable {
+    public byte kind = VectorWritable.SELF;
+    public byte status = VectorWritable.INCOMPLETE;
+    public int nbits = 0;        // bitstrings per element
+    public int size = 0;
+    public int[] rows = new int[16];
+    public int[] radius = new int[16];
+    public long[] bits = new long[0];
+
+    public void clear(int nbits) {
+        this.nbits = nbits;
+        size = 0;
+    }
+
+    // append an element. elements should be added in increasing row order.
+    public void add(int row, int cur_radius, long[] src, int offset) {
+        if (size == rows.length) {
+            rows = Arrays.copyOf(rows, size * 2);
+            radius = Arrays.copyOf(radius, size * 2);
+        }
+        if (bits.length < (size + 1) * nbits)
+            bits = Arrays.copyOf(bits, Math.max((size + 1) * nbits, bits.length * 2));
+
+        rows[size] = row;
+        radius[size] = cur_radius;
+        System.arraycopy(src, offset, bits, size * nbits, nbits);
+        size++;
+    }
+
+    public void set(BitstringVectorWritable other) {
+        kind = other.kind;
+        status = other.status;
+        nbits = other.nbits;
+        size = other.size;
+        if (rows.length < size) {
+            rows = new int[size];
+            radius = new int[size];
+        }
+        if (bits.length < size * nbits)
+            bits = new long[size * nbits];
+        System.arraycopy(other.rows, 0, rows, 0, size);
+        System.arraycopy(other.radius, 0, radius, 0, size);
+        System.arraycopy(other.bits, 0, bits, 0, size * nbits);
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeByte(kind);
+        out.writeByte(status);
+        WritableUtils.writeVInt(out, nbits);
+        WritableUtils.writeVInt(out, size);
+        for (int i = 0; i < size; i++) {
+            WritableUtils.writeVInt(out, rows[i]);
+            WritableUtils.writeVInt(out, radius[i]);
+            for (int k = 0; k < nbits; k++)
+                out.writeLong(bits[i * nbits + k]);
+        }
+    }
+
+    public void readFields(DataInput in) throws IOException {
+        kind = in.readByte();
+        status = in.readByte();
+        nbits = WritableUtils.readVInt(in);
+        size = WritableUtils.readVInt(in);
+        if (rows.length < size) {
+            rows = new int[size];
+            radius = new int[size];
+        }
+        if (bits.length < size * nbits)
+            bits = new long[size * nbits];
+        for (int i = 0; i < size; i++) {
+            rows[i] = WritableUtils.readVInt(in);
+            radius[i] = WritableUtils.readVInt(in);
+            for (int k = 0; k < nbits; k++)
+                bits[i * nbits + k] = in.readLong();
+        }
+    }
+
+    // ex) msi0 2 1f 7 1 2 3f 1f
+    public String toString() {
+        StringBuilder sb = new StringBuilder("m" + (char) kind + (char) status);
+        for (int i = 0; i < size; i++) {
+            sb.append(i > 0 ? " " : "").append(rows[i]).append(' ').append(radius[i]);
+            for (int k = 0; k < nbits; k++)
+                sb.append(' ').append(Long.toHexString(bits[i * nbits + k]));
+        }
+
+        return sb.toString();
+    }
+}
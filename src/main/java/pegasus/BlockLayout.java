@@ -0,0 +1,180 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: BlockLayout.java
+ - Mapping of node ids to (block id, in-block index).
+   The uniform layout cuts [0, number_nodes) into blocks of block_width nodes.
+   A variable layout is read from a boundaries file, which has the first node
+   of every block, one per line, followed by number_nodes:
+       0
+       100
+       2148
+       ...
+       number_nodes
+   Set "block_layout" in the job configuration to the path of the file.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.Arrays;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.JobConf;
+
+public class BlockLayout {
+    protected final long number_nodes;
+    protected final int block_width;    // width of the uniform layout, or the widest block of a variable layout
+    protected final long[] starts;      // null for the uniform layout. starts[num_blocks] = number_nodes.
+
+    protected BlockLayout(long number_nodes, int block_width, long[] starts) {
+        this.number_nodes = number_nodes;
+        this.block_width = block_width;
+        this.starts = starts;
+    }
+
+    public static BlockLayout uniform(long number_nodes, int block_width) {
+        return new BlockLayout(number_nodes, block_width, null);
+    }
+
+    public static BlockLayout variable(long[] starts) {
+        int max_width = 0;
+        for (int b = 0; b + 1 < starts.length; b++) {
+            if (starts[b + 1] <= starts[b] || starts[b + 1] - starts[b] > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("BlockLayout: invalid block boundaries at block " + b);
+            max_width = (int) Math.max(max_width, starts[b + 1] - starts[b]);
+        }
+
+        return new BlockLayout(starts[starts.length - 1], max_width, starts);
+    }
+
+    // the layout of a job: the boundaries file in "block_layout", or the uniform layout.
+    public static BlockLayout get(JobConf job, long number_nodes, int block_width) throws IOException {
+        String layout_path = job.get("block_layout");
+        if (layout_path == null || layout_path.length() == 0)
+            return uniform(number_nodes, block_width);
+
+        Path path = new Path(layout_path);
+        return read(path.getFileSystem(job), path);
+    }
+
+    // same as get(), for the configure() of the map and reduce tasks.
+    public static BlockLayout configure(JobConf job, long number_nodes, int block_width) {
+        try {
+            return get(job, number_nodes, block_width);
+        } catch (IOException e) {
+            throw new RuntimeException("BlockLayout: failed to read " + job.get("block_layout"), e);
+        }
+    }
+
+    public boolean isUniform() {
+        return starts == null;
+    }
+
+    public long numNodes() {
+        return number_nodes;
+    }
+
+    public long numBlocks() {
+        if (starts == null)
+            return (number_nodes + block_width - 1) / block_width;
+
+        return starts.length - 1;
+    }
+
+    // width of the widest block. the size of the dense scratch vectors.
+    public int maxWidth() {
+        return block_width;
+    }
+
+    public long blockOf(long node) {
+        if (starts == null)
+            return node / block_width;
+
+        int pos = Arrays.binarySearch(starts, node);
+        return pos >= 0 ? pos : -pos - 2;
+    }
+
+    public long start(long block) {
+        if (starts == null)
+            return block * block_width;
+
+        return starts[(int) block];
+    }
+
+    public int width(long block) {
+        if (starts == null)
+            return (int) Math.min(block_width, number_nodes - block * block_width);
+
+        return (int) (starts[(int) block + 1] - starts[(int) block]);
+    }
+
+    public int indexOf(long node, long block) {
+        return (int) (node - start(block));
+    }
+
+    // width of the dense block vectors of a driver: the dense block vectors must hold the
+    // widest block of the layout in layout_path, or block_width for the uniform layout.
+    public static int vectorWidth(FileSystem fs, String layout_path, int block_width) throws IOException {
+        if (layout_path == null)
+            return block_width;
+
+        BlockLayout layout = read(fs, new Path(layout_path));
+        System.out.println("Block layout " + layout_path + " : " + layout.numBlocks() + " blocks, max width = " + layout.maxWidth());
+        return layout.maxWidth();
+    }
+
+    public static BlockLayout read(FileSystem fs, Path path) throws IOException {
+        long[] starts = new long[1024];
+        int n = 0;
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(fs.open(path), "UTF-8"));
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.length() == 0 || line.startsWith("#"))
+                    continue;
+
+                if (n == starts.length)
+                    starts = Arrays.copyOf(starts, n * 2);
+                starts[n++] = Long.parseLong(line);
+            }
+        } finally {
+            in.close();
+        }
+
+        if (n < 2 || starts[0] != 0)
+            throw new IOException("BlockLayout: " + path + " is not a block boundaries file");
+
+        return variable(Arrays.copyOf(starts, n));
+    }
+
+    public void write(FileSystem fs, Path path) throws IOException {
+        BufferedWriter out = new BufferedWriter(new OutputStreamWriter(fs.create(path, true), "UTF-8"));
+        out.write("# block boundaries. " + numBlocks() + " blocks, max width " + block_width + "\n");
+        for (long b = 0; b < numBlocks(); b++)
+            out.write(start(b) + "\n");
+        out.write(number_nodes + "\n");
+        out.close();
+    }
+}
@@ -0,0 +1,125 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: BlockRangeInputFormat.java
+ - Input format without input files, which generates the block ids
+   [0, number of blocks) of the BlockLayout as keys, split into contiguous
+   block ranges, one per map task.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapred.InputFormat;
+import org.apache.hadoop.mapred.InputSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.RecordReader;
+import org.apache.hadoop.mapred.Reporter;
+
+public class BlockRangeInputFormat implements InputFormat<LongWritable, NullWritable> {
+    // block ids [start_block, end_block)
+    public static class BlockRangeSplit implements InputSplit {
+        long start_block;
+        long end_block;
+
+        public BlockRangeSplit() {
+        }
+
+        public BlockRangeSplit(long start_block, long end_block) {
+            this.start_block = start_block;
+            this.end_block = end_block;
+        }
+
+        public long getLength() {
+            return end_block - start_block;
+        }
+
+        public String[] getLocations() {
+            return new String[0];
+        }
+
+        public void write(DataOutput out) throws IOException {
+            out.writeLong(start_block);
+            out.writeLong(end_block);
+        }
+
+        public void readFields(DataInput in) throws IOException {
+            start_block = in.readLong();
+            end_block = in.readLong();
+        }
+    }
+
+    public InputSplit[] getSplits(JobConf job, int numSplits) throws IOException {
+        long number_nodes = Long.parseLong(job.get("number_nodes"));
+        int block_width = Integer.parseInt(job.get("block_width"));
+        long num_blocks = BlockLayout.get(job, number_nodes, block_width).numBlocks();
+
+        if (numSplits < 1)
+            numSplits = 1;
+        if (numSplits > num_blocks)
+            numSplits = (int) Math.max(num_blocks, 1);
+
+        InputSplit[] splits = new InputSplit[numSplits];
+        for (int i = 0; i < numSplits; i++)
+            splits[i] = new BlockRangeSplit(num_blocks * i / numSplits, num_blocks * (i + 1) / numSplits);
+
+        return splits;
+    }
+
+    public RecordReader<LongWritable, NullWritable> getRecordReader(InputSplit split, JobConf job, Reporter reporter) throws IOException {
+        final BlockRangeSplit range = (BlockRangeSplit) split;
+
+        return new RecordReader<LongWritable, NullWritable>() {
+            private long cur_block = range.start_block;
+
+            public boolean next(LongWritable key, NullWritable value) {
+                if (cur_block >= range.end_block)
+                    return false;
+
+                key.set(cur_block++);
+                return true;
+            }
+
+            public LongWritable createKey() {
+                return new LongWritable();
+            }
+
+            public NullWritable createValue() {
+                return NullWritable.get();
+            }
+
+            public long getPos() {
+                return cur_block - range.start_block;
+            }
+
+            public void close() {
+            }
+
+            public float getProgress() {
+                if (range.end_block == range.start_block)
+                    return 1.0f;
+
+                return (float) (cur_block - range.start_block) / (range.end_block - range.start_block);
+            }
+        };
+    }
+}
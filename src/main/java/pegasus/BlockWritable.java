@@ -0,0 +1,397 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: BlockWritable.java
+ - Binary form of a matrix block: BLOCK-ROW, BLOCK-COL and (IN-BLOCK-ROW IN-BLOCK-COL [VALUE])s.
+   Unlike the text format, rows and cols are stored already transposed back,
+   i.e. out[row] is computed from vector[col].
+   A 0-1 block sorted by (col, row) is written in the smaller of two encodings:
+     SPARSE: column runs of varints, (col delta, run length, first row, row deltas...)
+     BITMAP: the bounding box of the block, one bit per (col, row), column by column
+   Any other block is written as plain (row, col [, value]) VInts. An encoded block
+   read by readFields() is kept encoded: GIMV multiplies it as is, write() copies
+   it back, and decode() fills rows and cols when they are needed.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+public class BlockWritable implements Writable {
+    // the encoding byte. COO and COO_VALUES are the has-values flag of the older format.
+    public static final byte COO = 0;
+    public static final byte COO_VALUES = 1;
+    public static final byte SPARSE = 2;
+    public static final byte BITMAP = 3;
+
+    public long block_row;
+    public long block_col;
+    public int nnz = 0;
+    public int[] rows;
+    public int[] cols;
+    public double[] vals = null;    // null for 0-1 matrices
+
+    // encoded form of a SPARSE or BITMAP block. rows and cols are valid only if decoded.
+    public byte encoding = COO;
+    public byte[] data = new byte[64];
+    public int data_length = 0;
+    private boolean decoded = true;
+
+    public BlockWritable() {
+        this(16);
+    }
+
+    public BlockWritable(int capacity) {
+        rows = new int[capacity];
+        cols = new int[capacity];
+    }
+
+    public void clear() {
+        nnz = 0;
+        vals = null;
+        decoded = true;
+    }
+
+    // append a 0-1 element. elements should be added in increasing col order.
+    public void add(int row, int col) {
+        decode();
+        if (nnz == rows.length)
+            grow(nnz + 1);
+
+        rows[nnz] = row;
+        cols[nnz] = col;
+        nnz++;
+    }
+
+    // append a real-valued element.
+    public void add(int row, int col, double val) {
+        decode();
+        if (vals == null)
+            vals = new double[rows.length];
+        if (nnz == rows.length)
+            grow(nnz + 1);
+
+        vals[nnz] = val;
+        add(row, col);
+    }
+
+    public boolean hasValues() {
+        return vals != null;
+    }
+
+    // true if the block is held in the SPARSE or BITMAP encoding, and rows and cols are not filled.
+    public boolean isEncoded() {
+        return !decoded;
+    }
+
+    public void set(BlockWritable other) {
+        block_row = other.block_row;
+        block_col = other.block_col;
+        nnz = 0;
+        vals = null;
+        if (other.isEncoded()) {
+            setData(other.encoding, other.data, other.data_length);
+            nnz = other.nnz;
+            return;
+        }
+
+        decoded = true;
+        if (rows.length < other.nnz)
+            grow(other.nnz);
+        System.arraycopy(other.rows, 0, rows, 0, other.nnz);
+        System.arraycopy(other.cols, 0, cols, 0, other.nnz);
+        if (other.vals != null)
+            vals = Arrays.copyOf(other.vals, rows.length);
+        nnz = other.nnz;
+    }
+
+    private void grow(int min_capacity) {
+        int capacity = Math.max(min_capacity, rows.length * 2);
+        rows = Arrays.copyOf(rows, capacity);
+        cols = Arrays.copyOf(cols, capacity);
+        if (vals != null)
+            vals = Arrays.copyOf(vals, capacity);
+    }
+
+    public void write(DataOutput out) throws IOException {
+        WritableUtils.writeVLong(out, block_row);
+        WritableUtils.writeVLong(out, block_col);
+        if (decoded)
+            encode();
+        out.writeByte(encoding);
+        WritableUtils.writeVInt(out, nnz);
+
+        if (encoding == SPARSE || encoding == BITMAP) {
+            WritableUtils.writeVInt(out, data_length);
+            out.write(data, 0, data_length);
+            return;
+        }
+
+        for (int i = 0; i < nnz; i++) {
+            WritableUtils.writeVInt(out, rows[i]);
+            WritableUtils.writeVInt(out, cols[i]);
+            if (vals != null)
+                out.writeDouble(vals[i]);
+        }
+    }
+
+    public void readFields(DataInput in) throws IOException {
+        block_row = WritableUtils.readVLong(in);
+        block_col = WritableUtils.readVLong(in);
+        encoding = in.readByte();
+        int n = WritableUtils.readVInt(in);
+        nnz = 0;
+        vals = null;
+
+        if (encoding == SPARSE || encoding == BITMAP) {
+            int length = WritableUtils.readVInt(in);
+            if (data.length < length)
+                data = new byte[Math.max(length, data.length * 2)];
+            in.readFully(data, 0, length);
+            data_length = length;
+            decoded = false;
+            nnz = n;
+            return;
+        }
+        if (encoding != COO && encoding != COO_VALUES)
+            throw new IOException("BlockWritable: unknown encoding " + encoding);
+
+        decoded = true;
+        boolean has_vals = encoding == COO_VALUES;
+        if (rows.length < n)
+            grow(n);
+        if (has_vals)
+            vals = new double[rows.length];
+        for (int i = 0; i < n; i++) {
+            rows[i] = WritableUtils.readVInt(in);
+            cols[i] = WritableUtils.readVInt(in);
+            if (has_vals)
+                vals[i] = in.readDouble();
+        }
+        nnz = n;
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    // encoding
+    //////////////////////////////////////////////////////////////////////
+
+    // choose the encoding of the decoded block, and fill data for SPARSE and BITMAP.
+    private void encode() {
+        encoding = vals != null ? COO_VALUES : COO;
+        if (vals != null || nnz == 0)
+            return;
+
+        // SPARSE and BITMAP need the elements sorted by (col, row). BITMAP also drops duplicates.
+        boolean duplicates = false;
+        int min_row = rows[0];
+        int max_row = rows[0];
+        for (int i = 1; i < nnz; i++) {
+            if (cols[i] < cols[i - 1] || (cols[i] == cols[i - 1] && rows[i] < rows[i - 1]))
+                return;
+            if (cols[i] == cols[i - 1] && rows[i] == rows[i - 1])
+                duplicates = true;
+            min_row = Math.min(min_row, rows[i]);
+            max_row = Math.max(max_row, rows[i]);
+        }
+
+        encodeSparse();
+
+        int num_cols = cols[nnz - 1] - cols[0] + 1;
+        int num_rows = max_row - min_row + 1;
+        long num_bits = (long) num_cols * num_rows;
+        if (!duplicates && num_bits < Integer.MAX_VALUE) {
+            long bitmap_length = varIntSize(cols[0]) + varIntSize(num_cols) + varIntSize(min_row) + varIntSize(num_rows) + (num_bits + 7) / 8;
+            if (bitmap_length < data_length)
+                encodeBitmap(min_row, num_rows);
+        }
+    }
+
+    // column runs: (col - previous col, run length, first row, row - previous row...)
+    private void encodeSparse() {
+        encoding = SPARSE;
+        data_length = 0;
+        int prev_col = 0;
+        int i = 0;
+        while (i < nnz) {
+            int col = cols[i];
+            int run_end = i + 1;
+            while (run_end < nnz && cols[run_end] == col)
+                run_end++;
+
+            writeVarInt(col - prev_col);
+            writeVarInt(run_end - i);
+            writeVarInt(rows[i]);
+            for (int k = i + 1; k < run_end; k++)
+                writeVarInt(rows[k] - rows[k - 1]);
+
+            prev_col = col;
+            i = run_end;
+        }
+    }
+
+    // (first col, # of cols, first row, # of rows) and the bits, column by column.
+    private void encodeBitmap(int min_row, int num_rows) {
+        encoding = BITMAP;
+        data_length = 0;
+        int min_col = cols[0];
+        int num_cols = cols[nnz - 1] - min_col + 1;
+        writeVarInt(min_col);
+        writeVarInt(num_cols);
+        writeVarInt(min_row);
+        writeVarInt(num_rows);
+
+        int offset = data_length;
+        int length = (int) (((long) num_cols * num_rows + 7) / 8);
+        ensureData(offset + length);
+        Arrays.fill(data, offset, offset + length, (byte) 0);
+        for (int i = 0; i < nnz; i++) {
+            int bit = (cols[i] - min_col) * num_rows + (rows[i] - min_row);
+            data[offset + (bit >>> 3)] |= 1 << (bit & 7);
+        }
+        data_length = offset + length;
+    }
+
+    // fill rows and cols of an encoded block.
+    public void decode() {
+        if (decoded)
+            return;
+
+        if (rows.length < nnz)
+            grow(nnz);
+
+        int[] pos = new int[1];
+        if (encoding == SPARSE) {
+            int n = 0;
+            int col = 0;
+            while (pos[0] < data_length) {
+                col += readVarInt(data, pos);
+                int run_length = readVarInt(data, pos);
+                int row = 0;
+                for (int k = 0; k < run_length; k++) {
+                    row = k == 0 ? readVarInt(data, pos) : row + readVarInt(data, pos);
+                    rows[n] = row;
+                    cols[n] = col;
+                    n++;
+                }
+            }
+        } else {
+            int min_col = readVarInt(data, pos);
+            int num_cols = readVarInt(data, pos);
+            int min_row = readVarInt(data, pos);
+            int num_rows = readVarInt(data, pos);
+            int offset = pos[0];
+            int n = 0;
+            for (int c = 0; c < num_cols; c++) {
+                long base = (long) c * num_rows;
+                for (int r = 0; r < num_rows; r += 64) {
+                    long bits = readBits(data, offset, data_length, base + r);
+                    if (num_rows - r < 64)
+                        bits &= (1L << (num_rows - r)) - 1;
+
+                    while (bits != 0) {
+                        rows[n] = min_row + r + Long.numberOfTrailingZeros(bits);
+                        cols[n] = min_col + c;
+                        n++;
+                        bits &= bits - 1;
+                    }
+                }
+            }
+        }
+        decoded = true;
+    }
+
+    private void setData(byte new_encoding, byte[] src, int length) {
+        ensureData(length);
+        System.arraycopy(src, 0, data, 0, length);
+        data_length = length;
+        encoding = new_encoding;
+        decoded = false;
+    }
+
+    private void ensureData(int min_length) {
+        if (data.length < min_length)
+            data = Arrays.copyOf(data, Math.max(min_length, data.length * 2));
+    }
+
+    // unsigned varint, 7 bits per byte, low bits first.
+    private void writeVarInt(int v) {
+        ensureData(data_length + 5);
+        while ((v & ~0x7f) != 0) {
+            data[data_length++] = (byte) ((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        data[data_length++] = (byte) v;
+    }
+
+    private static int varIntSize(int v) {
+        int size = 1;
+        while ((v & ~0x7f) != 0) {
+            size++;
+            v >>>= 7;
+        }
+        return size;
+    }
+
+    // 64 bits of a BITMAP at data[offset, length), from bit 'bit'. bits past the end are 0.
+    public static long readBits(byte[] src, int offset, int length, long bit) {
+        int p = offset + (int) (bit >>> 3);
+        int shift = (int) (bit & 7);
+        int num_bytes = shift == 0 ? 8 : 9;
+        long v = 0;
+        for (int i = 0; i < num_bytes && p + i < length; i++) {
+            long b = src[p + i] & 0xffL;
+            int s = 8 * i - shift;
+            v |= s >= 0 ? b << s : b >>> -s;
+        }
+        return v;
+    }
+
+    // read a varint at pos[0], and advance pos[0].
+    public static int readVarInt(byte[] src, int[] pos) {
+        int p = pos[0];
+        int b = src[p++];
+        int v = b & 0x7f;
+        for (int shift = 7; b < 0; shift += 7) {
+            b = src[p++];
+            v |= (b & 0x7f) << shift;
+        }
+        pos[0] = p;
+        return v;
+    }
+
+    // same layout as the legacy text format, which is transposed. ex) 0	1	0 1 1 1
+    public String toString() {
+        decode();
+        StringBuilder sb = new StringBuilder();
+        sb.append(block_row).append('\t').append(block_col).append('\t');
+        for (int i = 0; i < nnz; i++) {
+            if (i > 0)
+                sb.append(' ');
+            sb.append(cols[i]).append(' ').append(rows[i]);
+            if (vals != null)
+                sb.append(' ').append(vals[i]);
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,123 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: ComponentStore.java
+ - Read-only, memory-mapped lookup of the connected components exported by
+   ConCmptExport. The file is
+     header : MAGIC, VERSION (int), number_nodes, number_components (long)
+     nodes : the component id of node i at HEADER_SIZE + 8 * i, -1 if unknown
+     sizes : (component id, number of nodes) pairs, sorted by component id
+   all big-endian. A node is looked up in O(1), a component size in O(log n).
+   The store is safe for concurrent readers.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+public class ComponentStore implements Closeable {
+    public static final int MAGIC = 0x50474343;    // "PGCC"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 24;
+
+    // the file is mapped in segments of 2^SEGMENT_BITS bytes, as a mapping is limited to 2GB.
+    // the segments are a multiple of 8 bytes, so a long never spans two of them.
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+    public final long number_nodes;
+    public final long number_components;
+    private final long sizes_offset;
+    private final RandomAccessFile file;
+    private final MappedByteBuffer[] segments;
+
+    public ComponentStore(File path) throws IOException {
+        file = new RandomAccessFile(path, "r");
+        FileChannel channel = file.getChannel();
+        long length = channel.size();
+
+        if (length < HEADER_SIZE || file.readInt() != MAGIC)
+            throw new IOException(path + " is not a component store");
+        int version = file.readInt();
+        if (version != VERSION)
+            throw new IOException(path + ": unsupported component store version " + version);
+        number_nodes = file.readLong();
+        number_components = file.readLong();
+        sizes_offset = HEADER_SIZE + 8 * number_nodes;
+        if (length != sizes_offset + 16 * number_components)
+            throw new IOException(path + " is truncated: " + length + " bytes");
+
+        segments = new MappedByteBuffer[(int) ((length + SEGMENT_MASK) >>> SEGMENT_BITS)];
+        for (int i = 0; i < segments.length; i++) {
+            long start = (long) i << SEGMENT_BITS;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(length - start, 1L << SEGMENT_BITS));
+        }
+    }
+
+    // absolute read, so that the buffers are shared by all the threads.
+    private long getLong(long pos) {
+        return segments[(int) (pos >>> SEGMENT_BITS)].getLong((int) (pos & SEGMENT_MASK));
+    }
+
+    // component id of node, -1 if the node is unknown.
+    public long component(long node) {
+        if (node < 0 || node >= number_nodes)
+            return -1;
+
+        return getLong(HEADER_SIZE + 8 * node);
+    }
+
+    // out[i] = component(nodes[i]) for i in [0, length).
+    public void components(long[] nodes, long[] out, int length) {
+        for (int i = 0; i < length; i++)
+            out[i] = component(nodes[i]);
+    }
+
+    // number of nodes in component, 0 if there is no such component.
+    public long size(long component) {
+        long lo = 0;
+        long hi = number_components - 1;
+
+        while (lo <= hi) {
+            long mid = (lo + hi) >>> 1;
+            long cur = getLong(sizes_offset + 16 * mid);
+            if (cur < component)
+                lo = mid + 1;
+            else if (cur > component)
+                hi = mid - 1;
+            else
+                return getLong(sizes_offset + 16 * mid + 8);
+        }
+
+        return 0;
+    }
+
+    // number of nodes in the component of node, 0 if the node is unknown.
+    public long componentSize(long node) {
+        long component = component(node);
+        return component < 0 ? 0 : size(component);
+    }
+
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,799 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: ConCmptBSP.java
+ - HCC with long-lived workers, in bulk synchronous supersteps.
+   Worker p loads once the edge blocks of the block columns it owns, the ones
+   whose partition (as HashPartitioner) is p, and keeps the vector blocks of
+   the same ids. A superstep is one HCC iteration: the worker multiplies the
+   edge blocks of its vector blocks changed in the last superstep, combines the
+   partial results by block row and sends them to their owners. The owners
+   keep the minimum, and the driver stops when no block changes.
+   The driver coordinates the workers through a socket each, and the workers
+   send the partial vectors to each other directly.
+   The workers run in a map-only job, one map task each, or as processes on
+   this machine with "local".
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+
+import org.apache.hadoop.conf.*;
+import org.apache.hadoop.fs.*;
+import org.apache.hadoop.io.*;
+import org.apache.hadoop.io.compress.SnappyCodec;
+import org.apache.hadoop.mapred.*;
+import org.apache.hadoop.mapred.lib.NLineInputFormat;
+import org.apache.hadoop.mapred.lib.NullOutputFormat;
+import org.apache.hadoop.util.*;
+
+public class ConCmptBSP extends Configured implements Tool {
+    // commands of the driver
+    static final int SUPERSTEP = 1;
+    static final int FINISH = 2;
+
+    // end of the partial vectors of a superstep, on a worker to worker connection.
+    static final long END_OF_BATCH = -1;
+
+    static final int ACCEPT_TIMEOUT_MS = 10000;
+
+    // all the workers must connect within this time(bsp.register.timeout.ms), e.g. not enough map slots.
+    static final long REGISTER_TIMEOUT_MS = 600000;
+
+    //////////////////////////////////////////////////////////////////////
+    // Worker: the edge blocks and vector blocks of a partition, in memory.
+    //////////////////////////////////////////////////////////////////////
+    public static class Worker {
+        protected final int worker_id;
+        protected final JobConf conf = new JobConf();
+        protected int num_workers;
+        protected BlockLayout layout;
+        protected int block_width;
+        protected int recursive_diagmult;
+        protected int symmetric;
+
+        // edge blocks by block column, and the vector blocks of the same ids.
+        protected final Map<Long, List<BlockWritable>> columns = new HashMap<Long, List<BlockWritable>>();
+        protected final TreeMap<Long, DenseLongVector> vectors = new TreeMap<Long, DenseLongVector>();
+        protected Set<Long> active = new HashSet<Long>();
+
+        // partial vectors for the vector blocks of this worker, merged by the receivers.
+        protected final Map<Long, DenseLongVector> inbox = new HashMap<Long, DenseLongVector>();
+        protected int batches_received = 0;
+        protected IOException receive_error = null;
+
+        protected DataOutputStream[] peer_out;    // null for this worker
+
+        // scratch
+        private final VectorWritable out_vector = new VectorWritable();
+        private final BitsetBlock dense_block = new BitsetBlock();
+        private UnionFind diag_sets;
+        private DenseLongVector mult_result;
+        private DenseLongVector mult_temp;
+
+        public Worker(int worker_id) {
+            this.worker_id = worker_id;
+        }
+
+        // usage: Worker <driver host> <driver port> <worker id>
+        public static void main(final String[] args) throws Exception {
+            new Worker(Integer.parseInt(args[2])).run(args[0], Integer.parseInt(args[1]));
+        }
+
+        public void run(String host, int port) throws IOException {
+            Socket driver = new Socket(host, port);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(driver.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(driver.getOutputStream()));
+
+            // hello: id and the address the other workers connect to
+            ServerSocket peer_server = new ServerSocket(0, 1024);
+            out.writeInt(worker_id);
+            Text.writeString(out, driver.getLocalAddress().getHostAddress());
+            out.writeInt(peer_server.getLocalPort());
+            out.flush();
+
+            conf.readFields(in);
+            num_workers = in.readInt();
+            String[] peer_hosts = new String[num_workers];
+            int[] peer_ports = new int[num_workers];
+            for (int q = 0; q < num_workers; q++) {
+                peer_hosts[q] = Text.readString(in);
+                peer_ports[q] = in.readInt();
+            }
+
+            block_width = conf.getInt("block_width", 64);
+            recursive_diagmult = conf.getInt("recursive_diagmult", 0);
+            symmetric = conf.getInt("symmetric", 1);
+            layout = BlockLayout.get(conf, conf.getLong("number_nodes", 0), block_width);
+            block_width = layout.maxWidth();
+            diag_sets = new UnionFind(block_width);
+            mult_result = new DenseLongVector(block_width);
+            mult_temp = new DenseLongVector(block_width);
+
+            connectPeers(peer_server, peer_hosts, peer_ports);
+            peer_server.close();
+
+            long[] loaded = load();
+            out.writeLong(loaded[0]);
+            out.writeLong(loaded[1]);
+            out.flush();
+
+            for (int step = 0; ; step++) {
+                int command = in.readInt();
+                if (command == FINISH)
+                    break;
+
+                long[] result = superstep(step);
+                out.writeLong(result[0]);
+                out.writeLong(result[1]);
+                out.flush();
+            }
+
+            out.writeLong(writeComponents());
+            out.flush();
+
+            for (DataOutputStream peer : peer_out) {
+                if (peer != null)
+                    peer.close();
+            }
+            driver.close();
+        }
+
+        // connect to every other worker, and accept their connections.
+        // a connection carries the partial vectors in one direction only.
+        protected void connectPeers(ServerSocket peer_server, String[] peer_hosts, int[] peer_ports) throws IOException {
+            peer_out = new DataOutputStream[num_workers];
+            for (int q = 0; q < num_workers; q++) {
+                if (q == worker_id)
+                    continue;
+
+                Socket socket = new Socket(peer_hosts[q], peer_ports[q]);
+                socket.setTcpNoDelay(true);
+                peer_out[q] = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+                peer_out[q].writeInt(worker_id);
+                peer_out[q].flush();
+            }
+
+            for (int q = 1; q < num_workers; q++) {
+                Socket socket = peer_server.accept();
+                DataInputStream peer_in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+                int peer_id = peer_in.readInt();
+                Thread receiver = new Receiver(peer_in);
+                receiver.setName("receiver-" + peer_id);
+                receiver.setDaemon(true);
+                receiver.start();
+            }
+        }
+
+        protected boolean owns(long block_id) {
+            return SkewPartitioner.homePartition(block_id, num_workers) == worker_id;
+        }
+
+        // read the edge blocks of the columns of this worker, and set up the initial vector:
+        // every node is its own component. returns (# of edge blocks, # of elements).
+        protected long[] load() throws IOException {
+            Path edge_path = new Path(conf.get("edge_path"));
+            FileSystem fs = edge_path.getFileSystem(conf);
+            long num_blocks = 0;
+            long nnz = 0;
+
+            for (FileStatus status : ConCmptLocal.listInputFiles(fs, edge_path)) {
+                SequenceFile.Reader reader = new SequenceFile.Reader(fs, status.getPath(), conf);
+                Writable key = (Writable) ReflectionUtils.newInstance(reader.getKeyClass(), conf);
+                Writable value = (Writable) ReflectionUtils.newInstance(reader.getValueClass(), conf);
+                while (reader.next(key, value)) {
+                    Writable cur_value = MatVecWritable.unwrap(value);
+                    if (!(cur_value instanceof BlockWritable))
+                        continue;
+
+                    BlockWritable block = (BlockWritable) cur_value;
+                    if (!owns(block.block_col))
+                        continue;
+
+                    BlockWritable copy = new BlockWritable(1);
+                    copy.set(block);
+                    List<BlockWritable> column = columns.get(block.block_col);
+                    if (column == null) {
+                        column = new ArrayList<BlockWritable>();
+                        columns.put(block.block_col, column);
+                    }
+                    column.add(copy);
+                    num_blocks++;
+                    nnz += block.nnz;
+                }
+                reader.close();
+            }
+
+            for (long b = 0; b < layout.numBlocks(); b++) {
+                if (!owns(b))
+                    continue;
+
+                DenseLongVector vector = new DenseLongVector(block_width);
+                long start = layout.start(b);
+                int width = layout.width(b);
+                for (int i = 0; i < width; i++)
+                    vector.set(i, start + i);
+                vectors.put(b, vector);
+                active.add(b);
+            }
+
+            System.out.println("Worker " + worker_id + ": " + num_blocks + " edge blocks, " + nnz + " elements, " + vectors.size() + " vector blocks");
+
+            return new long[]{num_blocks, nnz};
+        }
+
+        // one HCC iteration. returns (# of changed vector blocks, # of partial vectors sent).
+        protected long[] superstep(int step) throws IOException {
+            // STAGE 1: multiply the changed vector blocks, and combine the results by block row.
+            Map<Long, DenseLongVector> partials = new HashMap<Long, DenseLongVector>();
+            for (Long column_id : active) {
+                List<BlockWritable> column = columns.get(column_id);
+                if (column == null)
+                    continue;
+
+                DenseLongVector vector = vectors.get(column_id);
+                dense_block.vectorChanged();
+                for (BlockWritable block : column) {
+                    DenseLongVector partial = partials.get(block.block_row);
+                    if (partial == null) {
+                        partial = new DenseLongVector(block_width);
+                        partials.put(block.block_row, partial);
+                    }
+
+                    if (block.block_row == column_id && recursive_diagmult == 1 && symmetric == 1) {
+                        GIMV.minBlockVectorUnionFind(block, vector, mult_result, diag_sets, mult_temp);
+                        partial.minAll(mult_result);
+                    } else if (block.block_row == column_id && recursive_diagmult == 1) {
+                        partial.minAll(GIMV.minBlockVectorRecursive(block, vector, mult_result, mult_temp, block_width, dense_block));
+                    } else {
+                        GIMV.multiply(block, vector, partial, LongSemiring.MIN, dense_block);
+                    }
+                }
+            }
+
+            // send them to the owners of the block rows
+            long sent = 0;
+            for (Map.Entry<Long, DenseLongVector> entry : partials.entrySet()) {
+                if (entry.getValue().isEmpty())
+                    continue;
+
+                int owner = SkewPartitioner.homePartition(entry.getKey(), num_workers);
+                if (owner == worker_id) {
+                    merge(entry.getKey(), entry.getValue());
+                } else {
+                    entry.getValue().store(out_vector);
+                    out_vector.kind = VectorWritable.PARTIAL;
+                    out_vector.status = VectorWritable.INCOMPLETE;
+                    peer_out[owner].writeLong(entry.getKey());
+                    out_vector.write(peer_out[owner]);
+                    sent++;
+                }
+            }
+            for (DataOutputStream peer : peer_out) {
+                if (peer != null) {
+                    peer.writeLong(END_OF_BATCH);
+                    peer.flush();
+                }
+            }
+
+            // STAGE 2: wait for the other workers, and keep the minimum.
+            synchronized (this) {
+                while (batches_received < (long) (num_workers - 1) * (step + 1) && receive_error == null) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        throw new IOException("Worker " + worker_id + ": interrupted", e);
+                    }
+                }
+                if (receive_error != null)
+                    throw receive_error;
+
+                Set<Long> changed = new HashSet<Long>();
+                for (Map.Entry<Long, DenseLongVector> entry : inbox.entrySet()) {
+                    if (minInto(vectors.get(entry.getKey()), entry.getValue()))
+                        changed.add(entry.getKey());
+                }
+                inbox.clear();
+                active = changed;
+            }
+
+            return new long[]{active.size(), sent};
+        }
+
+        protected synchronized void merge(long block_id, DenseLongVector partial) {
+            DenseLongVector cur = inbox.get(block_id);
+            if (cur == null)
+                inbox.put(block_id, cur = new DenseLongVector(block_width));
+            cur.minAll(partial);
+        }
+
+        protected synchronized void merge(long block_id, VectorWritable partial) {
+            DenseLongVector cur = inbox.get(block_id);
+            if (cur == null)
+                inbox.put(block_id, cur = new DenseLongVector(block_width));
+            cur.minAll(partial);
+        }
+
+        // vector = min(vector, partial). true if the vector changed.
+        protected static boolean minInto(DenseLongVector vector, DenseLongVector partial) {
+            boolean changed = false;
+            for (int w = 0; w < partial.present.length; w++) {
+                long bits = partial.present[w];
+                while (bits != 0) {
+                    int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    if (!vector.isSet(i) || partial.vals[i] < vector.vals[i]) {
+                        vector.set(i, partial.vals[i]);
+                        changed = true;
+                    }
+                    bits &= bits - 1;
+                }
+            }
+
+            return changed;
+        }
+
+        // reads the partial vectors of one other worker.
+        class Receiver extends Thread {
+            private final DataInputStream in;
+            private final VectorWritable partial = new VectorWritable();
+
+            Receiver(DataInputStream in) {
+                this.in = in;
+            }
+
+            public void run() {
+                try {
+                    while (true) {
+                        long block_id = in.readLong();
+                        if (block_id == END_OF_BATCH) {
+                            synchronized (Worker.this) {
+                                batches_received++;
+                                Worker.this.notifyAll();
+                            }
+                            continue;
+                        }
+
+                        partial.readFields(in);
+                        merge(block_id, partial);
+                    }
+                } catch (EOFException e) {
+                    // the other worker is done
+                } catch (IOException e) {
+                    synchronized (Worker.this) {
+                        receive_error = e;
+                        Worker.this.notifyAll();
+                    }
+                }
+            }
+        }
+
+        // write (node_id, "msf"component_id) lines of the vector blocks of this worker. returns the # of nodes.
+        protected long writeComponents() throws IOException {
+            Path path = new Path(conf.get("curbm_path"), String.format("part-%05d", worker_id));
+            FileSystem fs = path.getFileSystem(conf);
+            long num_nodes = 0;
+
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(fs.create(path), "UTF-8"));
+            try {
+                for (Map.Entry<Long, DenseLongVector> entry : vectors.entrySet()) {
+                    long start = layout.start(entry.getKey());
+                    int width = layout.width(entry.getKey());
+                    DenseLongVector vector = entry.getValue();
+                    for (int i = 0; i < width; i++) {
+                        writer.write(Long.toString(start + i));
+                        writer.write("\tmsf");
+                        writer.write(Long.toString(vector.vals[i]));
+                        writer.write('\n');
+                    }
+                    num_nodes += width;
+                }
+            } finally {
+                writer.close();
+            }
+
+            return num_nodes;
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    // a worker in a map task. input : DRIVER-HOST   TAB   DRIVER-PORT   TAB   WORKER-ID
+    //////////////////////////////////////////////////////////////////////
+    public static class MapWorker extends MapReduceBase implements Mapper<LongWritable, Text, NullWritable, NullWritable> {
+        public void map(final LongWritable key, final Text value, final OutputCollector<NullWritable, NullWritable> output, final Reporter reporter) throws IOException {
+            final String[] line = value.toString().split("\t");
+
+            // the worker waits for the others between supersteps. keep the task alive.
+            Thread heartbeat = new Thread() {
+                public void run() {
+                    try {
+                        while (true) {
+                            reporter.progress();
+                            Thread.sleep(10000);
+                        }
+                    } catch (InterruptedException e) {
+                        // done
+                    }
+                }
+            };
+            heartbeat.setDaemon(true);
+            heartbeat.start();
+
+            try {
+                new Worker(Integer.parseInt(line[2])).run(line[0], Integer.parseInt(line[1]));
+            } finally {
+                heartbeat.interrupt();
+            }
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    // command line interface
+    //////////////////////////////////////////////////////////////////////
+    protected Path edge_path = null;
+    protected Path curbm_unfold_path = null;
+    protected Path summaryout_path = null;
+    protected Path workers_path = null;
+    protected long number_nodes = 0;
+    protected int nworkers = 1;
+    protected int block_width = 64;
+    protected int recursive_diagmult = 0;
+    protected int symmetric = 1;         // 0 if the edge blocks were not built with makesym
+    protected int max_convergence = 0;
+    protected int max_iters = 0;
+    protected boolean local = false;
+    protected String layout_path = null;
+
+    // the launched workers: processes in local mode, or the map-only job.
+    protected List<Process> processes = new ArrayList<Process>();
+    protected RunningJob worker_job = null;
+
+    // Main entry point.
+    public static void main(final String[] args) throws Exception {
+        final int result = ToolRunner.run(new Configuration(), new ConCmptBSP(), args);
+
+        System.exit(result);
+    }
+
+    // Print the command-line usage text.
+    protected static int printUsage() {
+        System.out.println("ConCmptBSP <edge_block_path> <# of nodes> <# of workers> <fast or normal> <block_width> <max_convergence> <max_iters> [local] [layout <block layout path>] [nosym]");
+        System.out.println("  nosym: the edge blocks were built by MatvecPrep with nosym. fast mode then multiplies");
+        System.out.println("         the diagonal blocks recursively instead of resolving them with union-find.");
+
+        ToolRunner.printGenericCommandUsage(System.out);
+
+        return -1;
+    }
+
+    public int run(final String[] args) throws Exception {
+        if (args.length < 7) {
+            return printUsage();
+        }
+
+        final FileSystem fs = FileSystem.get(getConf());
+        edge_path = fs.makeQualified(new Path(args[0]));
+        curbm_unfold_path = fs.makeQualified(new Path("concmpt_curbm"));
+        summaryout_path = new Path("concmpt_summaryout");
+        workers_path = new Path("concmpt_bsp_workers");
+        number_nodes = Long.parseLong(args[1]);
+        nworkers = Integer.parseInt(args[2]);
+
+        if (args[3].compareTo("fast") == 0)
+            recursive_diagmult = 1;
+        else
+            recursive_diagmult = 0;
+
+        block_width = Integer.parseInt(args[4]);
+
+        max_convergence = Integer.parseInt(args[5]);
+        if (max_convergence < 0)
+            max_convergence = 0;
+        max_iters = Integer.parseInt(args[6]);
+        if (max_iters < 0 || max_iters > ConCmptBlock.MAX_ITERATIONS)
+            max_iters = ConCmptBlock.MAX_ITERATIONS;
+
+        for (int i = 7; i < args.length; i++) {
+            if (args[i].equals("local")) {
+                local = true;
+            } else if (args[i].equals("layout") && i + 1 < args.length) {
+                layout_path = fs.makeQualified(new Path(args[++i])).toString();
+            } else if (args[i].equals("nosym")) {
+                symmetric = 0;
+            } else {
+                return printUsage();
+            }
+        }
+
+        System.out.println("\n-----===[PEGASUS: A Peta-Scale Graph Mining System]===-----\n");
+        System.out.println("[PEGASUS] Computing connected component with " + nworkers + (local ? " local" : "") + " BSP workers. block_width = " + block_width);
+
+        if (fs.exists(curbm_unfold_path) || fs.exists(summaryout_path)) {
+            System.err.println("[PEGASUS] Output directory " + curbm_unfold_path + " or " + summaryout_path + " already exists.");
+            return -1;
+        }
+
+        long start_time = System.currentTimeMillis();
+        BlockLayout layout = BlockLayout.get(configWorkers(), number_nodes, block_width);
+        int iter_counter = 0;
+
+        ServerSocket server = new ServerSocket(0, 1024);
+        server.setSoTimeout(ACCEPT_TIMEOUT_MS);
+        Socket[] sockets = new Socket[nworkers];
+        try {
+            String host = local ? "127.0.0.1" : InetAddress.getLocalHost().getHostAddress();
+            launchWorkers(fs, host, server.getLocalPort());
+
+            // hello from every worker
+            DataInputStream[] in = new DataInputStream[nworkers];
+            DataOutputStream[] out = new DataOutputStream[nworkers];
+            String[] peer_hosts = new String[nworkers];
+            int[] peer_ports = new int[nworkers];
+            long register_deadline = System.currentTimeMillis() + getConf().getLong("bsp.register.timeout.ms", REGISTER_TIMEOUT_MS);
+            for (int connected = 0; connected < nworkers; ) {
+                Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (SocketTimeoutException e) {
+                    checkWorkers();
+                    if (System.currentTimeMillis() > register_deadline)
+                        throw new IOException("ConCmptBSP: only " + connected + " of " + nworkers + " workers connected in time. All the workers must run at once: are there enough map slots?");
+                    continue;
+                }
+
+                DataInputStream socket_in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                int id = socket_in.readInt();
+                sockets[id] = socket;
+                in[id] = socket_in;
+                out[id] = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                peer_hosts[id] = Text.readString(socket_in);
+                peer_ports[id] = socket_in.readInt();
+                connected++;
+            }
+
+            JobConf worker_conf = configWorkers();
+            for (int p = 0; p < nworkers; p++) {
+                worker_conf.write(out[p]);
+                out[p].writeInt(nworkers);
+                for (int q = 0; q < nworkers; q++) {
+                    Text.writeString(out[p], peer_hosts[q]);
+                    out[p].writeInt(peer_ports[q]);
+                }
+                out[p].flush();
+            }
+
+            long num_blocks = 0;
+            long nnz = 0;
+            for (int p = 0; p < nworkers; p++) {
+                num_blocks += in[p].readLong();
+                nnz += in[p].readLong();
+            }
+            System.out.println("[PEGASUS] Loaded " + nnz + " elements in " + num_blocks + " blocks in " + (System.currentTimeMillis() - start_time) + " ms.");
+
+            // Iteratively calculate neighborhood function.
+            for (int i = 0; i < ConCmptBlock.MAX_ITERATIONS; i++) {
+                iter_counter++;
+                long step_start = System.currentTimeMillis();
+
+                for (int p = 0; p < nworkers; p++) {
+                    out[p].writeInt(SUPERSTEP);
+                    out[p].flush();
+                }
+
+                long changed = 0;
+                long sent = 0;
+                for (int p = 0; p < nworkers; p++) {
+                    changed += in[p].readLong();
+                    sent += in[p].readLong();
+                }
+                long unchanged = layout.numBlocks() - changed;
+
+                System.out.println("Hop " + i + " : changed = " + changed + ", unchanged = " + unchanged + ", partial vectors sent = " + sent + ", " + (System.currentTimeMillis() - step_start) + " ms");
+
+                // Stop when the minimum neighborhood doesn't change
+                if (changed <= max_convergence || i >= max_iters) {
+                    System.out.printf("Converging with %d active vertices (%d max for convergence) after %d iterations (%d max).\n", changed, max_convergence, i, max_iters);
+                    break;
+                }
+            }
+
+            System.out.println("Writing connected components information...");
+            long written = 0;
+            for (int p = 0; p < nworkers; p++) {
+                out[p].writeInt(FINISH);
+                out[p].flush();
+            }
+            for (int p = 0; p < nworkers; p++)
+                written += in[p].readLong();
+            if (written != number_nodes)
+                throw new IOException("ConCmptBSP: the workers wrote " + written + " nodes out of " + number_nodes);
+
+            waitWorkers();
+        } finally {
+            for (Socket socket : sockets) {
+                if (socket != null)
+                    socket.close();
+            }
+            server.close();
+            stopWorkers();
+            fs.delete(workers_path, true);
+        }
+
+        // summary of the components
+        JobClient.runJob(configSummary());
+
+        System.out.println("\n[PEGASUS] Connected component computed in " + (System.currentTimeMillis() - start_time) + " ms.");
+        System.out.println("[PEGASUS] Total Iteration = " + iter_counter);
+        System.out.println("[PEGASUS] Connected component information is saved in the HDFS concmpt_curbm as\n\"node_id	'msf'component_id\" format");
+        System.out.println("[PEGASUS] Connected component distribution is saved in the HDFS concmpt_summaryout as\n\"component_id	number_of_nodes\" format.\n");
+
+        return 0;
+    }
+
+    // the configuration sent to the workers.
+    protected JobConf configWorkers() {
+        final JobConf conf = new JobConf(getConf(), ConCmptBSP.class);
+        conf.set("edge_path", edge_path.toString());
+        conf.set("curbm_path", curbm_unfold_path.toString());
+        conf.set("number_nodes", "" + number_nodes);
+        conf.set("block_width", "" + block_width);
+        conf.set("recursive_diagmult", "" + recursive_diagmult);
+        conf.set("symmetric", "" + symmetric);
+        if (layout_path != null)
+            conf.set("block_layout", layout_path);
+
+        return conf;
+    }
+
+    protected void launchWorkers(FileSystem fs, String host, int port) throws Exception {
+        if (local) {
+            String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+            String[] java_opts = getConf().get("bsp.worker.java.opts", "-Xmx1024m").trim().split("\\s+");
+            for (int p = 0; p < nworkers; p++) {
+                List<String> command = new ArrayList<String>();
+                command.add(java);
+                command.addAll(Arrays.asList(java_opts));
+                command.add("-cp");
+                command.add(workerClassPath());
+                command.add(Worker.class.getName());
+                command.add(host);
+                command.add("" + port);
+                command.add("" + p);
+
+                ProcessBuilder builder = new ProcessBuilder(command);
+                builder.inheritIO();
+                processes.add(builder.start());
+            }
+            return;
+        }
+
+        // one line, and so one map task, per worker.
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(fs.create(new Path(workers_path, "workers.txt"), true), "UTF-8"));
+        for (int p = 0; p < nworkers; p++)
+            writer.write(host + "\t" + port + "\t" + p + "\n");
+        writer.close();
+
+        JobConf job_conf = configWorkerJob();
+        worker_job = new JobClient(job_conf).submitJob(job_conf);
+        System.out.println("[PEGASUS] Submitted the workers as " + worker_job.getID());
+    }
+
+    // the class path of the driver, and the job jar: "hadoop jar" loads it outside of java.class.path.
+    protected String workerClassPath() throws IOException {
+        String class_path = System.getProperty("java.class.path");
+        String jar = new JobConf(getConf(), ConCmptBSP.class).getJar();
+        if (jar == null) {
+            try {
+                jar = new File(ConCmptBSP.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+            } catch (Exception e) {
+                throw new IOException("ConCmptBSP: cannot find the location of the classes", e);
+            }
+        }
+
+        return jar + File.pathSeparator + class_path;
+    }
+
+    // fail if a worker ended before connecting.
+    protected void checkWorkers() throws IOException {
+        for (Process process : processes) {
+            try {
+                int code = process.exitValue();
+                if (code != 0)
+                    throw new IOException("ConCmptBSP: a worker exited with " + code);
+            } catch (IllegalThreadStateException e) {
+                // running
+            }
+        }
+
+        if (worker_job != null && worker_job.isComplete())
+            throw new IOException("ConCmptBSP: the worker job " + worker_job.getID() + " ended before all workers connected");
+    }
+
+    protected void waitWorkers() throws IOException {
+        for (Process process : processes) {
+            try {
+                if (process.waitFor() != 0)
+                    throw new IOException("ConCmptBSP: a worker exited with " + process.exitValue());
+            } catch (InterruptedException e) {
+                throw new IOException("ConCmptBSP: interrupted", e);
+            }
+        }
+        processes.clear();
+
+        if (worker_job != null) {
+            worker_job.waitForCompletion();
+            if (!worker_job.isSuccessful())
+                throw new IOException("ConCmptBSP: the worker job " + worker_job.getID() + " failed");
+            worker_job = null;
+        }
+    }
+
+    protected void stopWorkers() throws IOException {
+        for (Process process : processes)
+            process.destroy();
+        processes.clear();
+
+        if (worker_job != null && !worker_job.isComplete())
+            worker_job.killJob();
+    }
+
+    // Configure the map-only job running the workers
+    protected JobConf configWorkerJob() throws Exception {
+        final JobConf conf = new JobConf(getConf(), ConCmptBSP.class);
+        conf.setJobName("data-piqid.pegasus.ConCmptBSP_workers");
+
+        conf.setMapperClass(MapWorker.class);
+        conf.setInputFormat(NLineInputFormat.class);
+        conf.setInt("mapred.line.input.format.linespermap", 1);
+        conf.setOutputFormat(NullOutputFormat.class);
+        FileInputFormat.setInputPaths(conf, workers_path);
+
+        // a worker cannot be restarted alone, and all of them must run at once.
+        conf.setNumReduceTasks(0);
+        conf.setMapSpeculativeExecution(false);
+        conf.setMaxMapAttempts(1);
+
+        conf.setOutputKeyClass(NullWritable.class);
+        conf.setOutputValueClass(NullWritable.class);
+
+        return conf;
+    }
+
+    // Configure the summary
+    protected JobConf configSummary() throws Exception {
+        final JobConf conf = new JobConf(getConf(), ConCmptBSP.class);
+        conf.setJobName("data-piqid.pegasus.ConCmptBSP_summary");
+
+        conf.setMapperClass(ConCmptStar.MapStage4.class);
+        conf.setReducerClass(ConCmptBlock.RedStage5.class);
+        conf.setCombinerClass(ConCmptBlock.RedStage5.class);
+
+        FileInputFormat.setInputPaths(conf, curbm_unfold_path);
+        FileOutputFormat.setOutputPath(conf, summaryout_path);
+        FileOutputFormat.setCompressOutput(conf, true);
+        FileOutputFormat.setOutputCompressorClass(conf, SnappyCodec.class);
+
+        conf.setNumReduceTasks(nworkers);
+
+        conf.setOutputKeyClass(LongWritable.class);
+        conf.setOutputValueClass(LongWritable.class);
+
+        return conf;
+    }
+}
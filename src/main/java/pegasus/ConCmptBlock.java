@@ -29,211 +29,365 @@ import org.apache.hadoop.fs.*;
 import org.apache.hadoop.io.*;
 import org.apache.hadoop.io.compress.SnappyCodec;
 import org.apache.hadoop.mapred.*;
+import org.apache.hadoop.mapred.join.CompositeInputFormat;
+import org.apache.hadoop.mapred.join.TupleWritable;
+import org.apache.hadoop.mapred.lib.HashPartitioner;
 import org.apache.hadoop.util.*;
 
 public class ConCmptBlock extends Configured implements Tool {
-    public static int MAX_ITERATIONS = 1024;
-    public static long changed_nodes[] = new long[MAX_ITERATIONS];
-    public static long unchanged_nodes[] = new long[MAX_ITERATIONS];
+    // number of vector blocks whose component ids changed/unchanged in an iteration, counted by RedStage2.
+    public static enum ConvergenceCounter {CHANGED, UNCHANGED}
+    // number of edge blocks not multiplied in frontier mode, because their vector block did not change.
+    public static enum FrontierCounter {SKIPPED_BLOCKS}
 
-    static int iter_counter = 0;
+    public static int MAX_ITERATIONS = 1024;
 
 
     //////////////////////////////////////////////////////////////////////
-    // STAGE 1: generate partial block-component ids.
-    //          Hash-join edge and vector by Vector.BLOCKROWID == Edge.BLOCKCOLID where
-    //          vector: key=BLOCKID, value= msu (IN-BLOCK-INDEX VALUE)s
-    //                                      moc
-    //          edge: key=BLOCK-ROW		BLOCK-COL, value=(IN-BLOCK-ROW IN-BLOCK-COL VALUE)s
-    //  - Input: edge_file, component_ids_from_the_last_iteration
-    //  - Output: partial component ids
+    // STAGE 0: lay out the edge matrix and the initial vector for the map-side join. Runs once.
+    //          Both are keyed by the block id they are joined on, and written with the
+    //          same partitioner and number of partitions as the output of STAGE 2.
+    //          edge: key=BLOCK-COL, value=BlockWritable
+    //          vector: key=BLOCKID, value=VectorWritable
+    //  - Input: edge_file (or initial vector) from MatvecPrep
+    //  - Output: sorted, partitioned edge blocks (or vector blocks)
     //////////////////////////////////////////////////////////////////////
-    public static class MapStage1 extends MapReduceBase implements Mapper<LongWritable, Text, LongWritable, Text> {
-        public void map(final LongWritable key, final Text value, final OutputCollector<LongWritable, Text> output, final Reporter reporter) throws IOException {
-            String line_text = value.toString();
-            if (line_text.startsWith("#"))                // ignore comments in edge file
-                return;
+    public static class MapStage0 extends MapReduceBase implements Mapper<LongWritable, Writable, LongWritable, MatVecWritable> {
+        private final LongWritable out_key = new LongWritable();
+        private final MatVecWritable out_value = new MatVecWritable();
 
-            final String[] line = line_text.split("\t");
+        public void map(final LongWritable key, final Writable value, final OutputCollector<LongWritable, MatVecWritable> output, final Reporter reporter) throws IOException {
+            Writable cur_value = MatVecWritable.unwrap(value);
 
-            if (line.length < 2)
-                return;
+            if (cur_value instanceof VectorWritable) {    // vector. component information.
+                out_key.set(key.get());
+            } else {                                        // edge
+                out_key.set(((BlockWritable) cur_value).block_col);
+            }
+
+            out_value.set(cur_value);
+            output.collect(out_key, out_value);
+        }
+    }
+
+    public static class RedStage0 extends MapReduceBase implements Reducer<LongWritable, MatVecWritable, LongWritable, Writable> {
+        public void reduce(final LongWritable key, final Iterator<MatVecWritable> values, OutputCollector<LongWritable, Writable> output, final Reporter reporter) throws IOException {
+            while (values.hasNext())
+                output.collect(key, values.next().get());
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    // STAGE 0 (incremental): lay out a converged vector for new edges, instead of the initial vector.
+    //          A vector block touched by a delta edge block is marked INCOMPLETE, and every
+    //          other block FINISHED, so that the frontier iterations start from the delta only.
+    //          Nodes which are new to the graph become their own components.
+    //  - Input: the converged vector, and the delta edge blocks from MatvecPrep
+    //  - Output: sorted, partitioned vector blocks
+    //////////////////////////////////////////////////////////////////////
+    public static class MapStage0Seed extends MapReduceBase implements Mapper<LongWritable, Writable, LongWritable, MatVecWritable> {
+        private final LongWritable out_key = new LongWritable();
+        private final MatVecWritable out_value = new MatVecWritable();
+        private final VectorWritable touched = new VectorWritable();    // empty partial vector, marks a touched block
+
+        public void configure(JobConf job) {
+            touched.kind = VectorWritable.PARTIAL;
+        }
 
-            if (line.length == 2) {    // vector. component information.
-                output.collect(new LongWritable(Long.parseLong(line[0])), new Text(line[1]));
-            } else {                    // edge
-                output.collect(new LongWritable(Long.parseLong(line[1])), new Text(line[0] + "\t" + line[2]));
+        public void map(final LongWritable key, final Writable value, final OutputCollector<LongWritable, MatVecWritable> output, final Reporter reporter) throws IOException {
+            Writable cur_value = MatVecWritable.unwrap(value);
+
+            if (cur_value instanceof VectorWritable) {    // converged vector
+                out_value.set(cur_value);
+                output.collect(key, out_value);
+            } else {                                        // delta edge. both ends are touched.
+                BlockWritable cur_block = (BlockWritable) cur_value;
+                out_value.set(touched);
+
+                out_key.set(cur_block.block_col);
+                output.collect(out_key, out_value);
+                if (cur_block.block_row != cur_block.block_col) {
+                    out_key.set(cur_block.block_row);
+                    output.collect(out_key, out_value);
+                }
             }
         }
     }
 
-    public static class RedStage1 extends MapReduceBase implements Reducer<LongWritable, Text, LongWritable, Text> {
+    public static class RedStage0Seed extends MapReduceBase implements Reducer<LongWritable, MatVecWritable, LongWritable, VectorWritable> {
         protected int block_width;
-        protected int recursive_diagmult;
+        protected long number_nodes;
+        protected BlockLayout layout;
+
+        private final VectorWritable out_vector = new VectorWritable();
+        private DenseLongVector vals;
 
         public void configure(JobConf job) {
             block_width = Integer.parseInt(job.get("block_width"));
-            recursive_diagmult = Integer.parseInt(job.get("recursive_diagmult"));
-            System.out.println("RedStage1: block_width=" + block_width + ", recursive_diagmult=" + recursive_diagmult);
+            number_nodes = Long.parseLong(job.get("number_nodes"));
+            layout = BlockLayout.configure(job, number_nodes, block_width);
+            vals = new DenseLongVector(block_width);
+            System.out.println("RedStage0Seed: block_width=" + block_width + ", number_nodes=" + number_nodes + ", blocks=" + layout.numBlocks());
         }
 
-        public void reduce(final LongWritable key, final Iterator<Text> values, OutputCollector<LongWritable, Text> output, final Reporter reporter) throws IOException {
-            ArrayList<VectorElem<Long>> vectorArr = null;        // save vector
-            ArrayList<ArrayList<BlockElem<Long>>> blockArr = new ArrayList<ArrayList<BlockElem<Long>>>();    // save blocks
-            ArrayList<Long> blockRowArr = new ArrayList<Long>();    // save block rows(integer)
+        public void reduce(final LongWritable key, final Iterator<MatVecWritable> values, final OutputCollector<LongWritable, VectorWritable> output, final Reporter reporter) throws IOException {
+            boolean is_touched = false;
+            vals.clear();
 
             while (values.hasNext()) {
-                // vector: key=BLOCKID, value= (IN-BLOCK-INDEX VALUE)s
-                // edge: key=BLOCK-COLID	BLOCK-ROWID, value=(IN-BLOCK-COL IN-BLOCK-ROW VALUE)s
-                String line_text = values.next().toString();
-                final String[] line = line_text.split("\t");
-
-                if (line.length == 1) {    // vector : VALUE
-                    vectorArr = GIMV.parseVectorVal(line_text.substring(3), Long.class);
-                } else {                    // edge : BLOCK-ROWID		VALUE
-                    blockArr.add(GIMV.parseBlockVal(line[1], Long.class));
-                    long block_row = Long.parseLong(line[0]);
-                    blockRowArr.add(block_row);
+                VectorWritable cur_vector = values.next().getVector();
+
+                if (cur_vector.kind == VectorWritable.SELF)
+                    vals.minAll(cur_vector);
+                else
+                    is_touched = true;
+            }
+
+            // add the nodes which are new to the graph.
+            long start_node = layout.start(key.get());
+            int width = layout.width(key.get());
+            for (int i = 0; i < width; i++) {
+                if (!vals.isSet(i)) {
+                    vals.set(i, start_node + i);
+                    is_touched = true;
                 }
             }
 
-            int blockCount = blockArr.size();
-            if (vectorArr == null)// || blockCount == 0 ) // missing vector or block.
+            if (vals.isEmpty())
                 return;
 
-            // output 'self' block to check convergence
-            output.collect(key, GIMV.formatVectorElemOutput("msi", vectorArr));
+            vals.store(out_vector);
+            out_vector.kind = VectorWritable.SELF;
+            out_vector.status = is_touched ? VectorWritable.INCOMPLETE : VectorWritable.FINISHED;
+            output.collect(key, out_vector);
+        }
+    }
 
-            // For every matrix block, join it with vector and output partial results
-            Iterator<ArrayList<BlockElem<Long>>> blockArrIter = blockArr.iterator();
-            Iterator<Long> blockRowIter = blockRowArr.iterator();
-            while (blockArrIter.hasNext()) {
-                ArrayList<BlockElem<Long>> cur_block = blockArrIter.next();
-                long cur_block_row = blockRowIter.next();
+    //////////////////////////////////////////////////////////////////////
+    // STAGE 1: generate partial block-component ids.
+    //          Map-side merge join of edge and vector by Vector.BLOCKROWID == Edge.BLOCKCOLID
+    //          using CompositeInputFormat over the outputs of STAGE 0 and the last STAGE 2,
+    //          so only the vector and the partial results go through the shuffle.
+    //          STAGE 1 and STAGE 2 run as one job: MapStage1 -> RedStage2.
+    //          In frontier mode, a vector block which did not change in the last iteration
+    //          is only carried forward: its partial results were already merged by its
+    //          neighbors, and taking the minimum with them again can not change anything.
+    //          With skew, the edge blocks of a heavy block column are spread over several
+    //          partitions by SkewPartitioner. The tuples of the other partitions have no
+    //          vector, and are multiplied with a copy read from the vector MapFile.
+    //  - Input: (edge blocks, vector block) tuples
+    //  - Output: self vector and partial component ids
+    //////////////////////////////////////////////////////////////////////
+    public static class MapStage1 extends MapReduceBase implements Mapper<LongWritable, TupleWritable, LongWritable, VectorWritable> {
+        protected int block_width;
+        protected int recursive_diagmult;
+        protected int symmetric;
+        protected int frontier;
+
+        // scratch buffers, reused for every record.
+        private final VectorWritable self_vector = new VectorWritable();
+        private final VectorWritable out_vector = new VectorWritable();
+        private final LongWritable out_key = new LongWritable();
+        private DenseLongVector vector;
+        private DenseLongVector mult_result;
+        private DenseLongVector mult_temp;
+        private final BitsetBlock dense_block = new BitsetBlock();
+        private UnionFind diag_sets;
+        private boolean has_vector_key = false;
+        private long vector_key;    // block id whose vector is loaded in 'vector'
+        private boolean vector_active;    // false if 'vector' did not change in the last iteration
+        private final Map<Long, VectorWritable> heavy_vectors = new HashMap<Long, VectorWritable>();
 
-                ArrayList<VectorElem<Long>> cur_mult_result = null;
+        public void configure(JobConf job) {
+            block_width = Integer.parseInt(job.get("block_width"));
+            recursive_diagmult = Integer.parseInt(job.get("recursive_diagmult"));
+            symmetric = Integer.parseInt(job.get("symmetric", "1"));
+            frontier = Integer.parseInt(job.get("frontier", "0"));
+            vector = new DenseLongVector(block_width);
+            mult_result = new DenseLongVector(block_width);
+            mult_temp = new DenseLongVector(block_width);
+            diag_sets = new UnionFind(block_width);
+
+            // the edge blocks of a heavy column are spread over several partitions,
+            // but its vector block is only in the home partition. read a copy of it.
+            Map<Long, Integer> heavy_columns = SkewPartitioner.getHeavyColumns(job);
+            if (!heavy_columns.isEmpty()) {
+                try {
+                    Path vector_path = new Path(job.get("vector_path"));
+                    FileSystem fs = vector_path.getFileSystem(job);
+                    FileStatus[] parts = fs.globStatus(new Path(vector_path, "part-*"));
+                    Arrays.sort(parts);
+                    MapFile.Reader[] readers = new MapFile.Reader[parts.length];
+                    for (int i = 0; i < parts.length; i++)
+                        readers[i] = new MapFile.Reader(fs, parts[i].getPath().toString(), job);
+                    HashPartitioner<LongWritable, VectorWritable> partitioner = new HashPartitioner<LongWritable, VectorWritable>();
+                    for (Long column : heavy_columns.keySet()) {
+                        VectorWritable heavy_vector = new VectorWritable();
+                        if (MapFileOutputFormat.getEntry(readers, partitioner, new LongWritable(column), heavy_vector) != null)
+                            heavy_vectors.put(column, heavy_vector);
+                    }
+                    for (MapFile.Reader reader : readers)
+                        reader.close();
+                } catch (IOException e) {
+                    throw new RuntimeException("MapStage1: failed to read the vectors of the heavy columns", e);
+                }
+            }
 
-                if (key.get() == cur_block_row && recursive_diagmult == 1) {    // do recursive multiplication
-                    ArrayList<VectorElem<Long>> tempVectorArr = vectorArr;
-                    for (int i = 0; i < block_width; i++) {
-                        cur_mult_result = GIMV.minBlockVector(cur_block, tempVectorArr, block_width, 1);
-                        if (cur_mult_result == null || GIMV.compareVectors(tempVectorArr, cur_mult_result) == 0)
-                            break;
+            System.out.println("MapStage1: block_width=" + block_width + ", recursive_diagmult=" + recursive_diagmult + ", symmetric=" + symmetric + ", frontier=" + frontier + ", heavy columns=" + heavy_vectors.size());
+        }
 
-                        tempVectorArr = cur_mult_result;
-                    }
+        // tuple : 0 = edge block, 1 = vector block.
+        // the join emits one tuple for every edge block of a block column, and the keys are sorted.
+        public void map(final LongWritable key, final TupleWritable value, final OutputCollector<LongWritable, VectorWritable> output, final Reporter reporter) throws IOException {
+            if (!has_vector_key || vector_key != key.get()) {
+                VectorWritable cur_vector;
+                if (value.has(1)) {
+                    // first tuple of this block. output 'self' block to check convergence
+                    cur_vector = (VectorWritable) MatVecWritable.unwrap(value.get(1));
+                    self_vector.set(cur_vector);
+                    self_vector.kind = VectorWritable.SELF;
+                    self_vector.status = VectorWritable.INCOMPLETE;
+                    output.collect(key, self_vector);
                 } else {
-                    cur_mult_result = GIMV.minBlockVector(cur_block, vectorArr, block_width, 0);
+                    // a slice of a heavy column, away from its home partition.
+                    cur_vector = heavy_vectors.get(key.get());
+                    if (cur_vector == null)    // missing vector.
+                        return;
                 }
 
-                Text output_vector = GIMV.formatVectorElemOutput("moi", cur_mult_result);
-                if (output_vector.toString().length() > 0)
-                    output.collect(new LongWritable(cur_block_row), output_vector);
+                vector_active = frontier == 0 || cur_vector.status != VectorWritable.FINISHED;
+                vector.load(cur_vector);
+                dense_block.vectorChanged();
+                vector_key = key.get();
+                has_vector_key = true;
             }
+
+            if (!value.has(0))    // missing block.
+                return;
+
+            if (!vector_active) {
+                reporter.incrCounter(FrontierCounter.SKIPPED_BLOCKS, 1);
+                return;
+            }
+
+            // join the matrix block with vector and output partial results
+            BlockWritable cur_block = (BlockWritable) value.get(0);
+            DenseLongVector cur_mult_result;
+
+            if (key.get() == cur_block.block_row && recursive_diagmult == 1 && symmetric == 1) {    // resolve the diagonal block at once
+                GIMV.minBlockVectorUnionFind(cur_block, vector, mult_result, diag_sets, mult_temp);
+                cur_mult_result = mult_result;
+            } else if (key.get() == cur_block.block_row && recursive_diagmult == 1) {    // do recursive multiplication
+                cur_mult_result = GIMV.minBlockVectorRecursive(cur_block, vector, mult_result, mult_temp, block_width, dense_block);
+            } else {
+                mult_result.clear();
+                GIMV.multiply(cur_block, vector, mult_result, LongSemiring.MIN, dense_block);
+                cur_mult_result = mult_result;
+            }
+
+            if (!cur_mult_result.isEmpty()) {
+                cur_mult_result.store(out_vector);
+                out_vector.kind = VectorWritable.PARTIAL;
+                out_vector.status = VectorWritable.INCOMPLETE;
+                out_key.set(cur_block.block_row);
+                output.collect(out_key, out_vector);
+            }
+        }
+    }
+
+    // combine partial results of a map task. the self vector is passed through.
+    public static class CombStage1 extends MapReduceBase implements Reducer<LongWritable, VectorWritable, LongWritable, VectorWritable> {
+        private final VectorWritable out_vector = new VectorWritable();
+        private DenseLongVector out_vals;
+
+        public void configure(JobConf job) {
+            out_vals = new DenseLongVector(Integer.parseInt(job.get("block_width")));
         }
 
+        public void reduce(final LongWritable key, final Iterator<VectorWritable> values, final OutputCollector<LongWritable, VectorWritable> output, final Reporter reporter) throws IOException {
+            boolean has_partial = false;
+            out_vals.clear();
+
+            while (values.hasNext()) {
+                VectorWritable cur_vector = values.next();
+
+                if (cur_vector.kind == VectorWritable.SELF) {
+                    output.collect(key, cur_vector);
+                } else {
+                    out_vals.combineAll(cur_vector, LongSemiring.MIN);
+                    has_partial = true;
+                }
+            }
+
+            if (has_partial) {
+                out_vals.store(out_vector);
+                out_vector.kind = VectorWritable.PARTIAL;
+                out_vector.status = VectorWritable.INCOMPLETE;
+                output.collect(key, out_vector);
+            }
+        }
     }
 
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
     // STAGE 2: merge partial comonent ids.
+    //          This is the reduce phase of the STAGE 1 job.
+    //          The number of changed/unchanged blocks is published through ConvergenceCounter,
+    //          which replaces the old counting pass.
     //  - Input: partial component ids
     //  - Output: combined component ids
     ////////////////////////////////////////////////////////////////////////////////////////////////
-    public static class MapStage2 extends MapReduceBase implements Mapper<LongWritable, Text, LongWritable, Text> {
-        // Identity mapper
-        public void map(final LongWritable key, final Text value, final OutputCollector<LongWritable, Text> output, final Reporter reporter) throws IOException {
-            final String[] line = value.toString().split("\t");
-
-            output.collect(new LongWritable(Long.parseLong(line[0])), new Text(line[1]));
-        }
-    }
-
-    public static class RedStage2 extends MapReduceBase implements Reducer<LongWritable, Text, LongWritable, Text> {
+    public static class RedStage2 extends MapReduceBase implements Reducer<LongWritable, VectorWritable, LongWritable, VectorWritable> {
         protected int block_width;
 
+        // scratch buffers, reused for every key.
+        private final VectorWritable out_vector = new VectorWritable();
+        private DenseLongVector self_vals;
+        private DenseLongVector out_vals;
+
         public void configure(JobConf job) {
             block_width = Integer.parseInt(job.get("block_width"));
+            self_vals = new DenseLongVector(block_width);
+            out_vals = new DenseLongVector(block_width);
             System.out.println("RedStage2: block_width=" + block_width);
         }
 
-        public void reduce(final LongWritable key, final Iterator<Text> values, final OutputCollector<LongWritable, Text> output, final Reporter reporter) throws IOException {
-            ArrayList<VectorElem<Long>> self_vector = null;
-            long[] out_vals = new long[block_width];
-            for (int i = 0; i < block_width; i++)
-                out_vals[i] = -1;
+        public void reduce(final LongWritable key, final Iterator<VectorWritable> values, final OutputCollector<LongWritable, VectorWritable> output, final Reporter reporter) throws IOException {
+            boolean has_self = false;
+            out_vals.clear();
 
             int n = 0;
             while (values.hasNext()) {
-                String cur_str = values.next().toString();
+                VectorWritable cur_vector = values.next();
 
-                if (cur_str.charAt(1) == 's') {
-                    self_vector = GIMV.parseVectorVal(cur_str.substring(3), Long.class);
+                if (cur_vector.kind == VectorWritable.SELF) {
+                    self_vals.load(cur_vector);
+                    has_self = true;
                 }
 
-                ArrayList<VectorElem<Long>> cur_vector = GIMV.parseVectorVal(cur_str.substring(3), Long.class);
-                Iterator<VectorElem<Long>> vector_iter = cur_vector.iterator();
-
-                while (vector_iter.hasNext()) {
-                    VectorElem<Long> v_elem = vector_iter.next();
-
-                    if (out_vals[v_elem.row] == -1)
-                        out_vals[v_elem.row] = v_elem.val;
-                    else if (out_vals[v_elem.row] > v_elem.val)
-                        out_vals[v_elem.row] = v_elem.val;
-                }
+                out_vals.combineAll(cur_vector, LongSemiring.MIN);
                 n++;
             }
 
-            ArrayList<VectorElem<Long>> new_vector = GIMV.makeLongVectors(out_vals, block_width);
-            if (self_vector == null) {
+            if (!has_self) {
                 reporter.incrCounter("ERROR", "self_vector == null", 1);
                 System.err.println("ERROR: self_vector == null, key=" + key + ", # values" + n);
                 return;
             }
-            int isDifferent = GIMV.compareVectors(self_vector, new_vector);
 
-            String out_prefix = "ms";
-            if (isDifferent == 1)
-                out_prefix += "i";    // incomplete
-            else
-                out_prefix += "f";    // finished
-
-            output.collect(key, GIMV.formatVectorElemOutput(out_prefix, new_vector));
-        }
-    }
-
-    //////////////////////////////////////////////////////////////////////
-    // STAGE 3: Calculate number of nodes whose component id changed/unchanged.
-    //  - Input: current component ids
-    //  - Output: number_of_changed_nodes
-    //////////////////////////////////////////////////////////////////////
-    public static class MapStage3 extends MapReduceBase implements Mapper<LongWritable, Text, Text, Text> {
-        // output : f n		( n : # of node whose component didn't change)
-        //          i m		( m : # of node whose component changed)
-        public void map(final LongWritable key, final Text value, final OutputCollector<Text, Text> output, final Reporter reporter) throws IOException {
-            if (value.toString().startsWith("#"))
-                return;
-
-            final String[] line = value.toString().split("\t");
-            char change_prefix = line[1].charAt(2);
-
-            output.collect(new Text(Character.toString(change_prefix)), new Text(Integer.toString(1)));
-        }
-    }
-
-    public static class RedStage3 extends MapReduceBase implements Reducer<Text, Text, Text, Text> {
-        public void reduce(final Text key, final Iterator<Text> values, final OutputCollector<Text, Text> output, final Reporter reporter) throws IOException {
-            long sum = 0;
-
-            while (values.hasNext()) {
-                final String line = values.next().toString();
-                long cur_value = Long.parseLong(line);
+            GIMV.makeLongVectors(out_vals, out_vector);
+            int isDifferent = GIMV.compareVectors(self_vals, out_vals);
 
-                sum += cur_value;
+            out_vector.kind = VectorWritable.SELF;
+            if (isDifferent == 1) {
+                out_vector.status = VectorWritable.INCOMPLETE;
+                reporter.incrCounter(ConvergenceCounter.CHANGED, 1);
+            } else {
+                out_vector.status = VectorWritable.FINISHED;
+                reporter.incrCounter(ConvergenceCounter.UNCHANGED, 1);
             }
 
-            output.collect(key, new Text(Long.toString(sum)));
+            output.collect(key, out_vector);
         }
     }
 
@@ -241,30 +395,34 @@ public class ConCmptBlock extends Configured implements Tool {
     // STAGE 4: Unfold the block component id format to plain format, after the bitstrings converged.
     //         This is a map-only stage.
     //  - Input: the converged component ids
-    //  - Output: (node_id, "msu"component_id)
+    //  - Output: (node_id, "msu"component_id) as text, for compatibility with the text tools.
     //////////////////////////////////////////////////////////////////////
-    public static class MapStage4 extends MapReduceBase implements Mapper<LongWritable, Text, LongWritable, Text> {
+    public static class MapStage4 extends MapReduceBase implements Mapper<LongWritable, VectorWritable, LongWritable, Text> {
+        private final LongWritable out_key = new LongWritable();
+        private final Text out_value = new Text();
         int block_width;
+        BlockLayout layout;
 
         public void configure(JobConf job) {
             block_width = Integer.parseInt(job.get("block_width"));
+            layout = BlockLayout.configure(job, Long.parseLong(job.get("number_nodes")), block_width);
 
             System.out.println("MapStage4: block_width = " + block_width);
         }
 
         // input sample :
         //1       msu0 1 1 1
-        public void map(final LongWritable key, final Text value, final OutputCollector<LongWritable, Text> output, final Reporter reporter) throws IOException {
-            final String[] line = value.toString().split("\t");
-            final String[] tokens = line[1].substring(3).split(" ");
+        public void map(final LongWritable key, final VectorWritable value, final OutputCollector<LongWritable, Text> output, final Reporter reporter) throws IOException {
             int i;
-            long block_id = Long.parseLong(line[0]);
+            long block_id = key.get();
 
-            for (i = 0; i < tokens.length; i += 2) {
-                long elem_row = Long.parseLong(tokens[i]);
-                long component_id = Long.parseLong(tokens[i + 1]);
+            for (i = 0; i < value.size; i++) {
+                long elem_row = value.rows[i];
+                long component_id = value.vals[i];
 
-                output.collect(new LongWritable(block_width * block_id + elem_row), new Text("msf" + component_id));
+                out_key.set(layout.start(block_id) + elem_row);
+                out_value.set("msf" + component_id);
+                output.collect(out_key, out_value);
             }
         }
     }
@@ -275,7 +433,7 @@ public class ConCmptBlock extends Configured implements Tool {
     //    output : comcmpt_summaryout
     //             min_node_id, number_of_nodes_in_the_component
     //////////////////////////////////////////////////////////////////////
-    public static class MapStage5 extends MapReduceBase implements Mapper<LongWritable, Text, LongWritable, LongWritable> {
+    public static class MapStage5 extends MapReduceBase implements Mapper<LongWritable, VectorWritable, LongWritable, LongWritable> {
         private final LongWritable out_key_int = new LongWritable();
         private final LongWritable out_count_int = new LongWritable(1);
         int block_width;
@@ -286,13 +444,9 @@ public class ConCmptBlock extends Configured implements Tool {
             System.out.println("MapStage5 : configure is called.  block_width=" + block_width);
         }
 
-        public void map(final LongWritable key, final Text value, final OutputCollector<LongWritable, LongWritable> output, final Reporter reporter) throws IOException {
-            String line_text = value.toString();
-            final String[] line = line_text.split("\t");
-            final String[] elems = line[1].substring(3).split(" ");
-
-            for (int i = 0; i < elems.length; i += 2) {
-                long cur_minnode = Long.parseLong(elems[i + 1]);
+        public void map(final LongWritable key, final VectorWritable value, final OutputCollector<LongWritable, LongWritable> output, final Reporter reporter) throws IOException {
+            for (int i = 0; i < value.size; i++) {
+                long cur_minnode = value.vals[i];
 
                 out_key_int.set(cur_minnode);
                 output.collect(out_key_int, out_count_int);
@@ -323,17 +477,25 @@ public class ConCmptBlock extends Configured implements Tool {
     protected Path curbm_path = null;
     protected Path tempbm_path = null;
     protected Path nextbm_path = null;
-    protected Path output_path = null;
+    protected Path output_path = null;    // per-job metrics report
     protected Path curbm_unfold_path = null;
     protected Path summaryout_path = null;
-    protected String local_output_path;
     protected long number_nodes = 0;
     protected int nreducers = 1;
-    protected int cur_radius = 0;
     protected int block_width = 64;
     protected int recursive_diagmult = 0;
+    protected int symmetric = 1;         // 0 if the edge blocks were not built with makesym
     protected int max_convergence = 0;
     protected int max_iters = 0;
+    protected int frontier = 0;
+    protected Path delta_path = null;    // delta edge blocks in incremental mode
+    protected String layout_path = null; // boundaries of variable-size blocks
+    protected boolean skew = false;
+    protected String heavy_columns = ""; // heavy block columns, split over several partitions
+    protected Path ckpt_path = null;     // checkpoint and vector generations
+    protected boolean resume = false;
+    protected int retention = 1;         // number of vector generations to keep
+    protected JobMetrics metrics = null;
 
     // Main entry point.
     public static void main(final String[] args) throws Exception {
@@ -345,7 +507,15 @@ public class ConCmptBlock extends Configured implements Tool {
 
     // Print the command-line usage text.
     protected static int printUsage() {
-        System.out.println("ConCmptBlock <edge_path> <curbm_path> <tempbm_path> <nextbm_path> <output_path> <# of nodes> <# of reducers> <fast or normal> <block_width> <max_convergence> <max_iters>");
+        System.out.println("ConCmptBlock <edge_path> <curbm_path> <tempbm_path> <nextbm_path> <output_path> <# of nodes> <# of reducers> <fast or normal> <block_width> <max_convergence> <max_iters> [frontier] [incremental <delta_edge_path>] [resume] [retention <# of generations>] [layout <block_layout_path>] [skew] [nosym]");
+        System.out.println("  incremental: curbm_path is the converged vector of a previous run on edge_path,");
+        System.out.println("               and delta_edge_path holds the new edge blocks. implies frontier.");
+        System.out.println("  resume: continue from the last completed hop checkpointed in <curbm_path>_ckpt.");
+        System.out.println("  retention: number of vector generations kept in <curbm_path>_ckpt. default 1.");
+        System.out.println("  layout: variable-size blocks, as given to MatvecPrep. block_width is then the widest block.");
+        System.out.println("  skew: spread the edge blocks of the heavy block columns over several map tasks.");
+        System.out.println("  nosym: the edge blocks were built by MatvecPrep with nosym. fast mode then multiplies");
+        System.out.println("         the diagonal blocks recursively instead of resolving them with union-find.");
 
         ToolRunner.printGenericCommandUsage(System.out);
 
@@ -354,13 +524,14 @@ public class ConCmptBlock extends Configured implements Tool {
 
     // submit the map/reduce job.
     public int run(final String[] args) throws Exception {
-        if (args.length != 11) {
+        if (args.length < 11) {
             return printUsage();
         }
         int i;
 
         edge_path = new Path(args[0]);
         curbm_path = new Path(args[1]);
+        ckpt_path = new Path(args[1] + "_ckpt");
         tempbm_path = new Path(args[2]);
         nextbm_path = new Path(args[3]);
         output_path = new Path(args[4]);
@@ -383,67 +554,159 @@ public class ConCmptBlock extends Configured implements Tool {
         if (max_iters < 0 || max_iters > MAX_ITERATIONS)
                 max_iters = MAX_ITERATIONS;
 
+        for (i = 11; i < args.length; i++) {
+            if (args[i].compareTo("frontier") == 0) {
+                frontier = 1;
+            } else if (args[i].compareTo("incremental") == 0 && i + 1 < args.length) {
+                delta_path = new Path(args[++i]);
+                frontier = 1;
+            } else if (args[i].compareTo("resume") == 0) {
+                resume = true;
+            } else if (args[i].compareTo("retention") == 0 && i + 1 < args.length) {
+                retention = Math.max(Integer.parseInt(args[++i]), 1);
+            } else if (args[i].compareTo("layout") == 0 && i + 1 < args.length) {
+                layout_path = args[++i];
+            } else if (args[i].compareTo("skew") == 0) {
+                skew = true;
+            } else if (args[i].compareTo("nosym") == 0) {
+                symmetric = 0;
+            } else {
+                return printUsage();
+            }
+        }
+
         System.out.println("\n-----===[PEGASUS: A Peta-Scale Graph Mining System]===-----\n");
-        System.out.println("[PEGASUS] Computing connected component using block method. Reducers = " + nreducers + ", block_width = " + block_width);
+        System.out.println("[PEGASUS] Computing connected component using block method. Reducers = " + nreducers + ", block_width = " + block_width + (frontier == 1 ? ", frontier mode" : ""));
 
-        local_output_path = args[4] + "_temp";
+        final FileSystem fs = FileSystem.get(getConf());
 
-        // Iteratively calculate neighborhood function.
-        for (i = cur_radius; i < MAX_ITERATIONS; i++) {
-            cur_radius++;
-            iter_counter++;
+        block_width = BlockLayout.vectorWidth(fs, layout_path, block_width);
 
-            JobClient.runJob(configStage1());
-            JobClient.runJob(configStage2());
-            JobClient.runJob(configStage3());
-
-            FileUtil.fullyDelete(FileSystem.getLocal(getConf()), new Path(local_output_path));
+        // resume from the last completed hop, if there is a checkpoint.
+        IterationCheckpoint ckpt = null;
+        if (resume) {
+            ckpt = IterationCheckpoint.read(fs, ckpt_path);
+            if (ckpt == null)
+                System.out.println("No checkpoint in " + ckpt_path + ". Starting from hop 0.");
+            else if (!fs.exists(tempbm_path))
+                throw new IOException("Cannot resume: the partitioned edge matrix " + tempbm_path + " is missing.");
+            else
+                System.out.println("Resuming from hop " + ckpt.numHops() + ", vector = " + ckpt.vector());
+
+            // tempbm_path and the vector generations were laid out with these.
+            if (ckpt != null) {
+                ckpt.checkParam("nreducers", "" + nreducers);
+                ckpt.checkParam("block_width", "" + block_width);
+                ckpt.checkParam("number_nodes", "" + number_nodes);
+                ckpt.checkParam("layout_path", layout_path == null ? "" : layout_path);
+            }
+        }
 
-            final FileSystem fs = FileSystem.get(getConf());
+        // the metrics of a resumed run are appended to the report of the interrupted one.
+        metrics = new JobMetrics(new Path(output_path, "metrics.csv"));
+        if (ckpt != null)
+            metrics.load(fs);
+        else
+            fs.delete(output_path, true);
+
+        if (ckpt != null) {
+            // tempbm_path was laid out with these heavy columns.
+            heavy_columns = ckpt.params.containsKey("heavy_columns") ? ckpt.params.get("heavy_columns") : "";
+            if (ckpt.params.containsKey("symmetric"))
+                symmetric = Integer.parseInt(ckpt.params.get("symmetric"));
+        } else if (skew) {
+            Path[] edge_paths = (delta_path == null) ? new Path[]{edge_path} : new Path[]{edge_path, delta_path};
+            heavy_columns = SkewPartitioner.format(SkewPartitioner.sample(new JobConf(getConf()), edge_paths, nreducers));
+        }
+        if (heavy_columns.length() > 0)
+            System.out.println("Heavy block columns (column:slices) : " + heavy_columns);
+
+        if (ckpt == null) {
+            fs.delete(ckpt_path, true);
+            ckpt = new IterationCheckpoint(ckpt_path);
+            ckpt.params.put("heavy_columns", heavy_columns);
+            ckpt.params.put("symmetric", "" + symmetric);
+            ckpt.params.put("nreducers", "" + nreducers);
+            ckpt.params.put("block_width", "" + block_width);
+            ckpt.params.put("number_nodes", "" + number_nodes);
+            ckpt.params.put("layout_path", layout_path == null ? "" : layout_path);
+
+            // a run which died in pass0 leaves its partial outputs behind.
+            fs.delete(tempbm_path, true);
+            fs.delete(nextbm_path, true);
+
+            // partition the edge matrix by block column into tempbm_path, once for all iterations,
+            // and the initial vector by block id in the same way.
+            System.out.println("Partitioning the edge matrix and the initial vector for the map-side join...");
+            if (delta_path == null) {
+                runStage(fs, configStage0(new Path[]{edge_path}, tempbm_path, BlockWritable.class), "pass0_edge");
+                runStage(fs, configStage0(new Path[]{curbm_path}, nextbm_path, VectorWritable.class), "pass0_vector");
+            } else {
+                System.out.println("Incremental mode: adding the edges in " + delta_path + " to the converged vector in " + curbm_path);
+                runStage(fs, configStage0(new Path[]{edge_path, delta_path}, tempbm_path, BlockWritable.class), "pass0_edge");
+                runStage(fs, configStage0Seed(), "pass0_seed");
+            }
+            ckpt.commit(fs, nextbm_path, null);
+            fs.delete(curbm_path);
+        }
 
-            // copy neighborhood information from HDFS to local disk, and read it!
-            String new_path = local_output_path + "/" + i;
-            fs.copyToLocalFile(output_path, new Path(new_path));
-            ResultInfo ri = ConCmpt.readIterationOutput(new_path);
+        // Iteratively calculate neighborhood function.
+        // every hop reads the vector of the last generation, and its output becomes the next generation.
+        for (i = ckpt.numHops(); i < MAX_ITERATIONS; i++) {
+            ResultInfo last = ckpt.lastHop();
 
-            changed_nodes[iter_counter] = ri.changed;
-            unchanged_nodes[iter_counter] = ri.unchanged;
+            // Stop when the minimum neighborhood doesn't change
+            if (last != null && (last.changed <= max_convergence || i - 1 >= max_iters)) {
+                System.out.printf("Converging with %d active vertices (%d max for convergence) after %d iterations (%d max).\n", last.changed, max_convergence, i - 1, max_iters);
+                break;
+            }
 
-            System.out.println("Hop " + i + " : changed = " + ri.changed + ", unchanged = " + ri.unchanged);
+            fs.delete(nextbm_path, true);    // may be left by a run which died in this hop
+            JobMetrics.Row row = metrics.runJob(configStage1(ckpt.vector()), "pass1", i);
 
-            // Stop when the minimum neighborhood doesn't change
-            if (ri.changed <= max_convergence || i >= max_iters) {
-                System.out.printf("Converging with %d active vertices (%d max for convergence) after %d iterations (%d max).\n", ri.changed, max_convergence, i, max_iters);
-                System.out.println("Finishing...");
-                fs.delete(curbm_path);
-                fs.delete(tempbm_path);
-                fs.delete(output_path);
-                fs.rename(nextbm_path, curbm_path);
+            // read the number of changed/unchanged blocks from the counters of stage 2.
+            Counters counters = row.job.getCounters();
+            ResultInfo ri = new ResultInfo();
+            ri.changed = counters.getCounter(ConvergenceCounter.CHANGED);
+            ri.unchanged = counters.getCounter(ConvergenceCounter.UNCHANGED);
 
-                System.out.println("Unfolding the block structure for easy lookup...");
-                JobClient.runJob(configStage4());
+            System.out.println("Hop " + i + " : changed = " + ri.changed + ", unchanged = " + ri.unchanged
+                    + (frontier == 1 ? ", skipped blocks = " + counters.getCounter(FrontierCounter.SKIPPED_BLOCKS) : ""));
 
-                break;
-            }
+            // the hop is completed once it is checkpointed. tempbm_path keeps the partitioned edge matrix.
+            ckpt.commit(fs, nextbm_path, ri);
+            ckpt.clean(fs, retention);
 
-            // rotate directory
-            fs.delete(curbm_path);
-            fs.delete(tempbm_path);
-            fs.delete(output_path);
-            fs.rename(nextbm_path, curbm_path);
+            row.changed = ri.changed;
+            row.unchanged = ri.unchanged;
+            if (frontier == 1)
+                row.skipped_blocks = counters.getCounter(FrontierCounter.SKIPPED_BLOCKS);
+            metrics.add(fs, row);
         }
 
-        FileUtil.fullyDelete(FileSystem.getLocal(getConf()), new Path(local_output_path));
+        System.out.println("Finishing...");
+        System.out.println("Unfolding the block structure for easy lookup...");
+        fs.delete(curbm_unfold_path, true);    // may be left by an interrupted run
+        runStage(fs, configStage4(ckpt.vector()), "pass4_unfold");
 
         // calculate summary information using an additional pass
         System.out.println("Summarizing connected components information...");
-        JobClient.runJob(configStage5());
+        fs.delete(summaryout_path, true);
+        runStage(fs, configStage5(ckpt.vector()), "pass5_summary");
+
+        // keep the converged vector in curbm_path, and remove the checkpoint.
+        fs.delete(curbm_path);
+        fs.rename(ckpt.vector(), curbm_path);
+        fs.delete(tempbm_path);
+        fs.delete(ckpt_path, true);
+        int iter_counter = ckpt.numHops();
 
         // finishing.
         System.out.println("\n[PEGASUS] Connected component computed.");
         System.out.println("[PEGASUS] Total Iteration = " + iter_counter);
         System.out.println("[PEGASUS] Connected component information is saved in the HDFS concmpt_curbm as\n\"node_id	'msf'component_id\" format");
         System.out.println("[PEGASUS] Connected component distribution is saved in the HDFS concmpt_summaryout as\n\"component_id	number_of_nodes\" format.\n");
+        System.out.println("[PEGASUS] Per-job metrics are saved in the HDFS " + new Path(output_path, "metrics.csv") + " as CSV.\n");
 
         BufferedWriter writer = null;
         try {
@@ -462,80 +725,123 @@ public class ConCmptBlock extends Configured implements Tool {
     }
 
 
-    // Configure pass1
-    protected JobConf configStage1() throws Exception {
-        final JobConf conf = new JobConf(getConf(), ConCmptBlock.class);
-        conf.set("block_width", "" + block_width);
-        conf.set("recursive_diagmult", "" + recursive_diagmult);
-        conf.setJobName("data-piqid.pegasus.ConCmptBlock_pass1");
-
-        conf.setMapperClass(MapStage1.class);
-        conf.setReducerClass(RedStage1.class);
+    // run a job outside of the iterations, and add it to the metrics report.
+    protected void runStage(FileSystem fs, JobConf conf, String stage) throws IOException {
+        metrics.add(fs, metrics.runJob(conf, stage, -1));
+    }
 
-        FileInputFormat.setInputPaths(conf, edge_path, curbm_path);
-        FileOutputFormat.setOutputPath(conf, tempbm_path);
+    // Write blocks as a block-compressed SequenceFile.
+    protected static void setBlockOutput(JobConf conf, Path path) {
+        conf.setOutputFormat(SequenceFileOutputFormat.class);
+        FileOutputFormat.setOutputPath(conf, path);
         FileOutputFormat.setCompressOutput(conf, true);
         FileOutputFormat.setOutputCompressorClass(conf, SnappyCodec.class);
+        SequenceFileOutputFormat.setOutputCompressionType(conf, SequenceFile.CompressionType.BLOCK);
+    }
 
-        conf.setNumReduceTasks(nreducers);
+    // Write vector blocks. MapStage1 looks up the vectors of the heavy columns, so they are MapFiles then.
+    protected void setVectorOutput(JobConf conf, Path path) {
+        setBlockOutput(conf, path);
+        if (heavy_columns.length() > 0)
+            conf.setOutputFormat(MapFileOutputFormat.class);
+    }
+
+    // Configure pass0
+    protected JobConf configStage0(Path[] in_paths, Path out_path, Class<? extends Writable> value_class) throws Exception {
+        final JobConf conf = new JobConf(getConf(), ConCmptBlock.class);
+        conf.set("heavy_columns", heavy_columns);
+        conf.setJobName("data-piqid.pegasus.ConCmptBlock_pass0");
+
+        conf.setMapperClass(MapStage0.class);
+        conf.setReducerClass(RedStage0.class);
+
+        conf.setInputFormat(SequenceFileInputFormat.class);
+        FileInputFormat.setInputPaths(conf, in_paths);
+        if (value_class == VectorWritable.class) {
+            setVectorOutput(conf, out_path);
+        } else {
+            setBlockOutput(conf, out_path);
+            conf.setPartitionerClass(SkewPartitioner.class);
+        }
+
+        conf.setNumReduceTasks(nreducers);    // must match the number of partitions of STAGE 2
 
+        conf.setMapOutputKeyClass(LongWritable.class);
+        conf.setMapOutputValueClass(MatVecWritable.class);
         conf.setOutputKeyClass(LongWritable.class);
-        conf.setOutputValueClass(Text.class);
+        conf.setOutputValueClass(value_class);
 
         return conf;
     }
 
-    // Configure pass2
-    protected JobConf configStage2() throws Exception {
+    // Configure pass0 of the incremental mode
+    protected JobConf configStage0Seed() throws Exception {
         final JobConf conf = new JobConf(getConf(), ConCmptBlock.class);
         conf.set("block_width", "" + block_width);
-        conf.setJobName("data-piqid.pegasus.ConCmptBlock_pass2");
+        conf.set("number_nodes", "" + number_nodes);
+        if (layout_path != null)
+            conf.set("block_layout", layout_path);
+        conf.setJobName("data-piqid.pegasus.ConCmptBlock_pass0_seed");
 
-        conf.setMapperClass(MapStage2.class);
-        conf.setReducerClass(RedStage2.class);
+        conf.setMapperClass(MapStage0Seed.class);
+        conf.setReducerClass(RedStage0Seed.class);
 
-        FileInputFormat.setInputPaths(conf, tempbm_path);
-        FileOutputFormat.setOutputPath(conf, nextbm_path);
-        FileOutputFormat.setCompressOutput(conf, true);
-        FileOutputFormat.setOutputCompressorClass(conf, SnappyCodec.class);
+        conf.setInputFormat(SequenceFileInputFormat.class);
+        FileInputFormat.setInputPaths(conf, curbm_path, delta_path);
+        setVectorOutput(conf, nextbm_path);
 
-        conf.setNumReduceTasks(nreducers);
+        conf.setNumReduceTasks(nreducers);    // must match the number of partitions of STAGE 2
 
+        conf.setMapOutputKeyClass(LongWritable.class);
+        conf.setMapOutputValueClass(MatVecWritable.class);
         conf.setOutputKeyClass(LongWritable.class);
-        conf.setOutputValueClass(Text.class);
+        conf.setOutputValueClass(VectorWritable.class);
 
         return conf;
     }
 
-    // Configure pass3
-    protected JobConf configStage3() throws Exception {
+    // Configure pass1 and pass2
+    protected JobConf configStage1(Path vector_path) throws Exception {
         final JobConf conf = new JobConf(getConf(), ConCmptBlock.class);
-        conf.setJobName("data-piqid.pegasus.ConCmptBlock_pass3");
+        conf.set("block_width", "" + block_width);
+        conf.set("recursive_diagmult", "" + recursive_diagmult);
+        conf.set("symmetric", "" + symmetric);
+        conf.set("frontier", "" + frontier);
+        conf.set("heavy_columns", heavy_columns);
+        conf.set("vector_path", vector_path.toString());
+        conf.setJobName("data-piqid.pegasus.ConCmptBlock_pass1");
 
-        conf.setMapperClass(MapStage3.class);
-        conf.setReducerClass(RedStage3.class);
-        conf.setCombinerClass(RedStage3.class);
+        conf.setMapperClass(MapStage1.class);
+        conf.setCombinerClass(CombStage1.class);
+        conf.setReducerClass(RedStage2.class);
 
-        FileInputFormat.setInputPaths(conf, nextbm_path);
-        FileOutputFormat.setOutputPath(conf, output_path);
+        conf.setInputFormat(CompositeInputFormat.class);
+        conf.set("mapred.join.expr", CompositeInputFormat.compose("outer", JoinPartitionInputFormat.class, tempbm_path, vector_path));
+        setVectorOutput(conf, nextbm_path);
 
-        conf.setNumReduceTasks(1);// This is necessary to summarize and save data.
+        conf.setNumReduceTasks(nreducers);
 
-        conf.setOutputKeyClass(Text.class);
-        conf.setOutputValueClass(Text.class);
+        conf.setMapOutputKeyClass(LongWritable.class);
+        conf.setMapOutputValueClass(VectorWritable.class);
+        conf.setOutputKeyClass(LongWritable.class);
+        conf.setOutputValueClass(VectorWritable.class);
 
         return conf;
     }
 
     // Configure pass4
-    protected JobConf configStage4() throws Exception {
+    protected JobConf configStage4(Path vector_path) throws Exception {
         final JobConf conf = new JobConf(getConf(), ConCmptBlock.class);
         conf.set("block_width", "" + block_width);
+        conf.set("number_nodes", "" + number_nodes);
+        if (layout_path != null)
+            conf.set("block_layout", layout_path);
         conf.setJobName("data-piqid.pegasus.ConCmptBlock_pass4");
 
         conf.setMapperClass(MapStage4.class);
 
-        FileInputFormat.setInputPaths(conf, curbm_path);
+        conf.setInputFormat(SequenceFileInputFormat.class);
+        FileInputFormat.setInputPaths(conf, vector_path);
         FileOutputFormat.setOutputPath(conf, curbm_unfold_path);
         FileOutputFormat.setCompressOutput(conf, true);
         FileOutputFormat.setOutputCompressorClass(conf, SnappyCodec.class);
@@ -549,7 +855,7 @@ public class ConCmptBlock extends Configured implements Tool {
     }
 
     // Configure pass5
-    protected JobConf configStage5() throws Exception {
+    protected JobConf configStage5(Path vector_path) throws Exception {
         final JobConf conf = new JobConf(getConf(), ConCmptBlock.class);
         conf.set("block_width", "" + block_width);
         conf.setJobName("data-piqid.pegasus.ConCmptBlock_pass5");
@@ -558,7 +864,8 @@ public class ConCmptBlock extends Configured implements Tool {
         conf.setReducerClass(RedStage5.class);
         conf.setCombinerClass(RedStage5.class);
 
-        FileInputFormat.setInputPaths(conf, curbm_path);
+        conf.setInputFormat(SequenceFileInputFormat.class);
+        FileInputFormat.setInputPaths(conf, vector_path);
         FileOutputFormat.setOutputPath(conf, summaryout_path);
         FileOutputFormat.setCompressOutput(conf, true);
         FileOutputFormat.setOutputCompressorClass(conf, SnappyCodec.class);
@@ -0,0 +1,267 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: ConCmptExport.java
+ - export the connected components of a run (concmpt_curbm and
+   concmpt_summaryout) to a local file, for memory-mapped lookups
+   with ComponentStore.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+import org.apache.hadoop.conf.*;
+import org.apache.hadoop.fs.*;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.util.LineReader;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+
+public class ConCmptExport extends Configured implements Tool {
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    // one part of concmpt_summaryout, sorted by component id.
+    static class SummaryCursor {
+        final LineReader reader;
+        final Text line_text = new Text();
+        final TextTokenizer tokens = new TextTokenizer();
+        long component;
+        long size;
+
+        SummaryCursor(LineReader reader) {
+            this.reader = reader;
+        }
+
+        // false at the end of the part.
+        boolean next() throws IOException {
+            do {
+                if (reader.readLine(line_text) == 0)
+                    return false;
+            } while (line_text.getLength() == 0);
+
+            tokens.reset(line_text);
+            component = tokens.nextLong();
+            size = tokens.nextLong();
+            return true;
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    // command line interface
+    //////////////////////////////////////////////////////////////////////
+    protected Path curbm_path = null;
+    protected Path summaryout_path = null;
+    protected File output_file = null;
+    protected long number_nodes = 0;
+    CompressionCodecFactory codecs;
+
+    // Main entry point.
+    public static void main(final String[] args) throws Exception {
+        final int result = ToolRunner.run(new Configuration(), new ConCmptExport(), args);
+
+        System.exit(result);
+    }
+
+    // Print the command-line usage text.
+    protected static int printUsage() {
+        System.out.println("ConCmptExport <concmpt_curbm> <concmpt_summaryout> <local output file> <# of nodes>");
+
+        ToolRunner.printGenericCommandUsage(System.out);
+
+        return -1;
+    }
+
+    public int run(final String[] args) throws Exception {
+        if (args.length != 4) {
+            return printUsage();
+        }
+
+        curbm_path = new Path(args[0]);
+        summaryout_path = new Path(args[1]);
+        output_file = new File(args[2]);
+        number_nodes = Long.parseLong(args[3]);
+
+        System.out.println("\n-----===[PEGASUS: A Peta-Scale Graph Mining System]===-----\n");
+        System.out.println("[PEGASUS] Exporting the connected components of " + curbm_path + " to " + output_file);
+
+        final FileSystem fs = FileSystem.get(getConf());
+        codecs = new CompressionCodecFactory(getConf());
+        long start_time = System.currentTimeMillis();
+
+        // write to a temporary file, so that readers never map a partial store.
+        File temp_file = new File(output_file.getPath() + ".tmp");
+        RandomAccessFile file = new RandomAccessFile(temp_file, "rw");
+        long number_components;
+        try {
+            file.setLength(0);
+            FileChannel channel = file.getChannel();
+            long nodes = writeNodes(fs, channel);
+            number_components = writeSizes(fs, channel);
+
+            ByteBuffer header = ByteBuffer.allocate(ComponentStore.HEADER_SIZE);
+            header.putInt(ComponentStore.MAGIC).putInt(ComponentStore.VERSION).putLong(number_nodes).putLong(number_components);
+            header.flip();
+            channel.write(header, 0);
+            channel.force(true);
+
+            System.out.println("Nodes = " + nodes + " of " + number_nodes + ", components = " + number_components);
+        } finally {
+            file.close();
+        }
+
+        if (!temp_file.renameTo(output_file))
+            throw new IOException("Failed to rename " + temp_file + " to " + output_file);
+
+        System.out.println("\n[PEGASUS] Connected components exported in " + (System.currentTimeMillis() - start_time) + " ms.");
+        System.out.println("[PEGASUS] Look them up with pegasus.ComponentStore on " + output_file + ".\n");
+
+        return 0;
+    }
+
+    private LineReader openText(FileSystem fs, Path path) throws IOException {
+        InputStream in = fs.open(path);
+        CompressionCodec codec = codecs.getCodec(path);
+        if (codec != null)
+            in = codec.createInputStream(in);
+
+        return new LineReader(in, getConf());
+    }
+
+    // fill the node table with -1, then write the component of every node of concmpt_curbm.
+    // the parts are not sorted by node id, but the nodes of a block are consecutive:
+    // they are written in runs, at the position of the first node of the run.
+    // returns the number of nodes written.
+    long writeNodes(FileSystem fs, FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long end = ComponentStore.HEADER_SIZE + 8 * number_nodes;
+
+        for (long pos = ComponentStore.HEADER_SIZE; pos < end; pos += buffer.capacity()) {
+            buffer.clear();
+            while (buffer.hasRemaining())
+                buffer.putLong(-1);
+            buffer.flip();
+            buffer.limit((int) Math.min(buffer.capacity(), end - pos));
+            while (buffer.hasRemaining())
+                channel.write(buffer, pos + buffer.position());
+        }
+
+        TextTokenizer tokens = new TextTokenizer();
+        Text line_text = new Text();
+        long nodes = 0;
+        for (FileStatus status : ConCmptLocal.listInputFiles(fs, curbm_path)) {
+            LineReader reader = openText(fs, status.getPath());
+            try {
+                long run_start = -1;
+                long next_node = -1;
+                buffer.clear();
+
+                // input : node_id   TAB   msf component_id
+                while (reader.readLine(line_text) > 0) {
+                    if (line_text.getLength() == 0)
+                        continue;
+
+                    tokens.reset(line_text);
+                    long node = tokens.nextLong();
+                    tokens.skip(3);                               // "msf"
+                    long component = tokens.nextLong();
+                    if (node < 0 || node >= number_nodes)
+                        throw new IOException("Node id " + node + " is out of [0, " + number_nodes + ") in " + status.getPath());
+
+                    if (node != next_node || !buffer.hasRemaining()) {
+                        flushRun(channel, buffer, run_start);
+                        run_start = node;
+                    }
+                    buffer.putLong(component);
+                    next_node = node + 1;
+                    nodes++;
+                }
+                flushRun(channel, buffer, run_start);
+            } finally {
+                reader.close();
+            }
+        }
+
+        return nodes;
+    }
+
+    private static void flushRun(FileChannel channel, ByteBuffer buffer, long run_start) throws IOException {
+        buffer.flip();
+        long pos = ComponentStore.HEADER_SIZE + 8 * run_start;
+        while (buffer.hasRemaining())
+            channel.write(buffer, pos + buffer.position());
+        buffer.clear();
+    }
+
+    // merge the parts of concmpt_summaryout, each sorted by component id, after the node table.
+    // returns the number of components.
+    long writeSizes(FileSystem fs, FileChannel channel) throws IOException {
+        PriorityQueue<SummaryCursor> queue = new PriorityQueue<SummaryCursor>(16, new Comparator<SummaryCursor>() {
+            public int compare(SummaryCursor c1, SummaryCursor c2) {
+                return Long.compare(c1.component, c2.component);
+            }
+        });
+        List<SummaryCursor> cursors = new ArrayList<SummaryCursor>();
+
+        try {
+            for (FileStatus status : ConCmptLocal.listInputFiles(fs, summaryout_path)) {
+                SummaryCursor cursor = new SummaryCursor(openText(fs, status.getPath()));
+                cursors.add(cursor);
+                if (cursor.next())
+                    queue.add(cursor);
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            long pos = ComponentStore.HEADER_SIZE + 8 * number_nodes;
+            long number_components = 0;
+            long last_component = Long.MIN_VALUE;
+
+            while (!queue.isEmpty()) {
+                SummaryCursor cursor = queue.poll();
+                if (cursor.component <= last_component)
+                    throw new IOException("Component " + cursor.component + " is repeated or out of order in " + summaryout_path);
+                last_component = cursor.component;
+
+                if (!buffer.hasRemaining()) {
+                    buffer.flip();
+                    while (buffer.hasRemaining())
+                        pos += channel.write(buffer, pos);
+                    buffer.clear();
+                }
+                buffer.putLong(cursor.component).putLong(cursor.size);
+                number_components++;
+
+                if (cursor.next())
+                    queue.add(cursor);
+            }
+
+            buffer.flip();
+            while (buffer.hasRemaining())
+                pos += channel.write(buffer, pos);
+
+            return number_components;
+        } finally {
+            for (SummaryCursor cursor : cursors)
+                cursor.reader.close();
+        }
+    }
+}
@@ -15,7 +15,7 @@
  limitations under the License.
  -------------------------------------------------------------------------
  File: ConCmptIVGen.java
- - generate initial vectors for HCC
+ - generate initial vectors for HCC, as text or directly in block form
  Version: 2.0
  ***********************************************************************/
 
@@ -38,20 +38,28 @@ public class ConCmptIVGen extends Configured implements Tool {
     //  - Output: nodeid   TAB   initial_component_vector
     //////////////////////////////////////////////////////////////////////
     public static class MapStage1 extends MapReduceBase implements Mapper<LongWritable, Text, LongWritable, Text> {
+        private final TextTokenizer tokens = new TextTokenizer();
+        private final LongWritable out_key = new LongWritable();
+        private final Text out_value = new Text();
+
         public void map(final LongWritable key, final Text value, final OutputCollector<LongWritable, Text> output, final Reporter reporter) throws IOException {
-            String line_text = value.toString();
-            if (line_text.startsWith("#"))                // ignore comments in edge file
+            tokens.reset(value);
+            if (tokens.isComment())                       // ignore comments in edge file
                 return;
 
-            final String[] line = line_text.split("\t");
-            if (line.length < 3)
+            if (tokens.numFields() < 3)
                 return;
 
-            output.collect(new LongWritable(Long.parseLong(line[0])), new Text(line[1] + "\t" + line[2]));
+            out_key.set(tokens.nextLong());
+            tokens.rest(out_value);
+            output.collect(out_key, out_value);
         }
     }
 
     public static class RedStage1 extends MapReduceBase implements Reducer<LongWritable, Text, LongWritable, Text> {
+        private final TextTokenizer tokens = new TextTokenizer();
+        private final LongWritable out_key = new LongWritable();
+        private final Text out_value = new Text();
         long number_nodes = 0;
 
         public void configure(JobConf job) {
@@ -64,19 +72,58 @@ public class ConCmptIVGen extends Configured implements Tool {
             long start_node, end_node;
 
             while (values.hasNext()) {
-                Text cur_text = values.next();
-                final String[] line = cur_text.toString().split("\t");
+                tokens.reset(values.next());
 
-                start_node = Long.parseLong(line[0]);
-                end_node = Long.parseLong(line[1]);
+                start_node = tokens.nextLong();
+                end_node = tokens.nextLong();
 
                 for (long i = start_node; i <= end_node; i++) {
-                    output.collect(new LongWritable(i), new Text("v" + i));
+                    out_key.set(i);
+                    tokens.format(out_value, TextTokenizer.V, i);
+                    output.collect(out_key, out_value);
                 }
             }
         }
     }
 
+    //////////////////////////////////////////////////////////////////////
+    // STAGE 2: Generate the init vector in block form. This is a map-only stage,
+    //          used instead of STAGE 1 followed by MatvecPrep.
+    //  - Input: block ids from BlockRangeInputFormat
+    //  - Output: BLOCKID   TAB   VectorWritable (kind 's', status 'c'), the same as MatvecPrep with out_prefix msc
+    //////////////////////////////////////////////////////////////////////
+    public static class MapStage2 extends MapReduceBase implements Mapper<LongWritable, NullWritable, LongWritable, MatVecWritable> {
+        long number_nodes = 0;
+        int block_width;
+        BlockLayout layout;
+
+        private final VectorWritable out_vector = new VectorWritable();
+        private final MatVecWritable out_value = new MatVecWritable(out_vector);
+
+        public void configure(JobConf job) {
+            number_nodes = Long.parseLong(job.get("number_nodes"));
+            block_width = Integer.parseInt(job.get("block_width"));
+            layout = BlockLayout.configure(job, number_nodes, block_width);
+
+            out_vector.kind = VectorWritable.SELF;
+            out_vector.status = VectorWritable.INITIAL;
+
+            System.out.println("MapStage2: number_nodes = " + number_nodes + ", block_width = " + block_width);
+        }
+
+        public void map(final LongWritable key, final NullWritable value, final OutputCollector<LongWritable, MatVecWritable> output, final Reporter reporter) throws IOException {
+            long start_node = layout.start(key.get());
+            int width = layout.width(key.get());
+
+            // every node is its own component at first.
+            out_vector.clear();
+            for (int i = 0; i < width; i++)
+                out_vector.add(i, start_node + i);
+
+            output.collect(key, out_value);
+        }
+    }
+
     //////////////////////////////////////////////////////////////////////
     // command line interface
     //////////////////////////////////////////////////////////////////////
@@ -84,6 +131,8 @@ public class ConCmptIVGen extends Configured implements Tool {
     protected Path output_path = null;
     protected long number_nodes = 0;
     protected int number_reducers = 1;
+    protected int block_width = 0;    // 0 for the text output
+    protected String layout_path = null;
     FileSystem fs;
 
     // Main entry point.
@@ -95,7 +144,7 @@ public class ConCmptIVGen extends Configured implements Tool {
 
     // Print the command-line usage text.
     protected static int printUsage() {
-        System.out.println("ConCmptIVGen <output_path> <# of nodes> <# of machines>");
+        System.out.println("ConCmptIVGen <output_path> <# of nodes> <# of machines> [block_width [block_layout_path]]");
 
         ToolRunner.printGenericCommandUsage(System.out);
         return -1;
@@ -103,7 +152,7 @@ public class ConCmptIVGen extends Configured implements Tool {
 
     // submit the map/reduce job.
     public int run(final String[] args) throws Exception {
-        if (args.length != 3) {
+        if (args.length < 3 || args.length > 5) {
             return printUsage();
         }
 
@@ -111,10 +160,23 @@ public class ConCmptIVGen extends Configured implements Tool {
         output_path = new Path(args[0]);
         number_nodes = Long.parseLong(args[1]);
         number_reducers = Integer.parseInt(args[2]);
+        if (args.length >= 4)
+            block_width = Integer.parseInt(args[3]);
+        if (args.length == 5)
+            layout_path = args[4];
 
         System.out.println("\n-----===[PEGASUS: A Peta-Scale Graph Mining System]===-----\n");
         System.out.println("[PEGASUS] Generating initial vector. Output path = " + args[0] + ", Number of nodes = " + number_nodes + ", Number of machines =" + number_reducers + "\n");
 
+        if (block_width > 0) {
+            // generate the blocks directly. no command file, no shuffle.
+            JobClient.runJob(configStage2());
+
+            System.out.println("\n[PEGASUS] Initial connected component vector generated in block form in HDFS " + args[0] + "\n");
+
+            return 0;
+        }
+
         // Generate command file and copy to HDFS "input_ConCmptIVGen"
         gen_cmd_file(number_nodes, number_reducers, input_path);
 
@@ -182,6 +244,33 @@ public class ConCmptIVGen extends Configured implements Tool {
         conf.setOutputValueClass(Text.class);
 
 
+        return conf;
+    }
+
+    // Configure pass2
+    protected JobConf configStage2() throws Exception {
+        final JobConf conf = new JobConf(getConf(), ConCmptIVGen.class);
+        conf.set("number_nodes", "" + number_nodes);
+        conf.set("block_width", "" + block_width);
+        if (layout_path != null)
+            conf.set("block_layout", layout_path);
+        conf.setJobName("data-piqid.pegasus.ConCmptIVGen_Stage2");
+
+        conf.setMapperClass(MapStage2.class);
+
+        conf.setInputFormat(BlockRangeInputFormat.class);
+        conf.setNumMapTasks(number_reducers);
+        conf.setOutputFormat(SequenceFileOutputFormat.class);
+        FileOutputFormat.setOutputPath(conf, output_path);
+        FileOutputFormat.setCompressOutput(conf, true);
+        FileOutputFormat.setOutputCompressorClass(conf, SnappyCodec.class);
+        SequenceFileOutputFormat.setOutputCompressionType(conf, SequenceFile.CompressionType.BLOCK);
+
+        conf.setNumReduceTasks(0);        //This is essential for map-only tasks.
+
+        conf.setOutputKeyClass(LongWritable.class);
+        conf.setOutputValueClass(MatVecWritable.class);
+
         return conf;
     }
 }
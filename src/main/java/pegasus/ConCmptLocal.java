@@ -0,0 +1,556 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: ConCmptLocal.java
+ - HCC in a single process, for graphs that fit in the memory of one machine.
+   The blocked matrix is held in primitive arrays, and every iteration runs
+   the GIMV block multiplication over the block rows in parallel with fork/join.
+   The output is the same as the one of ConCmptBlock.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.hadoop.conf.*;
+import org.apache.hadoop.fs.*;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.util.*;
+
+public class ConCmptLocal extends Configured implements Tool {
+    // block rows per fork/join leaf task.
+    static final int ROWS_PER_TASK = 16;
+
+    //////////////////////////////////////////////////////////////////////
+    // edge list read from the text edge file. (ROWID, COLID)s
+    //////////////////////////////////////////////////////////////////////
+    static class EdgeList {
+        long[] src = new long[1024];
+        long[] dst = new long[1024];
+        int size = 0;
+
+        void add(long s, long d) {
+            if (size == src.length) {
+                src = Arrays.copyOf(src, size * 2);
+                dst = Arrays.copyOf(dst, size * 2);
+            }
+
+            src[size] = s;
+            dst[size] = d;
+            size++;
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    // blocked matrix.
+    //   the elements are sorted by (BLOCK-ROW, BLOCK-COL, IN-BLOCK-COL, IN-BLOCK-ROW).
+    //   block b holds the elements [block_start[b], block_start[b+1]) and its column is block_col[b].
+    //   the blocks of block row i are [row_start[i], row_start[i+1]).
+    //////////////////////////////////////////////////////////////////////
+    static class BlockMatrix {
+        int num_block_rows;
+        int[] rows;
+        int[] cols;
+        int[] block_start;
+        int[] block_col;
+        int[] row_start;
+
+        static BlockMatrix build(EdgeList edges, BlockLayout layout) {
+            final int nnz = edges.size;
+            final int num_block_rows = (int) layout.numBlocks();
+
+            // bucket the elements by block row
+            int[] row_nnz_start = new int[num_block_rows + 1];
+            for (int e = 0; e < nnz; e++)
+                row_nnz_start[(int) layout.blockOf(edges.src[e]) + 1]++;
+            for (int i = 0; i < num_block_rows; i++)
+                row_nnz_start[i + 1] += row_nnz_start[i];
+
+            // (BLOCK-COL, IN-BLOCK-COL, IN-BLOCK-ROW) packed in a long, sorted in each bucket.
+            // the in-block indices take 'bits' bits each, the block column the rest.
+            final int bits = indexBits(layout);
+            final int block_shift = 2 * bits;
+            long[] packed = new long[nnz];
+            int[] fill = Arrays.copyOf(row_nnz_start, num_block_rows);
+            for (int e = 0; e < nnz; e++) {
+                long src = edges.src[e];
+                long dst = edges.dst[e];
+                long block_row = layout.blockOf(src);
+                long block_col = layout.blockOf(dst);
+
+                packed[fill[(int) block_row]++] = (block_col << block_shift) | ((long) layout.indexOf(dst, block_col) << bits) | layout.indexOf(src, block_row);
+            }
+
+            return fromPacked(packed, row_nnz_start, layout);
+        }
+
+        // the edges of a CSR graph are already bucketed by block row: the bucket of block row i
+        // starts at offsets[start of block i].
+        static BlockMatrix build(CsrGraph graph, BlockLayout layout) {
+            final int nnz = (int) graph.number_edges;
+            final int num_block_rows = (int) layout.numBlocks();
+
+            int[] row_nnz_start = new int[num_block_rows + 1];
+            for (int i = 0; i < num_block_rows; i++)
+                row_nnz_start[i] = (int) graph.offset(layout.start(i));
+            row_nnz_start[num_block_rows] = nnz;
+
+            final int bits = indexBits(layout);
+            final int block_shift = 2 * bits;
+            long[] packed = new long[nnz];
+            for (int i = 0; i < num_block_rows; i++) {
+                final long start = layout.start(i);
+                final int width = layout.width(i);
+                for (int row = 0; row < width; row++) {
+                    final int to = (int) graph.offset(start + row + 1);
+                    for (int k = (int) graph.offset(start + row); k < to; k++) {
+                        long dst = graph.neighbor(k);
+                        long block_col = layout.blockOf(dst);
+                        packed[k] = (block_col << block_shift) | ((long) layout.indexOf(dst, block_col) << bits) | row;
+                    }
+                }
+            }
+
+            return fromPacked(packed, row_nnz_start, layout);
+        }
+
+        // bits of an in-block index.
+        private static int indexBits(BlockLayout layout) {
+            return 32 - Integer.numberOfLeadingZeros(layout.maxWidth() - 1);
+        }
+
+        // packed: (BLOCK-COL, IN-BLOCK-COL, IN-BLOCK-ROW) of the elements, bucketed by block row.
+        private static BlockMatrix fromPacked(long[] packed, int[] row_nnz_start, BlockLayout layout) {
+            BlockMatrix m = new BlockMatrix();
+            final int nnz = packed.length;
+            final int num_block_rows = (int) layout.numBlocks();
+            m.num_block_rows = num_block_rows;
+
+            final int bits = indexBits(layout);
+            final int block_shift = 2 * bits;
+            final long index_mask = (1L << bits) - 1;
+            for (int i = 0; i < num_block_rows; i++)
+                Arrays.sort(packed, row_nnz_start[i], row_nnz_start[i + 1]);
+
+            // count the blocks
+            int num_blocks = 0;
+            for (int i = 0; i < num_block_rows; i++) {
+                for (int k = row_nnz_start[i]; k < row_nnz_start[i + 1]; k++) {
+                    if (k == row_nnz_start[i] || (packed[k] >>> block_shift) != (packed[k - 1] >>> block_shift))
+                        num_blocks++;
+                }
+            }
+
+            m.rows = new int[nnz];
+            m.cols = new int[nnz];
+            m.block_start = new int[num_blocks + 1];
+            m.block_col = new int[num_blocks];
+            m.row_start = new int[num_block_rows + 1];
+
+            int b = 0;
+            for (int i = 0; i < num_block_rows; i++) {
+                m.row_start[i] = b;
+                for (int k = row_nnz_start[i]; k < row_nnz_start[i + 1]; k++) {
+                    if (k == row_nnz_start[i] || (packed[k] >>> block_shift) != (packed[k - 1] >>> block_shift)) {
+                        m.block_start[b] = k;
+                        m.block_col[b] = (int) (packed[k] >>> block_shift);
+                        b++;
+                    }
+                    m.cols[k] = (int) ((packed[k] >>> bits) & index_mask);
+                    m.rows[k] = (int) (packed[k] & index_mask);
+                }
+            }
+            m.row_start[num_block_rows] = b;
+            m.block_start[num_blocks] = nnz;
+
+            return m;
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    // one iteration over the block rows [lo, hi). Same as STAGE 1 and STAGE 2 of ConCmptBlock:
+    // next[i] = min(cur[i], min_j(block(i,j) x cur[j])). returns the number of changed blocks.
+    //////////////////////////////////////////////////////////////////////
+    class IterationTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        final int lo, hi;
+
+        IterationTask(int lo, int hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        protected Long compute() {
+            if (hi - lo <= ROWS_PER_TASK)
+                return multiplyRows(lo, hi);
+
+            int mid = (lo + hi) >>> 1;
+            IterationTask left = new IterationTask(lo, mid);
+            left.fork();
+            long right_changed = new IterationTask(mid, hi).compute();
+
+            return left.join() + right_changed;
+        }
+    }
+
+    // scratch vectors of a worker thread. 0: self, 1: vector, 2: out, 3-4: diagonal block.
+    private final ThreadLocal<DenseLongVector[]> scratch = new ThreadLocal<DenseLongVector[]>() {
+        protected DenseLongVector[] initialValue() {
+            DenseLongVector[] v = new DenseLongVector[5];
+            for (int i = 0; i < v.length; i++)
+                v[i] = new DenseLongVector(block_width);
+            return v;
+        }
+    };
+
+    private final ThreadLocal<UnionFind> diag_sets = new ThreadLocal<UnionFind>() {
+        protected UnionFind initialValue() {
+            return new UnionFind(block_width);
+        }
+    };
+
+    long multiplyRows(int lo, int hi) {
+        final DenseLongVector[] v = scratch.get();
+        final DenseLongVector self = v[0];
+        final DenseLongVector vector = v[1];
+        final DenseLongVector out = v[2];
+        long changed = 0;
+
+        for (int i = lo; i < hi; i++) {
+            self.load(cur, (int) layout.start(i), layout.width(i));
+            out.copyFrom(self);
+
+            for (int b = matrix.row_start[i]; b < matrix.row_start[i + 1]; b++) {
+                final int j = matrix.block_col[b];
+                final int from = matrix.block_start[b];
+                final int to = matrix.block_start[b + 1];
+
+                // the matrix is symmetric(readEdges adds both directions), so union-find is exact.
+                if (j == i && recursive_diagmult == 1) {    // resolve the diagonal block at once
+                    GIMV.minBlockVectorUnionFind(matrix.rows, matrix.cols, from, to, self, v[3], diag_sets.get(), v[4]);
+                    out.minAll(v[3]);
+                } else if (j == i) {
+                    GIMV.minBlockVector(matrix.rows, matrix.cols, from, to, self, out);
+                } else {
+                    vector.load(cur, (int) layout.start(j), layout.width(j));
+                    GIMV.minBlockVector(matrix.rows, matrix.cols, from, to, vector, out);
+                }
+            }
+
+            if (GIMV.compareVectors(self, out) == 1)
+                changed++;
+
+            System.arraycopy(out.vals, 0, next, (int) layout.start(i), layout.width(i));
+        }
+
+        return changed;
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    // command line interface
+    //////////////////////////////////////////////////////////////////////
+    protected Path edge_path = null;
+    protected Path curbm_unfold_path = null;
+    protected Path summaryout_path = null;
+    protected long number_nodes = 0;
+    protected int nthreads = 1;
+    protected int block_width = 64;
+    protected int recursive_diagmult = 0;
+    protected int max_convergence = 0;
+    protected int max_iters = 0;
+    protected boolean csr = false;
+    protected String layout_path = null; // boundaries of variable-size blocks
+
+    protected BlockLayout layout;
+    protected BlockMatrix matrix;
+    protected long[] cur;
+    protected long[] next;
+
+    // Main entry point.
+    public static void main(final String[] args) throws Exception {
+        final int result = ToolRunner.run(new Configuration(), new ConCmptLocal(), args);
+
+        System.exit(result);
+    }
+
+    // Print the command-line usage text.
+    protected static int printUsage() {
+        System.out.println("ConCmptLocal <edge_path> <# of nodes> <# of threads> <fast or normal> <block_width> <max_convergence> <max_iters> [csr] [layout <block_layout_path>]");
+        System.out.println("  csr: edge_path is a local CSR file of CsrConvert, which is memory-mapped instead of parsed.");
+        System.out.println("  layout: variable-size blocks, as given to MatvecPrep. block_width is then the widest block.");
+
+        ToolRunner.printGenericCommandUsage(System.out);
+
+        return -1;
+    }
+
+    public int run(final String[] args) throws Exception {
+        if (args.length < 7) {
+            return printUsage();
+        }
+
+        edge_path = new Path(args[0]);
+        curbm_unfold_path = new Path("concmpt_curbm");
+        summaryout_path = new Path("concmpt_summaryout");
+        number_nodes = Long.parseLong(args[1]);
+        nthreads = Integer.parseInt(args[2]);
+
+        if (args[3].compareTo("fast") == 0)
+            recursive_diagmult = 1;
+        else
+            recursive_diagmult = 0;
+
+        block_width = Integer.parseInt(args[4]);
+
+        max_convergence = Integer.parseInt(args[5]);
+        if (max_convergence < 0)
+            max_convergence = 0;
+        max_iters = Integer.parseInt(args[6]);
+        if (max_iters < 0 || max_iters > ConCmptBlock.MAX_ITERATIONS)
+            max_iters = ConCmptBlock.MAX_ITERATIONS;
+
+        for (int i = 7; i < args.length; i++) {
+            if (args[i].compareTo("csr") == 0) {
+                csr = true;
+            } else if (args[i].compareTo("layout") == 0 && i + 1 < args.length) {
+                layout_path = args[++i];
+            } else {
+                return printUsage();
+            }
+        }
+
+        if (number_nodes >= Integer.MAX_VALUE || block_width <= 0 || block_width > number_nodes) {
+            System.err.println("[PEGASUS] ConCmptLocal supports less than " + Integer.MAX_VALUE + " nodes and block_width up to the number of nodes. Use ConCmptBlock.");
+            return -1;
+        }
+
+        System.out.println("\n-----===[PEGASUS: A Peta-Scale Graph Mining System]===-----\n");
+        System.out.println("[PEGASUS] Computing connected component in memory. Threads = " + nthreads + ", block_width = " + block_width);
+
+        final FileSystem fs = FileSystem.get(getConf());
+        if (fs.exists(curbm_unfold_path) || fs.exists(summaryout_path)) {
+            System.err.println("[PEGASUS] Output directory " + curbm_unfold_path + " or " + summaryout_path + " already exists.");
+            return -1;
+        }
+
+        if (layout_path == null) {
+            layout = BlockLayout.uniform(number_nodes, block_width);
+        } else {
+            layout = BlockLayout.read(fs, new Path(layout_path));
+            if (layout.numNodes() != number_nodes) {
+                System.err.println("[PEGASUS] The block layout " + layout_path + " has " + layout.numNodes() + " nodes instead of " + number_nodes + ".");
+                return -1;
+            }
+            System.out.println("Block layout " + layout_path + " : " + layout.numBlocks() + " blocks, max width = " + layout.maxWidth());
+        }
+        block_width = layout.maxWidth();    // the size of the scratch vectors
+
+        // load the graph
+        long start_time = System.currentTimeMillis();
+        final int num_block_rows = (int) layout.numBlocks();
+        if (csr) {
+            CsrGraph graph = new CsrGraph(new File(edge_path.toString()));
+            try {
+                if (graph.number_nodes != number_nodes || graph.number_edges * (graph.isSymmetric() ? 1 : 2) >= Integer.MAX_VALUE) {
+                    System.err.println("[PEGASUS] " + edge_path + " has " + graph.number_nodes + " nodes and " + graph.number_edges + " edges. ConCmptLocal needs " + number_nodes + " nodes and less than " + Integer.MAX_VALUE + " elements.");
+                    return -1;
+                }
+
+                if (graph.isSymmetric()) {
+                    matrix = BlockMatrix.build(graph, layout);
+                } else {
+                    EdgeList edges = new EdgeList();
+                    readEdges(graph, edges);
+                    matrix = BlockMatrix.build(edges, layout);
+                }
+            } finally {
+                graph.close();
+            }
+        } else {
+            EdgeList edges = new EdgeList();
+            long skipped = readEdges(fs, edge_path, edges, number_nodes);
+            if (skipped > 0)
+                System.err.println("[PEGASUS] Skipped " + skipped + " edges with node ids >= " + number_nodes);
+
+            matrix = BlockMatrix.build(edges, layout);
+            edges = null;
+        }
+        System.out.println("[PEGASUS] Loaded " + matrix.block_start[matrix.block_start.length - 1] + " elements in " + (matrix.block_start.length - 1) + " blocks in " + (System.currentTimeMillis() - start_time) + " ms.");
+
+        // initial vector : every node is its own component
+        cur = new long[(int) number_nodes];
+        next = new long[(int) number_nodes];
+        for (int n = 0; n < number_nodes; n++)
+            cur[n] = n;
+
+        ForkJoinPool pool = new ForkJoinPool(nthreads);
+        int iter_counter = 0;
+
+        // Iteratively calculate neighborhood function.
+        for (int i = 0; i < ConCmptBlock.MAX_ITERATIONS; i++) {
+            iter_counter++;
+
+            long changed = pool.invoke(new IterationTask(0, num_block_rows));
+            long unchanged = num_block_rows - changed;
+
+            long[] t = cur;
+            cur = next;
+            next = t;
+
+            System.out.println("Hop " + i + " : changed = " + changed + ", unchanged = " + unchanged);
+
+            // Stop when the minimum neighborhood doesn't change
+            if (changed <= max_convergence || i >= max_iters) {
+                System.out.printf("Converging with %d active vertices (%d max for convergence) after %d iterations (%d max).\n", changed, max_convergence, i, max_iters);
+                break;
+            }
+        }
+        pool.shutdown();
+
+        System.out.println("Writing connected components information...");
+        writeComponents(fs, curbm_unfold_path, cur);
+        writeSummary(fs, summaryout_path, cur);
+
+        System.out.println("\n[PEGASUS] Connected component computed in " + (System.currentTimeMillis() - start_time) + " ms.");
+        System.out.println("[PEGASUS] Total Iteration = " + iter_counter);
+        System.out.println("[PEGASUS] Connected component information is saved in " + curbm_unfold_path + " as\n\"node_id	'msf'component_id\" format");
+        System.out.println("[PEGASUS] Connected component distribution is saved in " + summaryout_path + " as\n\"component_id	number_of_nodes\" format.\n");
+
+        return 0;
+    }
+
+    // read the text edge file(s) under path. every edge is added in both directions.
+    // returns the number of edges skipped because a node id is out of [0, number_nodes).
+    static long readEdges(FileSystem fs, Path path, EdgeList edges, long number_nodes) throws IOException {
+        long skipped = 0;
+        CompressionCodecFactory codecs = new CompressionCodecFactory(fs.getConf());
+        TextTokenizer tokens = new TextTokenizer();
+        Text line_text = new Text();
+
+        for (FileStatus status : listInputFiles(fs, path)) {
+            InputStream in = fs.open(status.getPath());
+            CompressionCodec codec = codecs.getCodec(status.getPath());
+            if (codec != null)
+                in = codec.createInputStream(in);
+
+            LineReader reader = new LineReader(in, fs.getConf());
+            try {
+                while (reader.readLine(line_text) > 0) {
+                    tokens.reset(line_text);
+                    if (tokens.isComment())                       // ignore comments in edge file
+                        continue;
+
+                    if (tokens.numFields() < 2)
+                        continue;
+
+                    long src = tokens.nextLong();
+                    long dst = tokens.nextLong();
+                    if (src < 0 || src >= number_nodes || dst < 0 || dst >= number_nodes) {
+                        skipped++;
+                        continue;
+                    }
+
+                    edges.add(src, dst);
+                    edges.add(dst, src);
+                }
+            } finally {
+                reader.close();
+            }
+        }
+
+        return skipped;
+    }
+
+    // the edges of a CSR graph which is not symmetric. every edge is added in both directions.
+    static void readEdges(CsrGraph graph, EdgeList edges) {
+        for (long src = 0; src < graph.number_nodes; src++) {
+            long to = graph.offset(src + 1);
+            for (long k = graph.offset(src); k < to; k++) {
+                int dst = graph.neighbor(k);
+                edges.add(src, dst);
+                edges.add(dst, src);
+            }
+        }
+    }
+
+    // the files under path, skipping hidden files such as _SUCCESS and _logs.
+    static List<FileStatus> listInputFiles(FileSystem fs, Path path) throws IOException {
+        List<FileStatus> files = new ArrayList<FileStatus>();
+        FileStatus status = fs.getFileStatus(path);
+
+        if (!status.isDir()) {
+            files.add(status);
+            return files;
+        }
+
+        for (FileStatus child : fs.listStatus(path)) {
+            String name = child.getPath().getName();
+            if (name.startsWith("_") || name.startsWith("."))
+                continue;
+
+            if (child.isDir())
+                files.addAll(listInputFiles(fs, child.getPath()));
+            else
+                files.add(child);
+        }
+
+        return files;
+    }
+
+    // write (node_id, "msf"component_id) lines, like the unfold stage of ConCmptBlock.
+    static void writeComponents(FileSystem fs, Path dir, long[] component) throws IOException {
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(fs.create(new Path(dir, "part-00000")), "UTF-8"));
+        try {
+            for (int n = 0; n < component.length; n++) {
+                writer.write(Integer.toString(n));
+                writer.write("\tmsf");
+                writer.write(Long.toString(component[n]));
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    // write (component_id, number_of_nodes) lines sorted by component_id, like the summary stage of ConCmptBlock.
+    static void writeSummary(FileSystem fs, Path dir, long[] component) throws IOException {
+        int[] count = new int[component.length];
+        for (int n = 0; n < component.length; n++)
+            count[(int) component[n]]++;
+
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(fs.create(new Path(dir, "part-00000")), "UTF-8"));
+        try {
+            for (int c = 0; c < count.length; c++) {
+                if (count[c] == 0)
+                    continue;
+
+                writer.write(Integer.toString(c));
+                writer.write('\t');
+                writer.write(Integer.toString(count[c]));
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: ConCmptRestoreIds.java
+ - translate the connected components computed on a graph relabeled by
+   NodeRelabel back to the original node ids: rewrites concmpt_curbm and
+   concmpt_summaryout, with the minimum original id of every component as
+   the component id.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+import java.io.*;
+import java.util.*;
+
+import org.apache.hadoop.conf.*;
+import org.apache.hadoop.fs.*;
+import org.apache.hadoop.io.*;
+import org.apache.hadoop.io.compress.SnappyCodec;
+import org.apache.hadoop.mapred.*;
+import org.apache.hadoop.mapred.lib.MultipleInputs;
+import org.apache.hadoop.util.*;
+
+public class ConCmptRestoreIds extends Configured implements Tool {
+    //////////////////////////////////////////////////////////////////////
+    // STAGE 1: join the result with the reverse map by new id.
+    //  - Input: concmpt_curbm (NEW-ID, "msf"NEW-COMPONENT), reverse map (NEW-ID, OLD-ID)
+    //  - Output: NEW-COMPONENT   TAB   OLD-ID
+    //////////////////////////////////////////////////////////////////////
+    public static class MapStage1Result extends MapReduceBase implements Mapper<LongWritable, Text, LongWritable, LongPairWritable> {
+        private final TextTokenizer tokens = new TextTokenizer();
+        private final LongWritable out_key = new LongWritable();
+        private final LongPairWritable out_value = new LongPairWritable();
+
+        // input : node_id   TAB   msf component_id
+        public void map(final LongWritable key, final Text value, final OutputCollector<LongWritable, LongPairWritable> output, final Reporter reporter) throws IOException {
+            tokens.reset(value);
+            out_key.set(tokens.nextLong());
+            tokens.skip(3);                               // "msf"
+            out_value.set(1, tokens.nextLong());
+            output.collect(out_key, out_value);
+        }
+    }
+
+    public static class MapStage1Map extends MapReduceBase implements Mapper<LongWritable, LongWritable, LongWritable, LongPairWritable> {
+        private final LongPairWritable out_value = new LongPairWritable();
+
+        public void map(final LongWritable key, final LongWritable value, final OutputCollector<LongWritable, LongPairWritable> output, final Reporter reporter) throws IOException {
+            out_value.set(0, value.get());
+            output.collect(key, out_value);
+        }
+    }
+
+    // values: (0, OLD-ID) and (1, NEW-COMPONENT)
+    public static class RedStage1 extends MapReduceBase implements Reducer<LongWritable, LongPairWritable, LongWritable, LongWritable> {
+        private final LongWritable out_key = new LongWritable();
+        private final LongWritable out_value = new LongWritable();
+
+        public void reduce(final LongWritable key, final Iterator<LongPairWritable> values, final OutputCollector<LongWritable, LongWritable> output, final Reporter reporter) throws IOException {
+            long old_id = -1;
+            long component_id = -1;
+
+            while (values.hasNext()) {
+                LongPairWritable cur_value = values.next();
+                if (cur_value.first == 0)
+                    old_id = cur_value.second;
+                else
+                    component_id = cur_value.second;
+            }
+
+            if (old_id < 0 || component_id < 0)
+                throw new IOException("RedStage1: node " + key.get() + " is missing in the result or in the id map");
+
+            out_key.set(component_id);
+            out_value.set(old_id);
+            output.collect(out_key, out_value);
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    // STAGE 2: the smallest old id of a component is its new component id.
+    //          The old ids of a component arrive sorted, so the first one is
+    //          the minimum, and the component is not buffered.
+    //  - Input: NEW-COMPONENT   TAB   OLD-ID
+    //  - Output: (OLD-ID, "msf"OLD-COMPONENT) as text
+    //////////////////////////////////////////////////////////////////////
+    public static class MapStage2 extends MapReduceBase implements Mapper<LongWritable, LongWritable, LongPairWritable, LongWritable> {
+        private final LongPairWritable out_key = new LongPairWritable();
+
+        public void map(final LongWritable key, final LongWritable value, final OutputCollector<LongPairWritable, LongWritable> output, final Reporter reporter) throws IOException {
+            out_key.set(key.get(), value.get());
+            output.collect(out_key, value);
+        }
+    }
+
+    public static class RedStage2 extends MapReduceBase implements Reducer<LongPairWritable, LongWritable, LongWritable, Text> {
+        private final LongWritable out_key = new LongWritable();
+        private final Text out_value = new Text();
+
+        public void reduce(final LongPairWritable key, final Iterator<LongWritable> values, final OutputCollector<LongWritable, Text> output, final Reporter reporter) throws IOException {
+            long min_node = -1;
+
+            while (values.hasNext()) {
+                long old_id = values.next().get();
+                if (min_node < 0) {
+                    min_node = old_id;
+                    out_value.set("msf" + min_node);
+                }
+
+                out_key.set(old_id);
+                output.collect(out_key, out_value);
+            }
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    // command line interface
+    //////////////////////////////////////////////////////////////////////
+    protected Path map_path = null;
+    protected Path curbm_unfold_path = null;
+    protected Path summaryout_path = null;
+    protected Path joined_path = null;
+    protected Path restored_path = null;
+    protected int nreducers = 1;
+
+    // Main entry point.
+    public static void main(final String[] args) throws Exception {
+        final int result = ToolRunner.run(new Configuration(), new ConCmptRestoreIds(), args);
+
+        System.exit(result);
+    }
+
+    // Print the command-line usage text.
+    protected static int printUsage() {
+        System.out.println("ConCmptRestoreIds <map_path> <# of reducers>");
+
+        ToolRunner.printGenericCommandUsage(System.out);
+
+        return -1;
+    }
+
+    // submit the map/reduce job.
+    public int run(final String[] args) throws Exception {
+        if (args.length != 2) {
+            return printUsage();
+        }
+
+        map_path = new Path(args[0]);
+        nreducers = Integer.parseInt(args[1]);
+        curbm_unfold_path = new Path("concmpt_curbm");
+        summaryout_path = new Path("concmpt_summaryout");
+        joined_path = new Path("concmpt_curbm_joined");
+        restored_path = new Path("concmpt_curbm_restored");
+
+        System.out.println("\n-----===[PEGASUS: A Peta-Scale Graph Mining System]===-----\n");
+        System.out.println("[PEGASUS] Restoring the original node ids with the id maps in " + args[0] + "\n");
+
+        final FileSystem fs = FileSystem.get(getConf());
+        fs.delete(joined_path, true);
+        fs.delete(restored_path, true);
+
+        JobClient.runJob(configStage1());
+        JobClient.runJob(configStage2());
+        fs.delete(joined_path, true);
+
+        fs.delete(curbm_unfold_path, true);
+        fs.rename(restored_path, curbm_unfold_path);
+
+        // summary of the restored components
+        fs.delete(summaryout_path, true);
+        JobClient.runJob(configStage3());
+
+        System.out.println("\n[PEGASUS] Original node ids restored.");
+        System.out.println("[PEGASUS] Connected component information is saved in the HDFS concmpt_curbm as\n\"node_id	'msf'component_id\" format");
+        System.out.println("[PEGASUS] Connected component distribution is saved in the HDFS concmpt_summaryout as\n\"component_id	number_of_nodes\" format.\n");
+
+        return 0;
+    }
+
+    // Configure pass1
+    protected JobConf configStage1() throws Exception {
+        final JobConf conf = new JobConf(getConf(), ConCmptRestoreIds.class);
+        conf.setJobName("data-piqid.pegasus.ConCmptRestoreIds_pass1");
+
+        MultipleInputs.addInputPath(conf, curbm_unfold_path, TextInputFormat.class, MapStage1Result.class);
+        MultipleInputs.addInputPath(conf, new Path(map_path, "reverse"), SequenceFileInputFormat.class, MapStage1Map.class);
+        conf.setReducerClass(RedStage1.class);
+
+        conf.setOutputFormat(SequenceFileOutputFormat.class);
+        FileOutputFormat.setOutputPath(conf, joined_path);
+        FileOutputFormat.setCompressOutput(conf, true);
+        FileOutputFormat.setOutputCompressorClass(conf, SnappyCodec.class);
+        SequenceFileOutputFormat.setOutputCompressionType(conf, SequenceFile.CompressionType.BLOCK);
+
+        conf.setNumReduceTasks(nreducers);
+
+        conf.setMapOutputKeyClass(LongWritable.class);
+        conf.setMapOutputValueClass(LongPairWritable.class);
+        conf.setOutputKeyClass(LongWritable.class);
+        conf.setOutputValueClass(LongWritable.class);
+
+        return conf;
+    }
+
+    // Configure pass2
+    protected JobConf configStage2() throws Exception {
+        final JobConf conf = new JobConf(getConf(), ConCmptRestoreIds.class);
+        conf.setJobName("data-piqid.pegasus.ConCmptRestoreIds_pass2");
+
+        conf.setMapperClass(MapStage2.class);
+        conf.setReducerClass(RedStage2.class);
+
+        conf.setInputFormat(SequenceFileInputFormat.class);
+        FileInputFormat.setInputPaths(conf, joined_path);
+        FileOutputFormat.setOutputPath(conf, restored_path);
+        FileOutputFormat.setCompressOutput(conf, true);
+        FileOutputFormat.setOutputCompressorClass(conf, SnappyCodec.class);
+
+        conf.setNumReduceTasks(nreducers);
+
+        LongPairWritable.setSecondarySort(conf);
+        conf.setMapOutputValueClass(LongWritable.class);
+        conf.setOutputKeyClass(LongWritable.class);
+        conf.setOutputValueClass(Text.class);
+
+        return conf;
+    }
+
+    // Configure pass3
+    protected JobConf configStage3() throws Exception {
+        final JobConf conf = new JobConf(getConf(), ConCmptRestoreIds.class);
+        conf.setJobName("data-piqid.pegasus.ConCmptRestoreIds_pass3");
+
+        conf.setMapperClass(ConCmptStar.MapStage4.class);
+        conf.setReducerClass(ConCmptBlock.RedStage5.class);
+        conf.setCombinerClass(ConCmptBlock.RedStage5.class);
+
+        FileInputFormat.setInputPaths(conf, curbm_unfold_path);
+        FileOutputFormat.setOutputPath(conf, summaryout_path);
+        FileOutputFormat.setCompressOutput(conf, true);
+        FileOutputFormat.setOutputCompressorClass(conf, SnappyCodec.class);
+
+        conf.setNumReduceTasks(nreducers);
+
+        conf.setOutputKeyClass(LongWritable.class);
+        conf.setOutputValueClass(LongWritable.class);
+
+        return conf;
+    }
+}
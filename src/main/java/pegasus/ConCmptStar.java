@@ -0,0 +1,458 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: ConCmptStar.java
+ - Find Connected Components of graph by alternating Large-Star and Small-Star
+   (Kiveris et al., "Connected Components in MapReduce and Beyond", SoCC 2014).
+   Needs O(log n) rounds instead of O(diameter) iterations of HCC.
+   Reads the same edge file as MatvecPrep, and writes concmpt_curbm and
+   concmpt_summaryout in the same format as ConCmptBlock.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+import java.io.*;
+import java.util.*;
+
+import org.apache.hadoop.conf.*;
+import org.apache.hadoop.fs.*;
+import org.apache.hadoop.io.*;
+import org.apache.hadoop.io.compress.SnappyCodec;
+import org.apache.hadoop.mapred.*;
+import org.apache.hadoop.mapred.lib.MultipleInputs;
+import org.apache.hadoop.util.*;
+
+public class ConCmptStar extends Configured implements Tool {
+    // number of edges replaced in a Large-Star or Small-Star round.
+    public static enum StarCounter {CHANGED}
+
+    // parse an edge of the text edge file(first round) or of a star round(later rounds).
+    // returns false for comments, malformed lines and self loops. tokens is only used for Text.
+    static boolean parseEdge(Writable key, Writable value, TextTokenizer tokens, long[] edge) {
+        if (value instanceof Text) {
+            tokens.reset((Text) value);
+            if (tokens.isComment())                       // ignore comments in edge file
+                return false;
+
+            if (tokens.numFields() < 2)
+                return false;
+
+            edge[0] = tokens.nextLong();
+            edge[1] = tokens.nextLong();
+        } else {
+            edge[0] = ((LongWritable) key).get();
+            edge[1] = ((LongWritable) value).get();
+        }
+
+        return edge[0] != edge[1];
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    // STAGE 1: Large-Star.
+    //          Connect every neighbor larger than u to the minimum of u's neighborhood(including u).
+    //  - Input: edges (u, v)
+    //  - Output: edges (v, m(u)) for v > u
+    //////////////////////////////////////////////////////////////////////
+    public static class MapStage1 extends MapReduceBase implements Mapper<Writable, Writable, LongPairWritable, LongWritable> {
+        private final TextTokenizer tokens = new TextTokenizer();
+        private final long[] edge = new long[2];
+        private final LongPairWritable out_key = new LongPairWritable();
+        private final LongWritable out_value = new LongWritable();
+
+        public void map(final Writable key, final Writable value, final OutputCollector<LongPairWritable, LongWritable> output, final Reporter reporter) throws IOException {
+            if (!parseEdge(key, value, tokens, edge))
+                return;
+
+            out_key.set(edge[0], edge[1]);
+            out_value.set(edge[1]);
+            output.collect(out_key, out_value);
+
+            out_key.set(edge[1], edge[0]);
+            out_value.set(edge[0]);
+            output.collect(out_key, out_value);
+        }
+    }
+
+    public static class RedStage1 extends MapReduceBase implements Reducer<LongPairWritable, LongWritable, LongWritable, LongWritable> {
+        private final LongWritable out_key = new LongWritable();
+        private final LongWritable out_value = new LongWritable();
+
+        // the neighbors arrive sorted, so the first one is the minimum.
+        public void reduce(final LongPairWritable key, final Iterator<LongWritable> values, final OutputCollector<LongWritable, LongWritable> output, final Reporter reporter) throws IOException {
+            final long u = key.first;
+            long m = u;
+            long prev = -1;
+            boolean first = true;
+
+            while (values.hasNext()) {
+                long v = values.next().get();
+                if (first) {
+                    m = Math.min(u, v);
+                    first = false;
+                } else if (v == prev) {    // duplicated edge
+                    continue;
+                }
+                prev = v;
+
+                if (v > u) {
+                    out_key.set(v);
+                    out_value.set(m);
+                    output.collect(out_key, out_value);
+                    if (m != u)
+                        reporter.incrCounter(StarCounter.CHANGED, 1);
+                }
+            }
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    // STAGE 2: Small-Star.
+    //          Connect u and every neighbor smaller than u to the minimum of them.
+    //  - Input: edges (u, v)
+    //  - Output: edges (v, m) for v in N(u) + {u}, v != m
+    //////////////////////////////////////////////////////////////////////
+    public static class MapStage2 extends MapReduceBase implements Mapper<LongWritable, LongWritable, LongPairWritable, LongWritable> {
+        private final long[] edge = new long[2];
+        private final LongPairWritable out_key = new LongPairWritable();
+        private final LongWritable out_value = new LongWritable();
+
+        public void map(final LongWritable key, final LongWritable value, final OutputCollector<LongPairWritable, LongWritable> output, final Reporter reporter) throws IOException {
+            if (!parseEdge(key, value, null, edge))
+                return;
+
+            long u = Math.max(edge[0], edge[1]);
+            long v = Math.min(edge[0], edge[1]);
+
+            out_key.set(u, v);
+            out_value.set(v);
+            output.collect(out_key, out_value);
+        }
+    }
+
+    public static class RedStage2 extends MapReduceBase implements Reducer<LongPairWritable, LongWritable, LongWritable, LongWritable> {
+        private final LongWritable out_key = new LongWritable();
+        private final LongWritable out_value = new LongWritable();
+
+        // the smaller neighbors arrive sorted, so the first one is the minimum.
+        public void reduce(final LongPairWritable key, final Iterator<LongWritable> values, final OutputCollector<LongWritable, LongWritable> output, final Reporter reporter) throws IOException {
+            final long u = key.first;
+            long m = -1;
+            long prev = -1;
+
+            while (values.hasNext()) {
+                long v = values.next().get();
+                if (m == -1) {
+                    m = v;
+                    prev = v;
+                    continue;
+                } else if (v == prev) {    // duplicated edge
+                    continue;
+                }
+                prev = v;
+
+                out_key.set(v);
+                out_value.set(m);
+                output.collect(out_key, out_value);
+                reporter.incrCounter(StarCounter.CHANGED, 1);
+            }
+
+            out_key.set(u);
+            out_value.set(m);
+            output.collect(out_key, out_value);
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    // STAGE 3: Assign the component id to every node in [0, number_nodes), after the stars converged.
+    //  - Input: star edges (v, center), node range commands (start, end)
+    //  - Output: (node_id, "msf"component_id)
+    //////////////////////////////////////////////////////////////////////
+    public static class MapStage3Edge extends MapReduceBase implements Mapper<LongWritable, LongWritable, LongWritable, LongWritable> {
+        public void map(final LongWritable key, final LongWritable value, final OutputCollector<LongWritable, LongWritable> output, final Reporter reporter) throws IOException {
+            output.collect(key, value);
+        }
+    }
+
+    public static class MapStage3Range extends MapReduceBase implements Mapper<LongWritable, Text, LongWritable, LongWritable> {
+        private final TextTokenizer tokens = new TextTokenizer();
+        private final LongWritable out_key = new LongWritable();
+
+        // input : start_node   TAB   end_node
+        public void map(final LongWritable key, final Text value, final OutputCollector<LongWritable, LongWritable> output, final Reporter reporter) throws IOException {
+            tokens.reset(value);
+            long start_node = tokens.nextLong();
+            long end_node = tokens.nextLong();
+
+            for (long i = start_node; i <= end_node; i++) {
+                out_key.set(i);
+                output.collect(out_key, out_key);
+            }
+        }
+    }
+
+    public static class RedStage3 extends MapReduceBase implements Reducer<LongWritable, LongWritable, LongWritable, Text> {
+        private final TextTokenizer tokens = new TextTokenizer();
+        private final Text out_value = new Text();
+
+        public void reduce(final LongWritable key, final Iterator<LongWritable> values, final OutputCollector<LongWritable, Text> output, final Reporter reporter) throws IOException {
+            long min_node = Long.MAX_VALUE;
+
+            while (values.hasNext())
+                min_node = Math.min(min_node, values.next().get());
+
+            tokens.format(out_value, TextTokenizer.MSF, min_node);
+            output.collect(key, out_value);
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    // STAGE 4 : Summarize connected component information
+    //    input : concmpt_curbm
+    //    output : concmpt_summaryout
+    //             min_node_id, number_of_nodes_in_the_component
+    //////////////////////////////////////////////////////////////////////
+    public static class MapStage4 extends MapReduceBase implements Mapper<LongWritable, Text, LongWritable, LongWritable> {
+        private final TextTokenizer tokens = new TextTokenizer();
+        private final LongWritable out_key = new LongWritable();
+        private final LongWritable out_count = new LongWritable(1);
+
+        // input : node_id   TAB   msf component_id
+        public void map(final LongWritable key, final Text value, final OutputCollector<LongWritable, LongWritable> output, final Reporter reporter) throws IOException {
+            tokens.reset(value);
+            tokens.skipField();
+            tokens.skip(3);                               // "msf"
+
+            out_key.set(tokens.nextLong());
+            output.collect(out_key, out_count);
+        }
+    }
+
+
+    //////////////////////////////////////////////////////////////////////
+    // command line interface
+    //////////////////////////////////////////////////////////////////////
+    protected Path edge_path = null;
+    protected Path curbm_path = null;
+    protected Path tempbm_path = null;
+    protected Path nextbm_path = null;
+    protected Path range_path = null;
+    protected Path curbm_unfold_path = null;
+    protected Path summaryout_path = null;
+    protected long number_nodes = 0;
+    protected int nreducers = 1;
+    protected int max_iters = 0;
+
+    // Main entry point.
+    public static void main(final String[] args) throws Exception {
+        final int result = ToolRunner.run(new Configuration(), new ConCmptStar(), args);
+
+        System.exit(result);
+    }
+
+    // Print the command-line usage text.
+    protected static int printUsage() {
+        System.out.println("ConCmptStar <edge_path> <curbm_path> <tempbm_path> <nextbm_path> <# of nodes> <# of reducers> <max_iters>");
+
+        ToolRunner.printGenericCommandUsage(System.out);
+
+        return -1;
+    }
+
+    // submit the map/reduce job.
+    public int run(final String[] args) throws Exception {
+        if (args.length != 7) {
+            return printUsage();
+        }
+
+        edge_path = new Path(args[0]);
+        curbm_path = new Path(args[1]);
+        tempbm_path = new Path(args[2]);
+        nextbm_path = new Path(args[3]);
+        range_path = new Path(args[1] + "_range");
+        curbm_unfold_path = new Path("concmpt_curbm");
+        summaryout_path = new Path("concmpt_summaryout");
+        number_nodes = Long.parseLong(args[4]);
+        nreducers = Integer.parseInt(args[5]);
+        max_iters = Integer.parseInt(args[6]);
+        if (max_iters < 0 || max_iters > ConCmptBlock.MAX_ITERATIONS)
+            max_iters = ConCmptBlock.MAX_ITERATIONS;
+
+        System.out.println("\n-----===[PEGASUS: A Peta-Scale Graph Mining System]===-----\n");
+        System.out.println("[PEGASUS] Computing connected component using Large-Star/Small-Star. Reducers = " + nreducers);
+
+        final FileSystem fs = FileSystem.get(getConf());
+        Path input_path = edge_path;
+        int iter_counter = 0;
+
+        for (int i = 0; i < max_iters; i++) {
+            iter_counter++;
+
+            RunningJob large_job = JobClient.runJob(configStage1(input_path, tempbm_path));
+            RunningJob small_job = JobClient.runJob(configStage2(tempbm_path, nextbm_path));
+
+            long large_changed = large_job.getCounters().getCounter(StarCounter.CHANGED);
+            long small_changed = small_job.getCounters().getCounter(StarCounter.CHANGED);
+
+            System.out.println("Round " + i + " : large-star changed = " + large_changed + ", small-star changed = " + small_changed);
+
+            // rotate directory
+            fs.delete(curbm_path, true);
+            fs.delete(tempbm_path, true);
+            fs.rename(nextbm_path, curbm_path);
+            input_path = curbm_path;
+
+            // Stop when neither of them changed the graph. every component is a star centered at its minimum node.
+            if (large_changed == 0 && small_changed == 0) {
+                System.out.println("Converged after " + iter_counter + " rounds.");
+                break;
+            }
+        }
+
+        System.out.println("Unfolding the stars for easy lookup...");
+        genRangeFile(fs, range_path, number_nodes, nreducers);
+        JobClient.runJob(configStage3());
+        fs.delete(range_path, true);
+
+        // calculate summary information using an additional pass
+        System.out.println("Summarizing connected components information...");
+        JobClient.runJob(configStage4());
+
+        // finishing.
+        System.out.println("\n[PEGASUS] Connected component computed.");
+        System.out.println("[PEGASUS] Total Rounds = " + iter_counter);
+        System.out.println("[PEGASUS] Connected component information is saved in the HDFS concmpt_curbm as\n\"node_id	'msf'component_id\" format");
+        System.out.println("[PEGASUS] Connected component distribution is saved in the HDFS concmpt_summaryout as\n\"component_id	number_of_nodes\" format.\n");
+
+        return 0;
+    }
+
+    // write the node range command file. one line(start_node TAB end_node) per reducer.
+    static void genRangeFile(FileSystem fs, Path path, long num_nodes, int num_reducers) throws IOException {
+        BufferedWriter out = new BufferedWriter(new OutputStreamWriter(fs.create(new Path(path, "ranges")), "UTF-8"));
+        long step = num_nodes / num_reducers;
+
+        for (int i = 0; i < num_reducers; i++) {
+            long start_node = i * step;
+            long end_node = (i < num_reducers - 1) ? step * (i + 1) - 1 : num_nodes - 1;
+            if (start_node <= end_node)
+                out.write(start_node + "\t" + end_node + "\n");
+        }
+        out.close();
+    }
+
+    // Configure Large-Star
+    protected JobConf configStage1(Path in_path, Path out_path) throws Exception {
+        final JobConf conf = new JobConf(getConf(), ConCmptStar.class);
+        conf.setJobName("data-piqid.pegasus.ConCmptStar_large");
+
+        conf.setMapperClass(MapStage1.class);
+        conf.setReducerClass(RedStage1.class);
+
+        // the first round reads the text edge file.
+        if (in_path.equals(edge_path))
+            conf.setInputFormat(TextInputFormat.class);
+        else
+            conf.setInputFormat(SequenceFileInputFormat.class);
+        FileInputFormat.setInputPaths(conf, in_path);
+        setEdgeOutput(conf, out_path);
+
+        conf.setNumReduceTasks(nreducers);
+
+        LongPairWritable.setSecondarySort(conf);
+        conf.setMapOutputValueClass(LongWritable.class);
+        conf.setOutputKeyClass(LongWritable.class);
+        conf.setOutputValueClass(LongWritable.class);
+
+        return conf;
+    }
+
+    // Configure Small-Star
+    protected JobConf configStage2(Path in_path, Path out_path) throws Exception {
+        final JobConf conf = new JobConf(getConf(), ConCmptStar.class);
+        conf.setJobName("data-piqid.pegasus.ConCmptStar_small");
+
+        conf.setMapperClass(MapStage2.class);
+        conf.setReducerClass(RedStage2.class);
+
+        conf.setInputFormat(SequenceFileInputFormat.class);
+        FileInputFormat.setInputPaths(conf, in_path);
+        setEdgeOutput(conf, out_path);
+
+        conf.setNumReduceTasks(nreducers);
+
+        LongPairWritable.setSecondarySort(conf);
+        conf.setMapOutputValueClass(LongWritable.class);
+        conf.setOutputKeyClass(LongWritable.class);
+        conf.setOutputValueClass(LongWritable.class);
+
+        return conf;
+    }
+
+    // Write edges as a block-compressed SequenceFile.
+    protected static void setEdgeOutput(JobConf conf, Path path) {
+        conf.setOutputFormat(SequenceFileOutputFormat.class);
+        FileOutputFormat.setOutputPath(conf, path);
+        FileOutputFormat.setCompressOutput(conf, true);
+        FileOutputFormat.setOutputCompressorClass(conf, SnappyCodec.class);
+        SequenceFileOutputFormat.setOutputCompressionType(conf, SequenceFile.CompressionType.BLOCK);
+    }
+
+    // Configure unfold
+    protected JobConf configStage3() throws Exception {
+        final JobConf conf = new JobConf(getConf(), ConCmptStar.class);
+        conf.setJobName("data-piqid.pegasus.ConCmptStar_unfold");
+
+        MultipleInputs.addInputPath(conf, curbm_path, SequenceFileInputFormat.class, MapStage3Edge.class);
+        MultipleInputs.addInputPath(conf, range_path, TextInputFormat.class, MapStage3Range.class);
+        conf.setReducerClass(RedStage3.class);
+
+        FileOutputFormat.setOutputPath(conf, curbm_unfold_path);
+        FileOutputFormat.setCompressOutput(conf, true);
+        FileOutputFormat.setOutputCompressorClass(conf, SnappyCodec.class);
+
+        conf.setNumReduceTasks(nreducers);
+
+        conf.setMapOutputKeyClass(LongWritable.class);
+        conf.setMapOutputValueClass(LongWritable.class);
+        conf.setOutputKeyClass(LongWritable.class);
+        conf.setOutputValueClass(Text.class);
+
+        return conf;
+    }
+
+    // Configure summary
+    protected JobConf configStage4() throws Exception {
+        final JobConf conf = new JobConf(getConf(), ConCmptStar.class);
+        conf.setJobName("data-piqid.pegasus.ConCmptStar_summary");
+
+        conf.setMapperClass(MapStage4.class);
+        conf.setReducerClass(ConCmptBlock.RedStage5.class);
+        conf.setCombinerClass(ConCmptBlock.RedStage5.class);
+
+        FileInputFormat.setInputPaths(conf, curbm_unfold_path);
+        FileOutputFormat.setOutputPath(conf, summaryout_path);
+        FileOutputFormat.setCompressOutput(conf, true);
+        FileOutputFormat.setOutputCompressorClass(conf, SnappyCodec.class);
+
+        conf.setNumReduceTasks(nreducers);
+
+        conf.setOutputKeyClass(LongWritable.class);
+        conf.setOutputValueClass(LongWritable.class);
+
+        return conf;
+    }
+}
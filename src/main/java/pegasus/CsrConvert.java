@@ -0,0 +1,226 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: CsrConvert.java
+ - convert a text edge file into the binary CSR file of CsrGraph, for the
+   local tools. The edge file is read twice: once to count the degrees, and
+   once to fill the neighbors, which are written through a memory mapping.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+import org.apache.hadoop.conf.*;
+import org.apache.hadoop.fs.*;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.util.*;
+
+public class CsrConvert extends Configured implements Tool {
+    //////////////////////////////////////////////////////////////////////
+    // command line interface
+    //////////////////////////////////////////////////////////////////////
+    protected Path edge_path = null;
+    protected File output_file = null;
+    protected long number_nodes = 0;
+    protected int makesym = 0;
+
+    // degree of every node, then the number of neighbors filled in.
+    protected int[] degree;
+    protected long[] offsets;
+    protected long skipped = 0;
+
+    // Main entry point.
+    public static void main(final String[] args) throws Exception {
+        final int result = ToolRunner.run(new Configuration(), new CsrConvert(), args);
+
+        System.exit(result);
+    }
+
+    // Print the command-line usage text.
+    protected static int printUsage() {
+        System.out.println("CsrConvert <edge_path> <local output file> <# of nodes> <makesym or nosym>");
+
+        ToolRunner.printGenericCommandUsage(System.out);
+
+        return -1;
+    }
+
+    public int run(final String[] args) throws Exception {
+        if (args.length != 4) {
+            return printUsage();
+        }
+
+        edge_path = new Path(args[0]);
+        output_file = new File(args[1]);
+        number_nodes = Long.parseLong(args[2]);
+        if (args[3].compareTo("makesym") == 0)
+            makesym = 1;
+        else
+            makesym = 0;
+
+        if (number_nodes >= Integer.MAX_VALUE) {
+            System.err.println("[PEGASUS] CsrConvert supports less than " + Integer.MAX_VALUE + " nodes.");
+            return -1;
+        }
+
+        System.out.println("\n-----===[PEGASUS: A Peta-Scale Graph Mining System]===-----\n");
+        System.out.println("[PEGASUS] Converting " + edge_path + " to the CSR file " + output_file + (makesym == 1 ? ", symmetric" : ""));
+
+        final FileSystem fs = FileSystem.get(getConf());
+        long start_time = System.currentTimeMillis();
+
+        // pass 1: degrees and offsets
+        degree = new int[(int) number_nodes];
+        readEdges(fs, null);
+        offsets = new long[(int) number_nodes + 1];
+        for (int n = 0; n < number_nodes; n++)
+            offsets[n + 1] = offsets[n] + degree[n];
+        long number_edges = offsets[(int) number_nodes];
+        System.out.println("Counted " + number_edges + " edges in " + (System.currentTimeMillis() - start_time) + " ms.");
+        if (skipped > 0)
+            System.err.println("[PEGASUS] Skipped " + skipped + " edges with node ids >= " + number_nodes);
+
+        // write to a temporary file, so that readers never map a partial graph.
+        File temp_file = new File(output_file.getPath() + ".tmp");
+        RandomAccessFile file = new RandomAccessFile(temp_file, "rw");
+        try {
+            long length = CsrGraph.neighborsOffset(number_nodes) + 4 * number_edges;
+            file.setLength(0);
+            file.setLength(length);
+            FileChannel channel = file.getChannel();
+
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+            buffer.putInt(CsrGraph.MAGIC).putInt(CsrGraph.VERSION).putInt(makesym == 1 ? CsrGraph.SYMMETRIC : 0).putInt(0);
+            buffer.putLong(number_nodes).putLong(number_edges);
+            long pos = 0;
+            for (int n = 0; n <= number_nodes; n++) {
+                if (!buffer.hasRemaining()) {
+                    pos = flush(channel, buffer, pos);
+                }
+                buffer.putLong(offsets[n]);
+            }
+            flush(channel, buffer, pos);
+
+            // pass 2: neighbors
+            MappedByteBuffer[] segments = CsrGraph.map(channel, FileChannel.MapMode.READ_WRITE, length);
+            Arrays.fill(degree, 0);
+            readEdges(fs, segments);
+            sortNeighbors(segments);
+            for (MappedByteBuffer segment : segments)
+                segment.force();
+        } finally {
+            file.close();
+        }
+
+        if (!temp_file.renameTo(output_file))
+            throw new IOException("Failed to rename " + temp_file + " to " + output_file);
+
+        System.out.println("\n[PEGASUS] " + number_nodes + " nodes and " + number_edges + " edges converted in " + (System.currentTimeMillis() - start_time) + " ms.");
+        System.out.println("[PEGASUS] The CSR graph is saved in " + output_file + ".\n");
+
+        return 0;
+    }
+
+    private static long flush(FileChannel channel, ByteBuffer buffer, long pos) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            pos += channel.write(buffer, pos);
+        buffer.clear();
+
+        return pos;
+    }
+
+    // read the text edge file(s) under edge_path. without segments, count the degrees.
+    // with segments, write every neighbor at its position in the neighbor array.
+    void readEdges(FileSystem fs, MappedByteBuffer[] segments) throws IOException {
+        CompressionCodecFactory codecs = new CompressionCodecFactory(fs.getConf());
+        TextTokenizer tokens = new TextTokenizer();
+        Text line_text = new Text();
+        skipped = 0;
+
+        for (FileStatus status : ConCmptLocal.listInputFiles(fs, edge_path)) {
+            InputStream in = fs.open(status.getPath());
+            CompressionCodec codec = codecs.getCodec(status.getPath());
+            if (codec != null)
+                in = codec.createInputStream(in);
+
+            LineReader reader = new LineReader(in, fs.getConf());
+            try {
+                while (reader.readLine(line_text) > 0) {
+                    tokens.reset(line_text);
+                    if (tokens.isComment())                       // ignore comments in edge file
+                        continue;
+
+                    if (tokens.numFields() < 2)
+                        continue;
+
+                    long src = tokens.nextLong();
+                    long dst = tokens.nextLong();
+                    if (src < 0 || src >= number_nodes || dst < 0 || dst >= number_nodes) {
+                        skipped++;
+                        continue;
+                    }
+
+                    addEdge(segments, (int) src, (int) dst);
+                    if (makesym == 1 && src != dst)
+                        addEdge(segments, (int) dst, (int) src);
+                }
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    private void addEdge(MappedByteBuffer[] segments, int src, int dst) {
+        if (segments != null) {
+            long pos = CsrGraph.neighborsOffset(number_nodes) + 4 * (offsets[src] + degree[src]);
+            segments[(int) (pos >>> CsrGraph.SEGMENT_BITS)].putInt((int) (pos & CsrGraph.SEGMENT_MASK), dst);
+        }
+        degree[src]++;
+    }
+
+    // sort the neighbors of every node, so that the file does not depend on the order of the edge file.
+    private void sortNeighbors(MappedByteBuffer[] segments) {
+        int[] scratch = new int[16];
+        long base = CsrGraph.neighborsOffset(number_nodes);
+
+        for (int n = 0; n < number_nodes; n++) {
+            int d = degree[n];
+            if (d < 2)
+                continue;
+            if (scratch.length < d)
+                scratch = new int[Math.max(d, scratch.length * 2)];
+
+            for (int k = 0; k < d; k++) {
+                long pos = base + 4 * (offsets[n] + k);
+                scratch[k] = segments[(int) (pos >>> CsrGraph.SEGMENT_BITS)].getInt((int) (pos & CsrGraph.SEGMENT_MASK));
+            }
+            Arrays.sort(scratch, 0, d);
+            for (int k = 0; k < d; k++) {
+                long pos = base + 4 * (offsets[n] + k);
+                segments[(int) (pos >>> CsrGraph.SEGMENT_BITS)].putInt((int) (pos & CsrGraph.SEGMENT_MASK), scratch[k]);
+            }
+        }
+    }
+}
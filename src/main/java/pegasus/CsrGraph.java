@@ -0,0 +1,125 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: CsrGraph.java
+ - A graph in the binary CSR file of CsrConvert, memory-mapped read-only:
+   nothing is parsed or copied when it is opened. The file is
+     header : MAGIC, VERSION, flags (int), 0 (int), number_nodes, number_edges (long)
+     offsets : number_nodes + 1 longs. the neighbors of node i are [offsets[i], offsets[i+1])
+     neighbors : number_edges ints, sorted for every node
+   all big-endian. A block row of width w is the edges [offsets[i * w], offsets[(i + 1) * w]),
+   so the offsets are also the block index of the matrix.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+public class CsrGraph implements Closeable {
+    public static final int MAGIC = 0x50474352;    // "PGCR"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+
+    // flags
+    public static final int SYMMETRIC = 1;    // every edge is stored in both directions
+
+    // the file is mapped in segments of 2^SEGMENT_BITS bytes, as a mapping is limited to 2GB.
+    // offsets and neighbors are aligned on their size, so none of them spans two segments.
+    static final int SEGMENT_BITS = 30;
+    static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+    public final int flags;
+    public final long number_nodes;
+    public final long number_edges;
+    private final long neighbors_offset;
+    private final RandomAccessFile file;
+    private final MappedByteBuffer[] segments;
+
+    public CsrGraph(File path) throws IOException {
+        file = new RandomAccessFile(path, "r");
+        FileChannel channel = file.getChannel();
+        long length = channel.size();
+
+        if (length < HEADER_SIZE || file.readInt() != MAGIC)
+            throw new IOException(path + " is not a CSR graph");
+        int version = file.readInt();
+        if (version != VERSION)
+            throw new IOException(path + ": unsupported CSR graph version " + version);
+        flags = file.readInt();
+        file.readInt();
+        number_nodes = file.readLong();
+        number_edges = file.readLong();
+        neighbors_offset = neighborsOffset(number_nodes);
+        if (length != neighbors_offset + 4 * number_edges)
+            throw new IOException(path + " is truncated: " + length + " bytes");
+
+        segments = map(channel, FileChannel.MapMode.READ_ONLY, length);
+    }
+
+    static long neighborsOffset(long number_nodes) {
+        return HEADER_SIZE + 8 * (number_nodes + 1);
+    }
+
+    static MappedByteBuffer[] map(FileChannel channel, FileChannel.MapMode mode, long length) throws IOException {
+        MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((length + SEGMENT_MASK) >>> SEGMENT_BITS)];
+        for (int i = 0; i < segments.length; i++) {
+            long start = (long) i << SEGMENT_BITS;
+            segments[i] = channel.map(mode, start, Math.min(length - start, 1L << SEGMENT_BITS));
+        }
+
+        return segments;
+    }
+
+    public boolean isSymmetric() {
+        return (flags & SYMMETRIC) != 0;
+    }
+
+    // position of the first neighbor of node in the neighbor array. offset(number_nodes) is number_edges.
+    public long offset(long node) {
+        long pos = HEADER_SIZE + 8 * node;
+        return segments[(int) (pos >>> SEGMENT_BITS)].getLong((int) (pos & SEGMENT_MASK));
+    }
+
+    public int degree(long node) {
+        return (int) (offset(node + 1) - offset(node));
+    }
+
+    // the neighbor at position pos of the neighbor array.
+    public int neighbor(long pos) {
+        pos = neighbors_offset + 4 * pos;
+        return segments[(int) (pos >>> SEGMENT_BITS)].getInt((int) (pos & SEGMENT_MASK));
+    }
+
+    // copy the neighbors of node to dst, which must hold degree(node) elements. returns the degree.
+    public int neighbors(long node, int[] dst) {
+        long from = offset(node);
+        int degree = (int) (offset(node + 1) - from);
+        for (int k = 0; k < degree; k++)
+            dst[k] = neighbor(from + k);
+
+        return degree;
+    }
+
+    public void close() throws IOException {
+        file.close();
+    }
+}
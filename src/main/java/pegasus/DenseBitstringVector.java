@@ -0,0 +1,147 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: DenseBitstringVector.java
+ - A dense vector of Flajolet-Martin bitstrings of one block with a presence
+   bitmap, the scratch buffer of the bitwise-OR kernel of GIMV.
+   The nbits bitstrings of element i are bits[i * nbits, (i + 1) * nbits).
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+public class DenseBitstringVector {
+    // correction factor of the Flajolet-Martin estimate.
+    public static final double FM_PHI = 0.77351;
+
+    public final int width;
+    public final int nbits;
+    public final long[] bits;
+    public final int[] radius;
+    public final long[] present;    // bit i is set if element i is defined
+
+    public DenseBitstringVector(int width, int nbits) {
+        this.width = width;
+        this.nbits = nbits;
+        bits = new long[width * nbits];
+        radius = new int[width];
+        present = new long[(width + 63) >>> 6];
+    }
+
+    public void clear() {
+        for (int w = 0; w < present.length; w++)
+            present[w] = 0;
+    }
+
+    public boolean isSet(int i) {
+        return (present[i >>> 6] & (1L << i)) != 0;
+    }
+
+    // bits[i] |= src[offset, offset + nbits)
+    public void or(int i, long[] src, int offset) {
+        final int w = i >>> 6;
+        final long bit = 1L << i;
+        final int base = i * nbits;
+
+        if ((present[w] & bit) == 0) {
+            present[w] |= bit;
+            radius[i] = 0;
+            System.arraycopy(src, offset, bits, base, nbits);
+        } else {
+            for (int k = 0; k < nbits; k++)
+                bits[base + k] |= src[offset + k];
+        }
+    }
+
+    public void load(BitstringVectorWritable vector) {
+        clear();
+        orAll(vector);
+        for (int i = 0; i < vector.size; i++)
+            radius[vector.rows[i]] = vector.radius[i];
+    }
+
+    // element-wise OR of this and vector.
+    public void orAll(BitstringVectorWritable vector) {
+        for (int i = 0; i < vector.size; i++)
+            or(vector.rows[i], vector.bits, i * nbits);
+    }
+
+    // true if element i is defined in both, with the same bitstrings.
+    public boolean sameAs(int i, DenseBitstringVector other) {
+        if (!isSet(i) || !other.isSet(i))
+            return false;
+
+        final int base = i * nbits;
+        for (int k = 0; k < nbits; k++) {
+            if (bits[base + k] != other.bits[base + k])
+                return false;
+        }
+
+        return true;
+    }
+
+    // write the defined elements to out, in increasing row order.
+    public void store(BitstringVectorWritable out) {
+        out.clear(nbits);
+        for (int w = 0; w < present.length; w++) {
+            long set = present[w];
+            while (set != 0) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(set);
+                out.add(i, radius[i], bits, i * nbits);
+                set &= set - 1;
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        for (int w = 0; w < present.length; w++) {
+            if (present[w] != 0)
+                return false;
+        }
+
+        return true;
+    }
+
+    // Flajolet-Martin estimate of the number of nodes in the neighborhood of element i:
+    // 2^(mean position of the lowest zero bit) / FM_PHI.
+    public double estimate(int i) {
+        final int base = i * nbits;
+        int sum = 0;
+        for (int k = 0; k < nbits; k++)
+            sum += Long.numberOfTrailingZeros(~bits[base + k]);
+
+        return Math.pow(2, (double) sum / nbits) / FM_PHI;
+    }
+
+    // initial bitstrings of node: bit b of each is set with probability 1/2^(b+1).
+    // the hash of the node id replaces a random generator, so the bitstrings are reproducible.
+    public void initial(int i, long node) {
+        present[i >>> 6] |= 1L << i;
+        radius[i] = 0;
+        for (int k = 0; k < nbits; k++) {
+            long h = mix64(node * nbits + k);
+            bits[i * nbits + k] = 1L << Math.min(Long.numberOfTrailingZeros(h), 63);
+        }
+    }
+
+    // splitmix64 finalizer.
+    private static long mix64(long z) {
+        z += 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,100 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: DenseDoubleVector.java
+ - A dense double vector of one block with a presence bitmap, the scratch
+   buffer of the double GIMV kernels. See DenseLongVector.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+public class DenseDoubleVector {
+    public final int width;
+    public final double[] vals;
+    public final long[] present;    // bit i is set if vals[i] is defined
+
+    public DenseDoubleVector(int width) {
+        this.width = width;
+        vals = new double[width];
+        present = new long[(width + 63) >>> 6];
+    }
+
+    public void clear() {
+        for (int w = 0; w < present.length; w++)
+            present[w] = 0;
+    }
+
+    public boolean isSet(int i) {
+        return (present[i >>> 6] & (1L << i)) != 0;
+    }
+
+    public double get(int i) {
+        return vals[i];
+    }
+
+    public void set(int i, double val) {
+        present[i >>> 6] |= 1L << i;
+        vals[i] = val;
+    }
+
+    // combine the current value and val with s.combineAll.
+    public void combine(int i, double val, DoubleSemiring s) {
+        final int w = i >>> 6;
+        final long bit = 1L << i;
+
+        if ((present[w] & bit) == 0) {
+            present[w] |= bit;
+            vals[i] = val;
+        } else {
+            vals[i] = s.combineAll(vals[i], val);
+        }
+    }
+
+    public void load(DoubleVectorWritable vector) {
+        clear();
+        for (int i = 0; i < vector.size; i++)
+            set(vector.rows[i], vector.vals[i]);
+    }
+
+    // combine this and vector element-wise.
+    public void combineAll(DoubleVectorWritable vector, DoubleSemiring s) {
+        for (int i = 0; i < vector.size; i++)
+            combine(vector.rows[i], vector.vals[i], s);
+    }
+
+    // write the defined elements to out, in increasing row order.
+    public void store(DoubleVectorWritable out) {
+        out.clear();
+        for (int w = 0; w < present.length; w++) {
+            long bits = present[w];
+            while (bits != 0) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+                out.add(i, vals[i]);
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        for (int w = 0; w < present.length; w++) {
+            if (present[w] != 0)
+                return false;
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,167 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: DenseLongVector.java
+ - A dense long vector of one block with a presence bitmap.
+   Used as a reusable scratch buffer by the GIMV kernels, so that a reducer
+   does not allocate anything per element.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+public class DenseLongVector {
+    public final int width;
+    public final long[] vals;
+    public final long[] present;    // bit i is set if vals[i] is defined
+
+    public DenseLongVector(int width) {
+        this.width = width;
+        vals = new long[width];
+        present = new long[(width + 63) >>> 6];
+    }
+
+    public void clear() {
+        for (int w = 0; w < present.length; w++)
+            present[w] = 0;
+    }
+
+    public boolean isSet(int i) {
+        return (present[i >>> 6] & (1L << i)) != 0;
+    }
+
+    public long get(int i) {
+        return vals[i];
+    }
+
+    public void set(int i, long val) {
+        present[i >>> 6] |= 1L << i;
+        vals[i] = val;
+    }
+
+    // keep the minimum of the current value and val.
+    public void min(int i, long val) {
+        final int w = i >>> 6;
+        final long bit = 1L << i;
+
+        if ((present[w] & bit) == 0) {
+            present[w] |= bit;
+            vals[i] = val;
+        } else if (vals[i] > val) {
+            vals[i] = val;
+        }
+    }
+
+    // combine the current value and val with s.combineAll.
+    public void combine(int i, long val, LongSemiring s) {
+        final int w = i >>> 6;
+        final long bit = 1L << i;
+
+        if ((present[w] & bit) == 0) {
+            present[w] |= bit;
+            vals[i] = val;
+        } else {
+            vals[i] = s.combineAll(vals[i], val);
+        }
+    }
+
+    public void copyFrom(DenseLongVector other) {
+        System.arraycopy(other.present, 0, present, 0, present.length);
+        System.arraycopy(other.vals, 0, vals, 0, width);
+    }
+
+    public void load(VectorWritable vector) {
+        clear();
+        for (int i = 0; i < vector.size; i++)
+            set(vector.rows[i], vector.vals[i]);
+    }
+
+    // load the dense values src[offset, offset + len). the elements after len are undefined.
+    public void load(long[] src, int offset, int len) {
+        clear();
+        for (int i = 0; i < len; i++)
+            set(i, src[offset + i]);
+    }
+
+    // keep the element-wise minimum of this and other.
+    public void minAll(DenseLongVector other) {
+        for (int w = 0; w < present.length; w++) {
+            long bits = other.present[w];
+            while (bits != 0) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+                min(i, other.vals[i]);
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    // keep the element-wise minimum of this and vector.
+    public void minAll(VectorWritable vector) {
+        for (int i = 0; i < vector.size; i++)
+            min(vector.rows[i], vector.vals[i]);
+    }
+
+    // combine this and vector element-wise.
+    public void combineAll(VectorWritable vector, LongSemiring s) {
+        if (s == LongSemiring.MIN) {
+            minAll(vector);
+            return;
+        }
+
+        for (int i = 0; i < vector.size; i++)
+            combine(vector.rows[i], vector.vals[i], s);
+    }
+
+    // write the defined elements to out, in increasing row order.
+    public void store(VectorWritable out) {
+        out.clear();
+        for (int w = 0; w < present.length; w++) {
+            long bits = present[w];
+            while (bits != 0) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+                out.add(i, vals[i]);
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        for (int w = 0; w < present.length; w++) {
+            if (present[w] != 0)
+                return false;
+        }
+
+        return true;
+    }
+
+    // same defined elements with the same values.
+    public boolean sameAs(DenseLongVector other) {
+        for (int w = 0; w < present.length; w++) {
+            if (present[w] != other.present[w])
+                return false;
+
+            long bits = present[w];
+            while (bits != 0) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+                if (vals[i] != other.vals[i])
+                    return false;
+                bits &= bits - 1;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,46 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: DoubleSemiring.java
+ - The operations of GIMV on double vectors, as LongSemiring for long vectors.
+   SUM_PRODUCT is the plain matrix-vector multiplication. PageRank overrides
+   assign() with the random jump, see PagerankBlock.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+public abstract class DoubleSemiring {
+    public static final DoubleSemiring SUM_PRODUCT = new DoubleSemiring() {
+        public double assign(double old_val, double new_val) {
+            return new_val;
+        }
+    };
+
+    public double combine2(double m, double v) {
+        return m * v;
+    }
+
+    public double combineAll(double x, double y) {
+        return x + y;
+    }
+
+    public double zero() {
+        return 0;
+    }
+
+    public abstract double assign(double old_val, double new_val);
+}
@@ -29,10 +29,10 @@ import java.util.Iterator;
 import java.util.Map;
 
 class VectorElem<T> {
-    public short row;
+    public int row;
     public T val;
 
-    public VectorElem(short in_row, T in_val) {
+    public VectorElem(int in_row, T in_val) {
         row = in_row;
         val = in_val;
     }
@@ -40,11 +40,11 @@ class VectorElem<T> {
 };
 
 class BlockElem<T> {
-    public short row;
-    public short col;
+    public int row;
+    public int col;
     public T val;
 
-    public BlockElem(short in_row, short in_col, T in_val) {
+    public BlockElem(int in_row, int in_col, T in_val) {
         row = in_row;
         col = in_col;
         val = in_val;
@@ -61,7 +61,7 @@ public class GIMV {
         int i;
 
         for (i = 0; i < tokens.length; i += 2) {
-            short row = Short.parseShort(tokens[i]);
+            int row = Integer.parseInt(tokens[i]);
             if (type.getSimpleName().equals("Integer")) {
                 int val = Integer.parseInt(tokens[i + 1]);
                 arr.add(new VectorElem(row, val));
@@ -80,14 +80,14 @@ public class GIMV {
 
     public static ArrayList<VectorElem<Long>> minBlockVector(ArrayList<BlockElem<Long>> block, ArrayList<VectorElem<Long>> vector, int block_width, int isFastMethod) {
         long[] out_vals = new long[block_width];    // buffer to save output
-        short i;
+        int i;
 
         for (i = 0; i < block_width; i++)
             out_vals[i] = -1;
 
         Iterator<VectorElem<Long>> vector_iter;
         Iterator<BlockElem<Long>> block_iter;
-        Map<Short, Long> vector_map = new HashMap<Short, Long>();
+        Map<Integer, Long> vector_map = new HashMap<Integer, Long>();
 
         // initialize out_vals
         if (isFastMethod == 1) {
@@ -135,6 +135,356 @@ public class GIMV {
     }
 
 
+    // semiring GIMV. out[row] = combineAll(out[row], combine2(block[row][col], vector[col])) for every (row, col)
+    // in block. out is not cleared. LongSemiring.MIN goes to the min kernels below, which multiply
+    // encoded blocks as is. other semirings decode the block.
+    public static void multiply(BlockWritable block, DenseLongVector vector, DenseLongVector out, LongSemiring s) {
+        if (s == LongSemiring.MIN) {
+            minBlockVector(block, vector, out);
+            return;
+        }
+
+        block.decode();
+        multiply(block.rows, block.cols, block.vals, 0, block.nnz, vector, out, s);
+    }
+
+    // same as above, with the bitset kernel of MIN for dense blocks. dense is the scratch of the kernel.
+    public static void multiply(BlockWritable block, DenseLongVector vector, DenseLongVector out, LongSemiring s, BitsetBlock dense) {
+        if (s == LongSemiring.MIN)
+            minBlockVector(block, vector, out, dense);
+        else
+            multiply(block, vector, out, s);
+    }
+
+    // same as above, for the elements [from, to) of a block stored in larger arrays. vals is null for 0-1 blocks.
+    public static void multiply(int[] rows, int[] cols, double[] vals, int from, int to, DenseLongVector vector, DenseLongVector out, LongSemiring s) {
+        int last_col = -1;
+        boolean has_val = false;
+        long vector_val = 0;
+
+        for (int k = from; k < to; k++) {
+            final int col = cols[k];
+            if (col != last_col) {
+                last_col = col;
+                has_val = vector.isSet(col);
+                if (has_val)
+                    vector_val = vector.vals[col];
+            }
+
+            if (has_val)
+                out.combine(rows[k], s.combine2(vals == null ? 1 : vals[k], vector_val), s);
+        }
+    }
+
+    // double version of the semiring GIMV. out is not cleared.
+    public static void multiply(BlockWritable block, DenseDoubleVector vector, DenseDoubleVector out, DoubleSemiring s) {
+        block.decode();
+        multiply(block.rows, block.cols, block.vals, 0, block.nnz, vector, out, s);
+    }
+
+    public static void multiply(int[] rows, int[] cols, double[] vals, int from, int to, DenseDoubleVector vector, DenseDoubleVector out, DoubleSemiring s) {
+        int last_col = -1;
+        boolean has_val = false;
+        double vector_val = 0;
+
+        for (int k = from; k < to; k++) {
+            final int col = cols[k];
+            if (col != last_col) {
+                last_col = col;
+                has_val = vector.isSet(col);
+                if (has_val)
+                    vector_val = vector.vals[col];
+            }
+
+            if (has_val)
+                out.combine(rows[k], s.combine2(vals == null ? 1 : vals[k], vector_val), s);
+        }
+    }
+
+    // bitwise-OR kernel of HADI. out[row] |= vector[col] for every (row, col) in block,
+    // on all the bitstrings of the elements. out is not cleared.
+    public static void orBlockVector(BlockWritable block, DenseBitstringVector vector, DenseBitstringVector out) {
+        block.decode();
+        orBlockVector(block.rows, block.cols, 0, block.nnz, vector, out);
+    }
+
+    public static void orBlockVector(int[] rows, int[] cols, int from, int to, DenseBitstringVector vector, DenseBitstringVector out) {
+        final int nbits = vector.nbits;
+        int last_col = -1;
+        boolean has_val = false;
+
+        for (int k = from; k < to; k++) {
+            final int col = cols[k];
+            if (col != last_col) {
+                last_col = col;
+                has_val = vector.isSet(col);
+            }
+
+            if (has_val)
+                out.or(rows[k], vector.bits, col * nbits);
+        }
+    }
+
+    // out[i] = assign(self[i], combined[i]) for i in [0, width), with zero() for the rows without
+    // partial results. returns the number of elements which moved by more than threshold.
+    public static int assign(DenseDoubleVector self, DenseDoubleVector combined, int width, DoubleSemiring s, DenseDoubleVector out, double threshold) {
+        int changed = 0;
+        out.clear();
+        for (int i = 0; i < width; i++) {
+            double old_val = self.isSet(i) ? self.vals[i] : 0;
+            double new_val = s.assign(old_val, combined.isSet(i) ? combined.vals[i] : s.zero());
+            out.set(i, new_val);
+            if (!self.isSet(i) || Math.abs(new_val - old_val) > threshold)
+                changed++;
+        }
+
+        return changed;
+    }
+
+    // primitive version of minBlockVector. out[row] = min(out[row], vector[col]) for every (row, col) in block.
+    // out is not cleared, so initialize it with the vector itself for the 'fast' method.
+    // an encoded block is multiplied in its encoded form.
+    public static void minBlockVector(BlockWritable block, DenseLongVector vector, DenseLongVector out) {
+        if (!block.isEncoded())
+            minBlockVector(block.rows, block.cols, 0, block.nnz, vector, out);
+        else if (block.encoding == BlockWritable.SPARSE)
+            minSparseBlockVector(block.data, block.data_length, vector, out);
+        else
+            minBitmapBlockVector(block.data, block.data_length, vector, out);
+    }
+
+    // same as above, with the bitset kernel for dense blocks in the BITMAP encoding, which load
+    // word by word. dense is the scratch of the kernel.
+    public static void minBlockVector(BlockWritable block, DenseLongVector vector, DenseLongVector out, BitsetBlock dense) {
+        if (block.isEncoded() && BitsetBlock.isDense(block)) {
+            dense.load(block);
+            minBitsetBlockVector(dense, vector, out);
+        } else {
+            minBlockVector(block, vector, out);
+        }
+    }
+
+    // bitset kernel. the columns are visited by increasing vector value, and a row takes
+    // the value of the first column reaching it, so every row is set once, word by word.
+    public static void minBitsetBlockVector(BitsetBlock block, DenseLongVector vector, DenseLongVector out) {
+        final int[] order = block.order(vector);
+        final int order_length = block.orderLength();
+        final int words = block.words;
+        final long[] bits = block.bits;
+        final long[] done = block.done;
+        int remaining = block.num_active_rows;
+
+        for (int w = 0; w < words; w++)
+            done[w] = 0;
+
+        for (int k = 0; k < order_length && remaining > 0; k++) {
+            final int col = order[k] - block.min_col;
+            if (col < 0 || col >= block.num_cols)
+                continue;
+
+            final long vector_val = vector.vals[order[k]];
+            final int base = col * words;
+            for (int w = 0; w < words; w++) {
+                long reached = bits[base + w] & ~done[w];
+                if (reached == 0)
+                    continue;
+
+                done[w] |= reached;
+                while (reached != 0) {
+                    out.min(block.min_row + (w << 6) + Long.numberOfTrailingZeros(reached), vector_val);
+                    reached &= reached - 1;
+                    remaining--;
+                }
+            }
+        }
+    }
+
+    // SPARSE encoding: (col delta, run length, first row, row deltas...)s.
+    // the rows of a column without vector value are skipped by their last bytes.
+    public static void minSparseBlockVector(byte[] data, int length, DenseLongVector vector, DenseLongVector out) {
+        final int[] pos = new int[1];
+        int col = 0;
+
+        while (pos[0] < length) {
+            col += BlockWritable.readVarInt(data, pos);
+            final int run_length = BlockWritable.readVarInt(data, pos);
+
+            if (!vector.isSet(col)) {
+                int p = pos[0];
+                for (int k = 0; k < run_length; k++) {
+                    while (data[p++] < 0)
+                        ;
+                }
+                pos[0] = p;
+                continue;
+            }
+
+            final long vector_val = vector.vals[col];
+            int row = 0;
+            for (int k = 0; k < run_length; k++) {
+                row += BlockWritable.readVarInt(data, pos);
+                out.min(row, vector_val);
+            }
+        }
+    }
+
+    // BITMAP encoding: (first col, # of cols, first row, # of rows) and the bits, column by column.
+    // the bits of a column are read 64 at a time.
+    public static void minBitmapBlockVector(byte[] data, int length, DenseLongVector vector, DenseLongVector out) {
+        final int[] pos = new int[1];
+        final int min_col = BlockWritable.readVarInt(data, pos);
+        final int num_cols = BlockWritable.readVarInt(data, pos);
+        final int min_row = BlockWritable.readVarInt(data, pos);
+        final int num_rows = BlockWritable.readVarInt(data, pos);
+        final int offset = pos[0];
+
+        for (int c = 0; c < num_cols; c++) {
+            if (!vector.isSet(min_col + c))
+                continue;
+
+            final long vector_val = vector.vals[min_col + c];
+            final long base = (long) c * num_rows;
+            for (int r = 0; r < num_rows; r += 64) {
+                long bits = BlockWritable.readBits(data, offset, length, base + r);
+                if (num_rows - r < 64)
+                    bits &= (1L << (num_rows - r)) - 1;
+
+                while (bits != 0) {
+                    out.min(min_row + r + Long.numberOfTrailingZeros(bits), vector_val);
+                    bits &= bits - 1;
+                }
+            }
+        }
+    }
+
+    // same as above, for the elements [from, to) of a block stored in larger arrays.
+    // the block is sorted by col, so the presence of vector[col] is checked once per column run.
+    public static void minBlockVector(int[] rows, int[] cols, int from, int to, DenseLongVector vector, DenseLongVector out) {
+        int last_col = -1;
+        boolean has_val = false;
+        long vector_val = 0;
+
+        for (int k = from; k < to; k++) {
+            final int col = cols[k];
+            if (col != last_col) {
+                last_col = col;
+                has_val = vector.isSet(col);
+                if (has_val)
+                    vector_val = vector.vals[col];
+            }
+
+            if (has_val)
+                out.min(rows[k], vector_val);
+        }
+    }
+
+    // multiply a diagonal block recursively until the vector does not change, at most max_iters times.
+    // the result is in one of tmp1 and tmp2, which is returned.
+    // a SPARSE block is decoded once, a BITMAP block is multiplied as is.
+    public static DenseLongVector minBlockVectorRecursive(BlockWritable block, DenseLongVector vector, DenseLongVector tmp1, DenseLongVector tmp2, int max_iters) {
+        if (block.isEncoded() && block.encoding == BlockWritable.SPARSE)
+            block.decode();
+        if (!block.isEncoded())
+            return minBlockVectorRecursive(block.rows, block.cols, 0, block.nnz, vector, tmp1, tmp2, max_iters);
+
+        DenseLongVector cur = tmp1;
+        DenseLongVector next = tmp2;
+
+        cur.copyFrom(vector);
+        for (int i = 0; i < max_iters; i++) {
+            next.copyFrom(cur);
+            minBitmapBlockVector(block.data, block.data_length, cur, next);
+            if (next.sameAs(cur))
+                break;
+
+            DenseLongVector t = cur;
+            cur = next;
+            next = t;
+        }
+
+        return cur;
+    }
+
+    // same as above, with the bitset kernel for dense blocks, in any form: the block is loaded
+    // once for all the iterations. dense is the scratch of the kernel.
+    public static DenseLongVector minBlockVectorRecursive(BlockWritable block, DenseLongVector vector, DenseLongVector tmp1, DenseLongVector tmp2, int max_iters, BitsetBlock dense) {
+        if (!BitsetBlock.isDense(block))
+            return minBlockVectorRecursive(block, vector, tmp1, tmp2, max_iters);
+
+        dense.load(block);
+        DenseLongVector cur = tmp1;
+        DenseLongVector next = tmp2;
+
+        cur.copyFrom(vector);
+        for (int i = 0; i < max_iters; i++) {
+            next.copyFrom(cur);
+            dense.vectorChanged();
+            minBitsetBlockVector(dense, cur, next);
+            if (next.sameAs(cur))
+                break;
+
+            DenseLongVector t = cur;
+            cur = next;
+            next = t;
+        }
+        dense.vectorChanged();
+
+        return cur;
+    }
+
+    public static DenseLongVector minBlockVectorRecursive(int[] rows, int[] cols, int from, int to, DenseLongVector vector, DenseLongVector tmp1, DenseLongVector tmp2, int max_iters) {
+        DenseLongVector cur = tmp1;
+        DenseLongVector next = tmp2;
+
+        cur.copyFrom(vector);
+        for (int i = 0; i < max_iters; i++) {
+            next.copyFrom(cur);
+            minBlockVector(rows, cols, from, to, cur, next);
+            if (next.sameAs(cur))
+                break;
+
+            DenseLongVector t = cur;
+            cur = next;
+            next = t;
+        }
+
+        return cur;
+    }
+
+    // resolve a diagonal block in one pass, for the 'fast' method: every index takes the minimum
+    // vector value of its connected component in the block. For a symmetric block (makesym) this
+    // is the fixpoint of minBlockVectorRecursive, in about O(nnz) instead of O(nnz) per iteration.
+    // Not for a block built with nosym: the callers fall back to minBlockVectorRecursive then.
+    // out is overwritten with the result. uf and roots are scratch, of the width of the vector.
+    public static void minBlockVectorUnionFind(BlockWritable block, DenseLongVector vector, DenseLongVector out, UnionFind uf, DenseLongVector roots) {
+        block.decode();
+        minBlockVectorUnionFind(block.rows, block.cols, 0, block.nnz, vector, out, uf, roots);
+    }
+
+    public static void minBlockVectorUnionFind(int[] rows, int[] cols, int from, int to, DenseLongVector vector, DenseLongVector out, UnionFind uf, DenseLongVector roots) {
+        uf.reset();
+        for (int k = from; k < to; k++)
+            uf.union(rows[k], cols[k]);
+
+        // minimum of every component, at its root
+        roots.clear();
+        for (int w = 0; w < vector.present.length; w++) {
+            long bits = vector.present[w];
+            while (bits != 0) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+                roots.min(uf.find(i), vector.vals[i]);
+                bits &= bits - 1;
+            }
+        }
+
+        out.copyFrom(vector);
+        for (int i = 0; i < vector.width; i++) {
+            int root = uf.find(i);
+            if (roots.isSet(root))
+                out.min(i, roots.vals[root]);
+        }
+    }
+
     // convert strVal to array of BlockElem<Integer>.
     // strVal is (COL-ID     ROW-ID   VALUE)s. ex) 0 0 1 1 0 1 1 1 1
     // note the strVal is tranposed. So we should tranpose it to (ROW-ID   COL-ID ...) format.
@@ -145,8 +495,8 @@ public class GIMV {
 
         if (type.getSimpleName().equals("Double")) {
             for (i = 0; i < tokens.length; i += 3) {
-                short row = Short.parseShort(tokens[i + 1]);
-                short col = Short.parseShort(tokens[i]);
+                int row = Integer.parseInt(tokens[i + 1]);
+                int col = Integer.parseInt(tokens[i]);
                 double val = Double.parseDouble(tokens[i + 2]);
 
                 BlockElem<T> be = new BlockElem(row, col, val);
@@ -154,16 +504,16 @@ public class GIMV {
             }
         } else if (type.getSimpleName().equals("Integer")) {
             for (i = 0; i < tokens.length; i += 2) {
-                short row = Short.parseShort(tokens[i + 1]);
-                short col = Short.parseShort(tokens[i]);
+                int row = Integer.parseInt(tokens[i + 1]);
+                int col = Integer.parseInt(tokens[i]);
 
                 BlockElem<T> be = new BlockElem(row, col, 1);
                 arr.add(be);
             }
         } else if (type.getSimpleName().equals("Long")) {
             for (i = 0; i < tokens.length; i += 2) {
-                short row = Short.parseShort(tokens[i + 1]);
-                short col = Short.parseShort(tokens[i]);
+                int row = Integer.parseInt(tokens[i + 1]);
+                int col = Integer.parseInt(tokens[i]);
 
                 BlockElem<T> be = new BlockElem(row, col, 1);
                 arr.add(be);
@@ -221,12 +571,23 @@ public class GIMV {
 
         for (i = 0; i < block_width; i++) {
             if (int_vals[i] != -1) {
-                result_vector.add(new VectorElem<Long>((short) i, int_vals[i]));
+                result_vector.add(new VectorElem<Long>(i, int_vals[i]));
             }
         }
 
         return result_vector;
     }
 
-};
+    // primitive version of compareVectors.
+    // return value : 0 (same)
+    //                1 (different)
+    public static int compareVectors(DenseLongVector v1, DenseLongVector v2) {
+        return v1.sameAs(v2) ? 0 : 1;
+    }
 
+    // primitive version of makeLongVectors. the defined elements of vals are written to out.
+    public static void makeLongVectors(DenseLongVector vals, VectorWritable out) {
+        vals.store(out);
+    }
+
+};
@@ -0,0 +1,535 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: HadiBlock.java
+ - HADI: estimate the radius of every node and the effective diameter of a graph
+   using block multiplication of Flajolet-Martin bitstrings. This is a block-based version of HADI.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+import java.io.*;
+import java.util.*;
+
+import org.apache.hadoop.conf.*;
+import org.apache.hadoop.fs.*;
+import org.apache.hadoop.io.*;
+import org.apache.hadoop.io.compress.SnappyCodec;
+import org.apache.hadoop.mapred.*;
+import org.apache.hadoop.mapred.join.CompositeInputFormat;
+import org.apache.hadoop.mapred.join.TupleWritable;
+import org.apache.hadoop.mapred.lib.IdentityReducer;
+import org.apache.hadoop.util.*;
+
+public class HadiBlock extends Configured implements Tool {
+    // number of vector blocks whose bitstrings changed/unchanged in a hop, counted by RedStage2.
+    public static enum ConvergenceCounter {CHANGED, UNCHANGED}
+    // sum of the neighborhood estimates of the nodes, N(h), counted by MapStage0 and RedStage2.
+    public static enum NeighborhoodCounter {NEIGHBORHOOD}
+
+    public static int MAX_ITERATIONS = 1024;
+
+
+    //////////////////////////////////////////////////////////////////////
+    // STAGE 0: generate the initial bitstrings, partitioned by block id as the output
+    //          of STAGE 2. The edge matrix is partitioned by ConCmptBlock.MapStage0.
+    //  - Input: block ids from BlockRangeInputFormat
+    //  - Output: BLOCKID   TAB   BitstringVectorWritable
+    //////////////////////////////////////////////////////////////////////
+    public static class MapStage0 extends MapReduceBase implements Mapper<LongWritable, NullWritable, LongWritable, BitstringVectorWritable> {
+        BlockLayout layout;
+
+        private final BitstringVectorWritable out_vector = new BitstringVectorWritable();
+        private DenseBitstringVector vals;
+
+        public void configure(JobConf job) {
+            int block_width = Integer.parseInt(job.get("block_width"));
+            layout = BlockLayout.configure(job, Long.parseLong(job.get("number_nodes")), block_width);
+            vals = new DenseBitstringVector(block_width, Integer.parseInt(job.get("nbits")));
+
+            System.out.println("MapStage0: block_width = " + block_width + ", nbits = " + vals.nbits);
+        }
+
+        public void map(final LongWritable key, final NullWritable value, final OutputCollector<LongWritable, BitstringVectorWritable> output, final Reporter reporter) throws IOException {
+            long start_node = layout.start(key.get());
+            int width = layout.width(key.get());
+            double neighborhood = 0;
+
+            vals.clear();
+            for (int i = 0; i < width; i++) {
+                vals.initial(i, start_node + i);
+                neighborhood += vals.estimate(i);
+            }
+            reporter.incrCounter(NeighborhoodCounter.NEIGHBORHOOD, Math.round(neighborhood));
+
+            vals.store(out_vector);
+            out_vector.kind = VectorWritable.SELF;
+            out_vector.status = VectorWritable.INITIAL;
+            output.collect(key, out_vector);
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    // STAGE 1: generate partial bitstrings.
+    //          Map-side merge join of edge and vector by Vector.BLOCKROWID == Edge.BLOCKCOLID,
+    //          as in ConCmptBlock. STAGE 1 and STAGE 2 run as one job: MapStage1 -> RedStage2.
+    //  - Input: (edge blocks, vector block) tuples
+    //  - Output: self vector and partial bitstrings
+    //////////////////////////////////////////////////////////////////////
+    public static class MapStage1 extends MapReduceBase implements Mapper<LongWritable, TupleWritable, LongWritable, BitstringVectorWritable> {
+        protected int block_width;
+        protected int nbits;
+
+        // scratch buffers, reused for every record.
+        private final BitstringVectorWritable self_vector = new BitstringVectorWritable();
+        private final BitstringVectorWritable out_vector = new BitstringVectorWritable();
+        private final LongWritable out_key = new LongWritable();
+        private DenseBitstringVector vector;
+        private DenseBitstringVector mult_result;
+        private boolean has_vector_key = false;
+        private long vector_key;    // block id whose vector is loaded in 'vector'
+
+        public void configure(JobConf job) {
+            block_width = Integer.parseInt(job.get("block_width"));
+            nbits = Integer.parseInt(job.get("nbits"));
+            vector = new DenseBitstringVector(block_width, nbits);
+            mult_result = new DenseBitstringVector(block_width, nbits);
+
+            System.out.println("MapStage1: block_width=" + block_width + ", nbits=" + nbits);
+        }
+
+        // tuple : 0 = edge block, 1 = vector block.
+        public void map(final LongWritable key, final TupleWritable value, final OutputCollector<LongWritable, BitstringVectorWritable> output, final Reporter reporter) throws IOException {
+            if (!has_vector_key || vector_key != key.get()) {
+                if (!value.has(1))    // missing vector.
+                    return;
+
+                // first tuple of this block. output 'self' block to check convergence
+                BitstringVectorWritable cur_vector = (BitstringVectorWritable) value.get(1);
+                self_vector.set(cur_vector);
+                self_vector.kind = VectorWritable.SELF;
+                output.collect(key, self_vector);
+
+                vector.load(cur_vector);
+                vector_key = key.get();
+                has_vector_key = true;
+            }
+
+            if (!value.has(0))    // missing block.
+                return;
+
+            BlockWritable cur_block = (BlockWritable) value.get(0);
+            mult_result.clear();
+            GIMV.orBlockVector(cur_block, vector, mult_result);
+
+            if (!mult_result.isEmpty()) {
+                mult_result.store(out_vector);
+                out_vector.kind = VectorWritable.PARTIAL;
+                out_vector.status = VectorWritable.INCOMPLETE;
+                out_key.set(cur_block.block_row);
+                output.collect(out_key, out_vector);
+            }
+        }
+    }
+
+    // combine partial results of a map task. the self vector is passed through.
+    public static class CombStage1 extends MapReduceBase implements Reducer<LongWritable, BitstringVectorWritable, LongWritable, BitstringVectorWritable> {
+        private final BitstringVectorWritable out_vector = new BitstringVectorWritable();
+        private DenseBitstringVector out_vals;
+
+        public void configure(JobConf job) {
+            out_vals = new DenseBitstringVector(Integer.parseInt(job.get("block_width")), Integer.parseInt(job.get("nbits")));
+        }
+
+        public void reduce(final LongWritable key, final Iterator<BitstringVectorWritable> values, final OutputCollector<LongWritable, BitstringVectorWritable> output, final Reporter reporter) throws IOException {
+            boolean has_partial = false;
+            out_vals.clear();
+
+            while (values.hasNext()) {
+                BitstringVectorWritable cur_vector = values.next();
+
+                if (cur_vector.kind == VectorWritable.SELF) {
+                    output.collect(key, cur_vector);
+                } else {
+                    out_vals.orAll(cur_vector);
+                    has_partial = true;
+                }
+            }
+
+            if (has_partial) {
+                out_vals.store(out_vector);
+                out_vector.kind = VectorWritable.PARTIAL;
+                out_vector.status = VectorWritable.INCOMPLETE;
+                output.collect(key, out_vector);
+            }
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // STAGE 2: merge partial bitstrings with the bitstrings of the last hop.
+    //          This is the reduce phase of the STAGE 1 job.
+    //          A node whose bitstrings changed gets the current hop as its radius.
+    //          The number of changed/unchanged blocks is published through ConvergenceCounter,
+    //          and N(h) through NeighborhoodCounter.
+    //  - Input: self vector and partial bitstrings
+    //  - Output: bitstrings of the current hop
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    public static class RedStage2 extends MapReduceBase implements Reducer<LongWritable, BitstringVectorWritable, LongWritable, BitstringVectorWritable> {
+        protected int block_width;
+        protected int cur_hop;
+
+        // scratch buffers, reused for every key.
+        private final BitstringVectorWritable out_vector = new BitstringVectorWritable();
+        private DenseBitstringVector self_vals;
+        private DenseBitstringVector out_vals;
+
+        public void configure(JobConf job) {
+            block_width = Integer.parseInt(job.get("block_width"));
+            cur_hop = Integer.parseInt(job.get("cur_hop"));
+            int nbits = Integer.parseInt(job.get("nbits"));
+            self_vals = new DenseBitstringVector(block_width, nbits);
+            out_vals = new DenseBitstringVector(block_width, nbits);
+            System.out.println("RedStage2: block_width=" + block_width + ", nbits=" + nbits + ", cur_hop=" + cur_hop);
+        }
+
+        public void reduce(final LongWritable key, final Iterator<BitstringVectorWritable> values, final OutputCollector<LongWritable, BitstringVectorWritable> output, final Reporter reporter) throws IOException {
+            boolean has_self = false;
+            out_vals.clear();
+
+            int n = 0;
+            while (values.hasNext()) {
+                BitstringVectorWritable cur_vector = values.next();
+
+                if (cur_vector.kind == VectorWritable.SELF) {
+                    self_vals.load(cur_vector);
+                    has_self = true;
+                }
+
+                out_vals.orAll(cur_vector);
+                n++;
+            }
+
+            if (!has_self) {
+                reporter.incrCounter("ERROR", "self_vector == null", 1);
+                System.err.println("ERROR: self_vector == null, key=" + key + ", # values" + n);
+                return;
+            }
+
+            boolean is_different = false;
+            double neighborhood = 0;
+            for (int w = 0; w < out_vals.present.length; w++) {
+                long set = out_vals.present[w];
+                while (set != 0) {
+                    int i = (w << 6) + Long.numberOfTrailingZeros(set);
+                    if (out_vals.sameAs(i, self_vals)) {
+                        out_vals.radius[i] = self_vals.radius[i];
+                    } else {
+                        out_vals.radius[i] = cur_hop;
+                        is_different = true;
+                    }
+                    neighborhood += out_vals.estimate(i);
+                    set &= set - 1;
+                }
+            }
+            reporter.incrCounter(NeighborhoodCounter.NEIGHBORHOOD, Math.round(neighborhood));
+
+            out_vals.store(out_vector);
+            out_vector.kind = VectorWritable.SELF;
+            if (is_different) {
+                out_vector.status = VectorWritable.INCOMPLETE;
+                reporter.incrCounter(ConvergenceCounter.CHANGED, 1);
+            } else {
+                out_vector.status = VectorWritable.FINISHED;
+                reporter.incrCounter(ConvergenceCounter.UNCHANGED, 1);
+            }
+
+            output.collect(key, out_vector);
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    // STAGE 4: Unfold the block format to plain format, after the bitstrings converged.
+    //         This is a map-only stage.
+    //  - Input: the converged bitstrings
+    //  - Output: (node_id, radius) as text
+    //////////////////////////////////////////////////////////////////////
+    public static class MapStage4 extends MapReduceBase implements Mapper<LongWritable, BitstringVectorWritable, LongWritable, IntWritable> {
+        private final LongWritable out_key = new LongWritable();
+        private final IntWritable out_value = new IntWritable();
+        BlockLayout layout;
+
+        public void configure(JobConf job) {
+            layout = BlockLayout.configure(job, Long.parseLong(job.get("number_nodes")), Integer.parseInt(job.get("block_width")));
+        }
+
+        public void map(final LongWritable key, final BitstringVectorWritable value, final OutputCollector<LongWritable, IntWritable> output, final Reporter reporter) throws IOException {
+            long start_node = layout.start(key.get());
+
+            for (int i = 0; i < value.size; i++) {
+                out_key.set(start_node + value.rows[i]);
+                out_value.set(value.radius[i]);
+                output.collect(out_key, out_value);
+            }
+        }
+    }
+
+
+    //////////////////////////////////////////////////////////////////////
+    // command line interface
+    //////////////////////////////////////////////////////////////////////
+    protected Path edge_path = null;
+    protected Path curbm_path = null;
+    protected Path tempbm_path = null;
+    protected Path nextbm_path = null;
+    protected Path output_path = null;
+    protected long number_nodes = 0;
+    protected int nreducers = 1;
+    protected int block_width = 64;
+    protected int nbits = 32;
+    protected int max_convergence = 0;
+    protected int max_iters = 0;
+    protected String layout_path = null; // boundaries of variable-size blocks
+
+    // Main entry point.
+    public static void main(final String[] args) throws Exception {
+        final int result = ToolRunner.run(new Configuration(), new HadiBlock(), args);
+
+        System.exit(result);
+    }
+
+    // Print the command-line usage text.
+    protected static int printUsage() {
+        System.out.println("HadiBlock <edge_path> <curbm_path> <tempbm_path> <nextbm_path> <output_path> <# of nodes> <# of reducers> <block_width> <# of bitstrings> <max_convergence> <max_iters> [layout <block_layout_path>]");
+        System.out.println("  edge_path: the edge blocks of MatvecPrep, with makesym for the undirected radius.");
+        System.out.println("  layout: variable-size blocks, as given to MatvecPrep. block_width is then the widest block.");
+
+        ToolRunner.printGenericCommandUsage(System.out);
+
+        return -1;
+    }
+
+    // submit the map/reduce job.
+    public int run(final String[] args) throws Exception {
+        if (args.length < 11) {
+            return printUsage();
+        }
+        int i;
+
+        edge_path = new Path(args[0]);
+        curbm_path = new Path(args[1]);
+        tempbm_path = new Path(args[2]);
+        nextbm_path = new Path(args[3]);
+        output_path = new Path(args[4]);
+        number_nodes = Long.parseLong(args[5]);
+        nreducers = Integer.parseInt(args[6]);
+        block_width = Integer.parseInt(args[7]);
+        nbits = Integer.parseInt(args[8]);
+
+        max_convergence = Integer.parseInt(args[9]);
+        if (max_convergence < 0)
+                max_convergence = 0;
+        max_iters = Integer.parseInt(args[10]);
+        if (max_iters < 0 || max_iters > MAX_ITERATIONS)
+                max_iters = MAX_ITERATIONS;
+
+        for (i = 11; i < args.length; i++) {
+            if (args[i].compareTo("layout") == 0 && i + 1 < args.length) {
+                layout_path = args[++i];
+            } else {
+                return printUsage();
+            }
+        }
+
+        System.out.println("\n-----===[PEGASUS: A Peta-Scale Graph Mining System]===-----\n");
+        System.out.println("[PEGASUS] Computing radii and diameter using block method. Reducers = " + nreducers + ", block_width = " + block_width + ", bitstrings = " + nbits);
+
+        final FileSystem fs = FileSystem.get(getConf());
+
+        block_width = BlockLayout.vectorWidth(fs, layout_path, block_width);
+
+        // partition the edge matrix by block column, and generate the initial bitstrings in the same partitions.
+        System.out.println("Partitioning the edge matrix and generating the initial bitstrings...");
+        fs.delete(tempbm_path, true);
+        fs.delete(curbm_path, true);
+        JobClient.runJob(configStage0Edge());
+        RunningJob job = JobClient.runJob(configStage0Vector());
+
+        // neighborhood function: N(h) for every hop h.
+        ArrayList<Long> neighborhood = new ArrayList<Long>();
+        neighborhood.add(job.getCounters().getCounter(NeighborhoodCounter.NEIGHBORHOOD));
+
+        // Iteratively calculate neighborhood function.
+        int max_hop = 0;
+        for (i = 1; i <= max_iters; i++) {
+            fs.delete(nextbm_path, true);
+            job = JobClient.runJob(configStage1(i));
+
+            Counters counters = job.getCounters();
+            long changed = counters.getCounter(ConvergenceCounter.CHANGED);
+            long unchanged = counters.getCounter(ConvergenceCounter.UNCHANGED);
+            neighborhood.add(counters.getCounter(NeighborhoodCounter.NEIGHBORHOOD));
+            System.out.println("Hop " + i + " : changed = " + changed + ", unchanged = " + unchanged + ", N(" + i + ") = " + neighborhood.get(i));
+
+            fs.delete(curbm_path, true);
+            fs.rename(nextbm_path, curbm_path);
+
+            if (changed > 0)
+                max_hop = i;
+            if (changed <= max_convergence) {
+                System.out.printf("Converging with %d changed blocks (%d max for convergence) after %d hops (%d max).\n", changed, max_convergence, i, max_iters);
+                break;
+            }
+        }
+
+        System.out.println("Unfolding the block structure for easy lookup...");
+        fs.delete(output_path, true);
+        JobClient.runJob(configStage4());
+        fs.delete(tempbm_path, true);
+
+        // the effective diameter is the hop at which N(h) reaches 90% of its maximum, interpolated.
+        double effective_diameter = effectiveDiameter(neighborhood.subList(0, max_hop + 1));
+
+        FSDataOutputStream out = fs.create(new Path(output_path, "neighborhood"));
+        for (int h = 0; h <= max_hop; h++)
+            out.writeBytes(h + "\t" + neighborhood.get(h) + "\n");
+        out.close();
+
+        // finishing.
+        System.out.println("\n[PEGASUS] Radii and diameter computed.");
+        System.out.println("[PEGASUS] Max diameter = " + max_hop);
+        System.out.printf("[PEGASUS] Effective diameter = %.2f\n", effective_diameter);
+        System.out.println("[PEGASUS] HCC needs about " + (max_hop + 1) + " iterations on this graph in normal mode.");
+        System.out.println("[PEGASUS] Radius information is saved in the HDFS " + new Path(output_path, "radius") + " as\n\"node_id	radius\" format");
+        System.out.println("[PEGASUS] The neighborhood function is saved in the HDFS " + new Path(output_path, "neighborhood") + " as\n\"hop	N(hop)\" format.\n");
+
+        return 0;
+    }
+
+    // the smallest hop h, interpolated, such that N(h) >= 0.9 * N(max hop).
+    protected static double effectiveDiameter(List<Long> neighborhood) {
+        int max_hop = neighborhood.size() - 1;
+        double target = 0.9 * neighborhood.get(max_hop);
+
+        for (int h = 0; h <= max_hop; h++) {
+            if (neighborhood.get(h) >= target) {
+                if (h == 0)
+                    return 0;
+
+                long prev = neighborhood.get(h - 1);
+                return h - 1 + (target - prev) / (neighborhood.get(h) - prev);
+            }
+        }
+
+        return max_hop;
+    }
+
+    // Configure pass0 of the edge matrix
+    protected JobConf configStage0Edge() throws Exception {
+        final JobConf conf = new JobConf(getConf(), HadiBlock.class);
+        conf.setJobName("data-piqid.pegasus.HadiBlock_pass0_edge");
+
+        conf.setMapperClass(ConCmptBlock.MapStage0.class);
+        conf.setReducerClass(ConCmptBlock.RedStage0.class);
+
+        conf.setInputFormat(SequenceFileInputFormat.class);
+        FileInputFormat.setInputPaths(conf, edge_path);
+        ConCmptBlock.setBlockOutput(conf, tempbm_path);
+
+        conf.setNumReduceTasks(nreducers);    // must match the number of partitions of STAGE 2
+
+        conf.setMapOutputKeyClass(LongWritable.class);
+        conf.setMapOutputValueClass(MatVecWritable.class);
+        conf.setOutputKeyClass(LongWritable.class);
+        conf.setOutputValueClass(BlockWritable.class);
+
+        return conf;
+    }
+
+    // Configure pass0 of the initial bitstrings
+    protected JobConf configStage0Vector() throws Exception {
+        final JobConf conf = new JobConf(getConf(), HadiBlock.class);
+        conf.set("number_nodes", "" + number_nodes);
+        conf.set("block_width", "" + block_width);
+        conf.set("nbits", "" + nbits);
+        if (layout_path != null)
+            conf.set("block_layout", layout_path);
+        conf.setJobName("data-piqid.pegasus.HadiBlock_pass0_vector");
+
+        conf.setMapperClass(MapStage0.class);
+        conf.setReducerClass(IdentityReducer.class);
+
+        conf.setInputFormat(BlockRangeInputFormat.class);
+        conf.setNumMapTasks(nreducers);
+        ConCmptBlock.setBlockOutput(conf, curbm_path);
+
+        conf.setNumReduceTasks(nreducers);    // must match the number of partitions of STAGE 2
+
+        conf.setOutputKeyClass(LongWritable.class);
+        conf.setOutputValueClass(BitstringVectorWritable.class);
+
+        return conf;
+    }
+
+    // Configure pass1 and pass2
+    protected JobConf configStage1(int cur_hop) throws Exception {
+        final JobConf conf = new JobConf(getConf(), HadiBlock.class);
+        conf.set("block_width", "" + block_width);
+        conf.set("nbits", "" + nbits);
+        conf.set("cur_hop", "" + cur_hop);
+        conf.setJobName("data-piqid.pegasus.HadiBlock_pass1");
+
+        conf.setMapperClass(MapStage1.class);
+        conf.setCombinerClass(CombStage1.class);
+        conf.setReducerClass(RedStage2.class);
+
+        conf.setInputFormat(CompositeInputFormat.class);
+        conf.set("mapred.join.expr", CompositeInputFormat.compose("outer", JoinPartitionInputFormat.class, tempbm_path, curbm_path));
+        ConCmptBlock.setBlockOutput(conf, nextbm_path);
+
+        conf.setNumReduceTasks(nreducers);
+
+        conf.setOutputKeyClass(LongWritable.class);
+        conf.setOutputValueClass(BitstringVectorWritable.class);
+
+        return conf;
+    }
+
+    // Configure pass4
+    protected JobConf configStage4() throws Exception {
+        final JobConf conf = new JobConf(getConf(), HadiBlock.class);
+        conf.set("number_nodes", "" + number_nodes);
+        conf.set("block_width", "" + block_width);
+        if (layout_path != null)
+            conf.set("block_layout", layout_path);
+        conf.setJobName("data-piqid.pegasus.HadiBlock_pass4");
+
+        conf.setMapperClass(MapStage4.class);
+
+        conf.setInputFormat(SequenceFileInputFormat.class);
+        FileInputFormat.setInputPaths(conf, curbm_path);
+        FileOutputFormat.setOutputPath(conf, new Path(output_path, "radius"));
+        FileOutputFormat.setCompressOutput(conf, true);
+        FileOutputFormat.setOutputCompressorClass(conf, SnappyCodec.class);
+
+        conf.setNumReduceTasks(0);        //This is essential for map-only tasks.
+
+        conf.setOutputKeyClass(LongWritable.class);
+        conf.setOutputValueClass(IntWritable.class);
+
+        return conf;
+    }
+}
@@ -0,0 +1,167 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: IterationCheckpoint.java
+ - Durable state of an iterative job: the number of completed hops, the
+   changed/unchanged counts of every hop, the vector generation written
+   by the last hop, and the parameters the layout of the data depends on.
+   Kept as a text file in the checkpoint directory, next to the vector
+   generations "gen-NNNNN".
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+public class IterationCheckpoint {
+    public static final String STATE_FILE = "checkpoint";
+    public static final String GEN_PREFIX = "gen-";
+
+    public final Path dir;
+    public final ArrayList<ResultInfo> hops = new ArrayList<ResultInfo>();
+    public final Map<String, String> params = new TreeMap<String, String>();    // must not change on resume
+
+    public IterationCheckpoint(Path dir) {
+        this.dir = dir;
+    }
+
+    // number of completed hops. the vector of generation 0 is the laid out initial vector.
+    public int numHops() {
+        return hops.size();
+    }
+
+    public ResultInfo lastHop() {
+        return hops.isEmpty() ? null : hops.get(hops.size() - 1);
+    }
+
+    public Path generation(int gen) {
+        return new Path(dir, String.format("%s%05d", GEN_PREFIX, gen));
+    }
+
+    // vector written by the last completed hop.
+    public Path vector() {
+        return generation(numHops());
+    }
+
+    // make new_vector the vector of the next generation, with the stats of the hop that wrote it.
+    // a hop is completed once this returns. ri is null for generation 0.
+    public void commit(FileSystem fs, Path new_vector, ResultInfo ri) throws IOException {
+        Path gen = generation(ri == null ? 0 : numHops() + 1);
+
+        fs.delete(gen, true);
+        if (!fs.rename(new_vector, gen))
+            throw new IOException("IterationCheckpoint: failed to rename " + new_vector + " to " + gen);
+
+        if (ri != null)
+            hops.add(ri);
+
+        write(fs);
+    }
+
+    // write the state file, atomically replacing the old one.
+    public void write(FileSystem fs) throws IOException {
+        Path state_path = new Path(dir, STATE_FILE);
+        Path tmp_path = new Path(dir, "_" + STATE_FILE + ".tmp");
+
+        BufferedWriter out = new BufferedWriter(new OutputStreamWriter(fs.create(tmp_path, true), "UTF-8"));
+        out.write("# iteration checkpoint\n");
+        out.write("hops\t" + numHops() + "\n");
+        out.write("vector\t" + vector() + "\n");
+        for (Map.Entry<String, String> param : params.entrySet())
+            out.write("param\t" + param.getKey() + "\t" + param.getValue() + "\n");
+        for (int i = 0; i < hops.size(); i++)
+            out.write("hop\t" + i + "\t" + hops.get(i).changed + "\t" + hops.get(i).unchanged + "\n");
+        out.close();
+
+        fs.delete(state_path, false);
+        if (!fs.rename(tmp_path, state_path))
+            throw new IOException("IterationCheckpoint: failed to rename " + tmp_path + " to " + state_path);
+    }
+
+    // read the checkpoint in dir. returns null if there is none, or if its vector is gone.
+    public static IterationCheckpoint read(FileSystem fs, Path dir) throws IOException {
+        Path state_path = new Path(dir, STATE_FILE);
+        if (!fs.exists(state_path))
+            return null;
+
+        IterationCheckpoint ckpt = new IterationCheckpoint(dir);
+        int num_hops = -1;
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(fs.open(state_path), "UTF-8"));
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith("#"))
+                    continue;
+
+                final String[] tokens = line.split("\t");
+                if (tokens[0].equals("hops")) {
+                    num_hops = Integer.parseInt(tokens[1]);
+                } else if (tokens[0].equals("param")) {
+                    ckpt.params.put(tokens[1], tokens.length > 2 ? tokens[2] : "");
+                } else if (tokens[0].equals("hop")) {
+                    ResultInfo ri = new ResultInfo();
+                    ri.changed = Long.parseLong(tokens[2]);
+                    ri.unchanged = Long.parseLong(tokens[3]);
+                    ckpt.hops.add(ri);
+                }
+            }
+        } finally {
+            in.close();
+        }
+
+        if (num_hops != ckpt.numHops())
+            throw new IOException("IterationCheckpoint: corrupted state file " + state_path);
+
+        if (!fs.exists(ckpt.vector()))
+            return null;
+
+        return ckpt;
+    }
+
+    // fail if a parameter recorded when the checkpoint was created differs from value.
+    // a parameter missing from the checkpoint is not checked.
+    public void checkParam(String key, String value) throws IOException {
+        if (params.containsKey(key) && !params.get(key).equals(value))
+            throw new IOException("Cannot resume: " + key + " is " + value + ", but the checkpoint in " + dir + " was made with " + params.get(key) + ".");
+    }
+
+    // delete the generations older than the last 'retention' ones.
+    public void clean(FileSystem fs, int retention) throws IOException {
+        int oldest = numHops() - Math.max(retention, 1) + 1;
+        FileStatus[] files = fs.listStatus(dir);
+        if (files == null)
+            return;
+
+        for (FileStatus file : files) {
+            String name = file.getPath().getName();
+            if (name.startsWith(GEN_PREFIX) && Integer.parseInt(name.substring(GEN_PREFIX.length())) < oldest)
+                fs.delete(file.getPath(), true);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: JobMetrics.java
+ - Per-job metrics report of an iterative computation, one CSV row per job:
+   wall time, task times, records, shuffle bytes and GC time from the job
+   counters, plus the convergence counts of the hop.
+   Counters missing in a Hadoop version are reported as empty.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.Counters;
+import org.apache.hadoop.mapred.JobClient;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.RunningJob;
+
+public class JobMetrics {
+    // framework counters, by name. the group names differ between Hadoop versions.
+    private static final String[] TASK_COUNTERS = {
+        "SLOTS_MILLIS_MAPS", "SLOTS_MILLIS_REDUCES", "CPU_MILLISECONDS", "GC_TIME_MILLIS",
+        "MAP_INPUT_RECORDS", "MAP_OUTPUT_RECORDS", "MAP_OUTPUT_MATERIALIZED_BYTES", "REDUCE_SHUFFLE_BYTES",
+        "REDUCE_INPUT_RECORDS", "REDUCE_OUTPUT_RECORDS"
+    };
+
+    private static final String HEADER = "stage,hop,job_id,wall_ms,map_slot_ms,reduce_slot_ms,cpu_ms,gc_ms,"
+            + "map_input_records,map_output_records,map_output_bytes,shuffle_bytes,reduce_input_records,reduce_output_records,"
+            + "changed,unchanged,skipped_blocks";
+
+    public static class Row {
+        public String stage;
+        public int hop = -1;            // -1 for the stages outside of the iterations
+        public String job_id;
+        public long wall_ms;
+        public final long[] task_counters = new long[TASK_COUNTERS.length];
+        public long changed = -1;       // -1 if not applicable
+        public long unchanged = -1;
+        public long skipped_blocks = -1;
+        public RunningJob job;          // not reported
+
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(stage).append(',').append(field(hop)).append(',').append(job_id).append(',').append(wall_ms);
+            for (int i = 0; i < task_counters.length; i++)
+                sb.append(',').append(field(task_counters[i]));
+            sb.append(',').append(field(changed));
+            sb.append(',').append(field(unchanged));
+            sb.append(',').append(field(skipped_blocks));
+            return sb.toString();
+        }
+
+        private static String field(long val) {
+            return val < 0 ? "" : Long.toString(val);
+        }
+    }
+
+    protected final Path report_path;
+    protected final ArrayList<String> lines = new ArrayList<String>();    // rows of the earlier runs and of this one
+
+    public JobMetrics(Path report_path) {
+        this.report_path = report_path;
+    }
+
+    // keep the rows of an interrupted run, when resuming it.
+    public void load(FileSystem fs) throws IOException {
+        lines.clear();
+        if (!fs.exists(report_path))
+            return;
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(fs.open(report_path), "UTF-8"));
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!line.equals(HEADER))
+                    lines.add(line);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    // run the job, and record its metrics. the caller fills in the convergence counts.
+    public Row runJob(JobConf conf, String stage, int hop) throws IOException {
+        long start = System.currentTimeMillis();
+        RunningJob job = JobClient.runJob(conf);
+
+        Row row = new Row();
+        row.stage = stage;
+        row.hop = hop;
+        row.job_id = job.getID().toString();
+        row.wall_ms = System.currentTimeMillis() - start;
+
+        Map<String, Long> by_name = new HashMap<String, Long>();
+        Counters counters = job.getCounters();
+        for (Counters.Group group : counters) {
+            for (Counters.Counter counter : group)
+                by_name.put(counter.getName(), counter.getValue());
+        }
+        for (int i = 0; i < TASK_COUNTERS.length; i++) {
+            Long val = by_name.get(TASK_COUNTERS[i]);
+            row.task_counters[i] = (val == null) ? -1 : val;
+        }
+
+        row.job = job;
+        return row;
+    }
+
+    // add the row, and rewrite the report so that it is up to date if the driver dies.
+    public void add(FileSystem fs, Row row) throws IOException {
+        lines.add(row.toString());
+
+        BufferedWriter out = new BufferedWriter(new OutputStreamWriter(fs.create(report_path, true), "UTF-8"));
+        out.write(HEADER + "\n");
+        for (String line : lines)
+            out.write(line + "\n");
+        out.close();
+    }
+}
@@ -0,0 +1,55 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: JoinPartitionInputFormat.java
+ - SequenceFile input format for map-side joins with CompositeInputFormat.
+   Every part file of a partitioned, sorted directory becomes exactly one split,
+   and the splits are returned in part order, so that the i-th split of every
+   joined directory holds the same keys. A part may also be a MapFile, whose
+   data file is read.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.SequenceFileInputFormat;
+
+public class JoinPartitionInputFormat<K, V> extends SequenceFileInputFormat<K, V> {
+    protected boolean isSplitable(FileSystem fs, Path filename) {
+        return false;
+    }
+
+    protected FileStatus[] listStatus(JobConf job) throws IOException {
+        FileStatus[] files = super.listStatus(job);
+
+        Arrays.sort(files, new Comparator<FileStatus>() {
+            public int compare(FileStatus f1, FileStatus f2) {
+                // the full path, as the data files of MapFile parts all have the same name.
+                return f1.getPath().toString().compareTo(f2.getPath().toString());
+            }
+        });
+
+        return files;
+    }
+}
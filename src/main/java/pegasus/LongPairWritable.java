@@ -0,0 +1,147 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: LongPairWritable.java
+ - (first, second) key for secondary sort: partition and group by first,
+   and the values of a group arrive sorted by second.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.Partitioner;
+
+public class LongPairWritable implements WritableComparable<LongPairWritable> {
+    public long first;
+    public long second;
+
+    public LongPairWritable() {
+    }
+
+    public LongPairWritable(long first, long second) {
+        set(first, second);
+    }
+
+    public void set(long first, long second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeLong(first);
+        out.writeLong(second);
+    }
+
+    public void readFields(DataInput in) throws IOException {
+        first = in.readLong();
+        second = in.readLong();
+    }
+
+    public int compareTo(LongPairWritable o) {
+        if (first != o.first)
+            return first < o.first ? -1 : 1;
+        if (second != o.second)
+            return second < o.second ? -1 : 1;
+        return 0;
+    }
+
+    public boolean equals(Object o) {
+        if (!(o instanceof LongPairWritable))
+            return false;
+
+        LongPairWritable p = (LongPairWritable) o;
+        return first == p.first && second == p.second;
+    }
+
+    public int hashCode() {
+        return (int) (first ^ (first >>> 32)) * 31 + (int) (second ^ (second >>> 32));
+    }
+
+    public String toString() {
+        return first + "\t" + second;
+    }
+
+    // sort by (first, second) on the serialized bytes.
+    public static class Comparator extends WritableComparator {
+        public Comparator() {
+            super(LongPairWritable.class);
+        }
+
+        public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            long f1 = readLong(b1, s1);
+            long f2 = readLong(b2, s2);
+            if (f1 != f2)
+                return f1 < f2 ? -1 : 1;
+
+            long n1 = readLong(b1, s1 + 8);
+            long n2 = readLong(b2, s2 + 8);
+            if (n1 != n2)
+                return n1 < n2 ? -1 : 1;
+            return 0;
+        }
+    }
+
+    static {
+        WritableComparator.define(LongPairWritable.class, new Comparator());
+    }
+
+    // group by first only.
+    public static class FirstGroupingComparator extends WritableComparator {
+        public FirstGroupingComparator() {
+            super(LongPairWritable.class);
+        }
+
+        public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            long f1 = readLong(b1, s1);
+            long f2 = readLong(b2, s2);
+            return f1 < f2 ? -1 : (f1 == f2 ? 0 : 1);
+        }
+
+        // the reduce side groups the deserialized keys.
+        @SuppressWarnings("rawtypes")
+        public int compare(WritableComparable a, WritableComparable b) {
+            long f1 = ((LongPairWritable) a).first;
+            long f2 = ((LongPairWritable) b).first;
+            return f1 < f2 ? -1 : (f1 == f2 ? 0 : 1);
+        }
+    }
+
+    // partition by first only, the same way HashPartitioner partitions a LongWritable.
+    public static class FirstPartitioner<V> implements Partitioner<LongPairWritable, V> {
+        public void configure(JobConf job) {
+        }
+
+        public int getPartition(LongPairWritable key, V value, int numPartitions) {
+            int hash = (int) (key.first ^ (key.first >>> 32));
+            return (hash & Integer.MAX_VALUE) % numPartitions;
+        }
+    }
+
+    // set up the secondary sort on conf.
+    public static void setSecondarySort(JobConf conf) {
+        conf.setMapOutputKeyClass(LongPairWritable.class);
+        conf.setPartitionerClass(FirstPartitioner.class);
+        conf.setOutputKeyComparatorClass(Comparator.class);
+        conf.setOutputValueGroupingComparator(FirstGroupingComparator.class);
+    }
+}
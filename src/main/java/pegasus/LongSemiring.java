@@ -0,0 +1,55 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: LongSemiring.java
+ - The operations of GIMV on long vectors: out[row] = assign(old[row],
+   combineAll over the columns of combine2(m(row, col), vector[col])).
+   m is the value of the matrix element, 1 for 0-1 matrices.
+   zero() is the identity of combineAll, the result of a row without elements.
+   MIN is recognized by the GIMV kernels, which specialize it.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+public abstract class LongSemiring {
+    // connected components: the minimum node id, whatever the matrix value.
+    public static final LongSemiring MIN = new LongSemiring() {
+        public long combine2(double m, long v) {
+            return v;
+        }
+
+        public long combineAll(long x, long y) {
+            return x < y ? x : y;
+        }
+
+        public long zero() {
+            return Long.MAX_VALUE;
+        }
+
+        public long assign(long old_val, long new_val) {
+            return old_val < new_val ? old_val : new_val;
+        }
+    };
+
+    public abstract long combine2(double m, long v);
+
+    public abstract long combineAll(long x, long y);
+
+    public abstract long zero();
+
+    public abstract long assign(long old_val, long new_val);
+}
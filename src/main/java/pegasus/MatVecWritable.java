@@ -0,0 +1,99 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: MatVecWritable.java
+ - Either a VectorWritable or a BlockWritable, so that vectors and matrix blocks
+   can share one SequenceFile or one shuffle.
+   Unlike GenericWritable, the wrapped instances are reused across readFields().
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.Writable;
+
+public class MatVecWritable implements Writable {
+    private static final byte VECTOR = 0;
+    private static final byte BLOCK = 1;
+
+    private final VectorWritable vector = new VectorWritable();
+    private final BlockWritable block = new BlockWritable();
+    private Writable instance = vector;
+
+    public MatVecWritable() {
+    }
+
+    public MatVecWritable(Writable w) {
+        set(w);
+    }
+
+    // wrap w without copying it.
+    public void set(Writable w) {
+        if (!(w instanceof VectorWritable) && !(w instanceof BlockWritable))
+            throw new IllegalArgumentException("MatVecWritable cannot hold " + w.getClass().getName());
+
+        instance = w;
+    }
+
+    public Writable get() {
+        return instance;
+    }
+
+    public boolean isVector() {
+        return instance instanceof VectorWritable;
+    }
+
+    public VectorWritable getVector() {
+        return (VectorWritable) instance;
+    }
+
+    public BlockWritable getBlock() {
+        return (BlockWritable) instance;
+    }
+
+    // unwrap w if it is a MatVecWritable. Useful for mappers reading both kinds of files.
+    public static Writable unwrap(Writable w) {
+        if (w instanceof MatVecWritable)
+            return ((MatVecWritable) w).get();
+
+        return w;
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeByte(isVector() ? VECTOR : BLOCK);
+        instance.write(out);
+    }
+
+    public void readFields(DataInput in) throws IOException {
+        byte type = in.readByte();
+        if (type == VECTOR)
+            instance = vector;
+        else if (type == BLOCK)
+            instance = block;
+        else
+            throw new IOException("MatVecWritable: unknown type " + type);
+
+        instance.readFields(in);
+    }
+
+    public String toString() {
+        return instance.toString();
+    }
+}
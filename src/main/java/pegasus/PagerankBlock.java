@@ -0,0 +1,494 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: PagerankBlock.java
+ - PageRank using block multiplication, on the semiring GIMV engine.
+   The matrix is the column-normalized edge matrix of PagerankPrep, in the
+   real block form of MatvecPrep.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+import java.io.*;
+import java.util.*;
+
+import org.apache.hadoop.conf.*;
+import org.apache.hadoop.fs.*;
+import org.apache.hadoop.io.*;
+import org.apache.hadoop.io.compress.SnappyCodec;
+import org.apache.hadoop.mapred.*;
+import org.apache.hadoop.mapred.join.CompositeInputFormat;
+import org.apache.hadoop.mapred.join.TupleWritable;
+import org.apache.hadoop.mapred.lib.IdentityReducer;
+import org.apache.hadoop.util.*;
+
+public class PagerankBlock extends Configured implements Tool {
+    // number of nodes whose rank moved by more than the threshold, or not, counted by RedStage2.
+    public static enum ConvergenceCounter {CHANGED, UNCHANGED}
+
+    public static int MAX_ITERATIONS = 1024;
+
+    // sum-product with the random jump: rank = (1 - c) / n + c * (sum of the incoming ranks).
+    public static class PagerankSemiring extends DoubleSemiring {
+        private final double mixing_c;
+        private final double random_jump;
+
+        public PagerankSemiring(double mixing_c, long number_nodes) {
+            this.mixing_c = mixing_c;
+            this.random_jump = (1 - mixing_c) / number_nodes;
+        }
+
+        public static PagerankSemiring configure(JobConf job) {
+            return new PagerankSemiring(Double.parseDouble(job.get("mixing_c")), Long.parseLong(job.get("number_nodes")));
+        }
+
+        public double assign(double old_val, double new_val) {
+            return random_jump + mixing_c * new_val;
+        }
+    }
+
+
+    //////////////////////////////////////////////////////////////////////
+    // STAGE 0: generate the initial vector, 1/n for every node, partitioned by block id
+    //          as the output of STAGE 2. The edge matrix is partitioned by ConCmptBlock.MapStage0.
+    //  - Input: block ids from BlockRangeInputFormat
+    //  - Output: BLOCKID   TAB   DoubleVectorWritable
+    //////////////////////////////////////////////////////////////////////
+    public static class MapStage0 extends MapReduceBase implements Mapper<LongWritable, NullWritable, LongWritable, DoubleVectorWritable> {
+        BlockLayout layout;
+        double initial_rank;
+
+        private final DoubleVectorWritable out_vector = new DoubleVectorWritable();
+
+        public void configure(JobConf job) {
+            long number_nodes = Long.parseLong(job.get("number_nodes"));
+            layout = BlockLayout.configure(job, number_nodes, Integer.parseInt(job.get("block_width")));
+            initial_rank = 1.0 / number_nodes;
+
+            out_vector.kind = VectorWritable.SELF;
+            out_vector.status = VectorWritable.INITIAL;
+        }
+
+        public void map(final LongWritable key, final NullWritable value, final OutputCollector<LongWritable, DoubleVectorWritable> output, final Reporter reporter) throws IOException {
+            int width = layout.width(key.get());
+
+            out_vector.clear();
+            for (int i = 0; i < width; i++)
+                out_vector.add(i, initial_rank);
+
+            output.collect(key, out_vector);
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    // STAGE 1: generate partial ranks.
+    //          Map-side merge join of edge and vector by Vector.BLOCKROWID == Edge.BLOCKCOLID,
+    //          as in ConCmptBlock. STAGE 1 and STAGE 2 run as one job: MapStage1 -> RedStage2.
+    //  - Input: (edge blocks, vector block) tuples
+    //  - Output: self vector and partial ranks
+    //////////////////////////////////////////////////////////////////////
+    public static class MapStage1 extends MapReduceBase implements Mapper<LongWritable, TupleWritable, LongWritable, DoubleVectorWritable> {
+        protected int block_width;
+        protected DoubleSemiring semiring;
+
+        // scratch buffers, reused for every record.
+        private final DoubleVectorWritable self_vector = new DoubleVectorWritable();
+        private final DoubleVectorWritable out_vector = new DoubleVectorWritable();
+        private final LongWritable out_key = new LongWritable();
+        private DenseDoubleVector vector;
+        private DenseDoubleVector mult_result;
+        private boolean has_vector_key = false;
+        private long vector_key;    // block id whose vector is loaded in 'vector'
+
+        public void configure(JobConf job) {
+            block_width = Integer.parseInt(job.get("block_width"));
+            semiring = PagerankSemiring.configure(job);
+            vector = new DenseDoubleVector(block_width);
+            mult_result = new DenseDoubleVector(block_width);
+
+            System.out.println("MapStage1: block_width=" + block_width);
+        }
+
+        // tuple : 0 = edge block, 1 = vector block.
+        public void map(final LongWritable key, final TupleWritable value, final OutputCollector<LongWritable, DoubleVectorWritable> output, final Reporter reporter) throws IOException {
+            if (!has_vector_key || vector_key != key.get()) {
+                if (!value.has(1))    // missing vector.
+                    return;
+
+                // first tuple of this block. output 'self' block for the random jump and the convergence
+                DoubleVectorWritable cur_vector = (DoubleVectorWritable) value.get(1);
+                self_vector.set(cur_vector);
+                self_vector.kind = VectorWritable.SELF;
+                output.collect(key, self_vector);
+
+                vector.load(cur_vector);
+                vector_key = key.get();
+                has_vector_key = true;
+            }
+
+            if (!value.has(0))    // missing block.
+                return;
+
+            BlockWritable cur_block = (BlockWritable) value.get(0);
+            mult_result.clear();
+            GIMV.multiply(cur_block, vector, mult_result, semiring);
+
+            if (!mult_result.isEmpty()) {
+                mult_result.store(out_vector);
+                out_vector.kind = VectorWritable.PARTIAL;
+                out_vector.status = VectorWritable.INCOMPLETE;
+                out_key.set(cur_block.block_row);
+                output.collect(out_key, out_vector);
+            }
+        }
+    }
+
+    // combine partial results of a map task. the self vector is passed through.
+    public static class CombStage1 extends MapReduceBase implements Reducer<LongWritable, DoubleVectorWritable, LongWritable, DoubleVectorWritable> {
+        private final DoubleVectorWritable out_vector = new DoubleVectorWritable();
+        private DenseDoubleVector out_vals;
+        private DoubleSemiring semiring;
+
+        public void configure(JobConf job) {
+            out_vals = new DenseDoubleVector(Integer.parseInt(job.get("block_width")));
+            semiring = PagerankSemiring.configure(job);
+        }
+
+        public void reduce(final LongWritable key, final Iterator<DoubleVectorWritable> values, final OutputCollector<LongWritable, DoubleVectorWritable> output, final Reporter reporter) throws IOException {
+            boolean has_partial = false;
+            out_vals.clear();
+
+            while (values.hasNext()) {
+                DoubleVectorWritable cur_vector = values.next();
+
+                if (cur_vector.kind == VectorWritable.SELF) {
+                    output.collect(key, cur_vector);
+                } else {
+                    out_vals.combineAll(cur_vector, semiring);
+                    has_partial = true;
+                }
+            }
+
+            if (has_partial) {
+                out_vals.store(out_vector);
+                out_vector.kind = VectorWritable.PARTIAL;
+                out_vector.status = VectorWritable.INCOMPLETE;
+                output.collect(key, out_vector);
+            }
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    // STAGE 2: merge partial ranks, and add the random jump.
+    //          This is the reduce phase of the STAGE 1 job.
+    //          Every node of the block gets a rank, with or without incoming edges.
+    //  - Input: self vector and partial ranks
+    //  - Output: next ranks
+    //////////////////////////////////////////////////////////////////////
+    public static class RedStage2 extends MapReduceBase implements Reducer<LongWritable, DoubleVectorWritable, LongWritable, DoubleVectorWritable> {
+        protected int block_width;
+        protected double converge_threshold;
+        protected DoubleSemiring semiring;
+        protected BlockLayout layout;
+
+        // scratch buffers, reused for every key.
+        private final DoubleVectorWritable out_vector = new DoubleVectorWritable();
+        private DenseDoubleVector self_vals;
+        private DenseDoubleVector sum_vals;
+        private DenseDoubleVector out_vals;
+
+        public void configure(JobConf job) {
+            block_width = Integer.parseInt(job.get("block_width"));
+            converge_threshold = Double.parseDouble(job.get("converge_threshold"));
+            semiring = PagerankSemiring.configure(job);
+            layout = BlockLayout.configure(job, Long.parseLong(job.get("number_nodes")), block_width);
+            self_vals = new DenseDoubleVector(block_width);
+            sum_vals = new DenseDoubleVector(block_width);
+            out_vals = new DenseDoubleVector(block_width);
+            System.out.println("RedStage2: block_width=" + block_width + ", converge_threshold=" + converge_threshold);
+        }
+
+        public void reduce(final LongWritable key, final Iterator<DoubleVectorWritable> values, final OutputCollector<LongWritable, DoubleVectorWritable> output, final Reporter reporter) throws IOException {
+            boolean has_self = false;
+            sum_vals.clear();
+
+            while (values.hasNext()) {
+                DoubleVectorWritable cur_vector = values.next();
+
+                if (cur_vector.kind == VectorWritable.SELF) {
+                    self_vals.load(cur_vector);
+                    has_self = true;
+                } else {
+                    sum_vals.combineAll(cur_vector, semiring);
+                }
+            }
+
+            if (!has_self) {
+                reporter.incrCounter("ERROR", "self_vector == null", 1);
+                System.err.println("ERROR: self_vector == null, key=" + key);
+                return;
+            }
+
+            int width = layout.width(key.get());
+            int changed = GIMV.assign(self_vals, sum_vals, width, semiring, out_vals, converge_threshold);
+            reporter.incrCounter(ConvergenceCounter.CHANGED, changed);
+            reporter.incrCounter(ConvergenceCounter.UNCHANGED, width - changed);
+
+            out_vals.store(out_vector);
+            out_vector.kind = VectorWritable.SELF;
+            out_vector.status = changed > 0 ? VectorWritable.INCOMPLETE : VectorWritable.FINISHED;
+            output.collect(key, out_vector);
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    // STAGE 4: Unfold the block rank format to plain format.
+    //         This is a map-only stage.
+    //  - Input: the converged ranks
+    //  - Output: (node_id, "v"rank) as text
+    //////////////////////////////////////////////////////////////////////
+    public static class MapStage4 extends MapReduceBase implements Mapper<LongWritable, DoubleVectorWritable, LongWritable, Text> {
+        private final LongWritable out_key = new LongWritable();
+        private final Text out_value = new Text();
+        BlockLayout layout;
+
+        public void configure(JobConf job) {
+            layout = BlockLayout.configure(job, Long.parseLong(job.get("number_nodes")), Integer.parseInt(job.get("block_width")));
+        }
+
+        public void map(final LongWritable key, final DoubleVectorWritable value, final OutputCollector<LongWritable, Text> output, final Reporter reporter) throws IOException {
+            long start_node = layout.start(key.get());
+
+            for (int i = 0; i < value.size; i++) {
+                out_key.set(start_node + value.rows[i]);
+                out_value.set("v" + value.vals[i]);
+                output.collect(out_key, out_value);
+            }
+        }
+    }
+
+
+    //////////////////////////////////////////////////////////////////////
+    // command line interface
+    //////////////////////////////////////////////////////////////////////
+    protected Path edge_path = null;
+    protected Path curbm_path = null;
+    protected Path tempbm_path = null;
+    protected Path nextbm_path = null;
+    protected Path output_path = null;
+    protected long number_nodes = 0;
+    protected int nreducers = 1;
+    protected int block_width = 64;
+    protected int max_iters = 0;
+    protected double mixing_c = 0.85;
+    protected double converge_threshold = 0;
+    protected String layout_path = null; // boundaries of variable-size blocks
+
+    // Main entry point.
+    public static void main(final String[] args) throws Exception {
+        final int result = ToolRunner.run(new Configuration(), new PagerankBlock(), args);
+
+        System.exit(result);
+    }
+
+    // Print the command-line usage text.
+    protected static int printUsage() {
+        System.out.println("PagerankBlock <edge_path> <curbm_path> <tempbm_path> <nextbm_path> <output_path> <# of nodes> <# of reducers> <block_width> <max_iters> [mixing <c>] [layout <block_layout_path>]");
+        System.out.println("  edge_path: the output of PagerankPrep, converted by MatvecPrep.");
+        System.out.println("  mixing: probability to follow an edge instead of the random jump. default 0.85.");
+        System.out.println("  layout: variable-size blocks, as given to MatvecPrep. block_width is then the widest block.");
+
+        ToolRunner.printGenericCommandUsage(System.out);
+
+        return -1;
+    }
+
+    // submit the map/reduce job.
+    public int run(final String[] args) throws Exception {
+        if (args.length < 9) {
+            return printUsage();
+        }
+        int i;
+
+        edge_path = new Path(args[0]);
+        curbm_path = new Path(args[1]);
+        tempbm_path = new Path(args[2]);
+        nextbm_path = new Path(args[3]);
+        output_path = new Path(args[4]);
+        number_nodes = Long.parseLong(args[5]);
+        nreducers = Integer.parseInt(args[6]);
+        block_width = Integer.parseInt(args[7]);
+        max_iters = Integer.parseInt(args[8]);
+        if (max_iters < 0 || max_iters > MAX_ITERATIONS)
+                max_iters = MAX_ITERATIONS;
+
+        for (i = 9; i < args.length; i++) {
+            if (args[i].compareTo("mixing") == 0 && i + 1 < args.length) {
+                mixing_c = Double.parseDouble(args[++i]);
+            } else if (args[i].compareTo("layout") == 0 && i + 1 < args.length) {
+                layout_path = args[++i];
+            } else {
+                return printUsage();
+            }
+        }
+
+        // a rank has converged when it moves by less than a tenth of the initial rank.
+        converge_threshold = (1.0 / number_nodes) / 10;
+
+        System.out.println("\n-----===[PEGASUS: A Peta-Scale Graph Mining System]===-----\n");
+        System.out.println("[PEGASUS] Computing PageRank using block method. Reducers = " + nreducers + ", block_width = " + block_width + ", mixing c = " + mixing_c);
+
+        final FileSystem fs = FileSystem.get(getConf());
+
+        block_width = BlockLayout.vectorWidth(fs, layout_path, block_width);
+
+        // partition the edge matrix by block column, and generate the initial vector in the same partitions.
+        System.out.println("Partitioning the edge matrix and generating the initial vector...");
+        fs.delete(tempbm_path, true);
+        fs.delete(curbm_path, true);
+        JobClient.runJob(configStage0Edge());
+        JobClient.runJob(configStage0Vector());
+
+        for (i = 0; i < max_iters; i++) {
+            fs.delete(nextbm_path, true);
+            RunningJob job = JobClient.runJob(configStage1());
+
+            Counters counters = job.getCounters();
+            long changed = counters.getCounter(ConvergenceCounter.CHANGED);
+            long unchanged = counters.getCounter(ConvergenceCounter.UNCHANGED);
+            System.out.println("Iteration " + i + " : changed = " + changed + ", unchanged = " + unchanged);
+
+            fs.delete(curbm_path, true);
+            fs.rename(nextbm_path, curbm_path);
+
+            if (changed == 0) {
+                System.out.println("PageRank converged after " + (i + 1) + " iterations.");
+                i++;
+                break;
+            }
+        }
+
+        System.out.println("Unfolding the block structure for easy lookup...");
+        fs.delete(output_path, true);
+        JobClient.runJob(configStage4());
+        fs.delete(tempbm_path, true);
+
+        System.out.println("\n[PEGASUS] PageRank computed.");
+        System.out.println("[PEGASUS] Total Iteration = " + i);
+        System.out.println("[PEGASUS] PageRank vector is saved in the HDFS " + output_path + " as\n\"node_id	'v'PageRank\" format.\n");
+
+        return 0;
+    }
+
+    // Configure pass0 of the edge matrix
+    protected JobConf configStage0Edge() throws Exception {
+        final JobConf conf = new JobConf(getConf(), PagerankBlock.class);
+        conf.setJobName("data-piqid.pegasus.PagerankBlock_pass0_edge");
+
+        conf.setMapperClass(ConCmptBlock.MapStage0.class);
+        conf.setReducerClass(ConCmptBlock.RedStage0.class);
+
+        conf.setInputFormat(SequenceFileInputFormat.class);
+        FileInputFormat.setInputPaths(conf, edge_path);
+        ConCmptBlock.setBlockOutput(conf, tempbm_path);
+
+        conf.setNumReduceTasks(nreducers);    // must match the number of partitions of STAGE 2
+
+        conf.setMapOutputKeyClass(LongWritable.class);
+        conf.setMapOutputValueClass(MatVecWritable.class);
+        conf.setOutputKeyClass(LongWritable.class);
+        conf.setOutputValueClass(BlockWritable.class);
+
+        return conf;
+    }
+
+    // Configure pass0 of the initial vector
+    protected JobConf configStage0Vector() throws Exception {
+        final JobConf conf = new JobConf(getConf(), PagerankBlock.class);
+        conf.set("number_nodes", "" + number_nodes);
+        conf.set("block_width", "" + block_width);
+        if (layout_path != null)
+            conf.set("block_layout", layout_path);
+        conf.setJobName("data-piqid.pegasus.PagerankBlock_pass0_vector");
+
+        conf.setMapperClass(MapStage0.class);
+        conf.setReducerClass(IdentityReducer.class);
+
+        conf.setInputFormat(BlockRangeInputFormat.class);
+        conf.setNumMapTasks(nreducers);
+        ConCmptBlock.setBlockOutput(conf, curbm_path);
+
+        conf.setNumReduceTasks(nreducers);    // must match the number of partitions of STAGE 2
+
+        conf.setOutputKeyClass(LongWritable.class);
+        conf.setOutputValueClass(DoubleVectorWritable.class);
+
+        return conf;
+    }
+
+    // Configure pass1 and pass2
+    protected JobConf configStage1() throws Exception {
+        final JobConf conf = new JobConf(getConf(), PagerankBlock.class);
+        conf.set("number_nodes", "" + number_nodes);
+        conf.set("block_width", "" + block_width);
+        conf.set("mixing_c", "" + mixing_c);
+        conf.set("converge_threshold", "" + converge_threshold);
+        if (layout_path != null)
+            conf.set("block_layout", layout_path);
+        conf.setJobName("data-piqid.pegasus.PagerankBlock_pass1");
+
+        conf.setMapperClass(MapStage1.class);
+        conf.setCombinerClass(CombStage1.class);
+        conf.setReducerClass(RedStage2.class);
+
+        conf.setInputFormat(CompositeInputFormat.class);
+        conf.set("mapred.join.expr", CompositeInputFormat.compose("outer", JoinPartitionInputFormat.class, tempbm_path, curbm_path));
+        ConCmptBlock.setBlockOutput(conf, nextbm_path);
+
+        conf.setNumReduceTasks(nreducers);
+
+        conf.setOutputKeyClass(LongWritable.class);
+        conf.setOutputValueClass(DoubleVectorWritable.class);
+
+        return conf;
+    }
+
+    // Configure pass4
+    protected JobConf configStage4() throws Exception {
+        final JobConf conf = new JobConf(getConf(), PagerankBlock.class);
+        conf.set("number_nodes", "" + number_nodes);
+        conf.set("block_width", "" + block_width);
+        if (layout_path != null)
+            conf.set("block_layout", layout_path);
+        conf.setJobName("data-piqid.pegasus.PagerankBlock_pass4");
+
+        conf.setMapperClass(MapStage4.class);
+
+        conf.setInputFormat(SequenceFileInputFormat.class);
+        FileInputFormat.setInputPaths(conf, curbm_path);
+        FileOutputFormat.setOutputPath(conf, output_path);
+        FileOutputFormat.setCompressOutput(conf, true);
+        FileOutputFormat.setOutputCompressorClass(conf, SnappyCodec.class);
+
+        conf.setNumReduceTasks(0);        //This is essential for map-only tasks.
+
+        conf.setOutputKeyClass(LongWritable.class);
+        conf.setOutputValueClass(Text.class);
+
+        return conf;
+    }
+}
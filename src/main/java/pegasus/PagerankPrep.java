@@ -0,0 +1,148 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: PagerankPrep.java
+ - Column-normalize the edges of a graph for PageRank: the edge src -> dst
+   becomes the matrix element (dst, src) with value 1/outdegree(src), in the
+   real matrix format of MatvecPrep.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+import java.io.*;
+import java.util.*;
+
+import org.apache.hadoop.conf.*;
+import org.apache.hadoop.fs.*;
+import org.apache.hadoop.io.*;
+import org.apache.hadoop.mapred.*;
+import org.apache.hadoop.util.*;
+
+public class PagerankPrep extends Configured implements Tool {
+    //////////////////////////////////////////////////////////////////////
+    // STAGE 1: group the edges by source, and divide by the out-degree.
+    //  - Input: edge_file (SRC   TAB   DST)
+    //  - Output: DST   TAB   SRC   TAB   1/outdegree(SRC)
+    //////////////////////////////////////////////////////////////////////
+    public static class MapStage1 extends MapReduceBase implements Mapper<LongWritable, Text, LongWritable, LongWritable> {
+        private final TextTokenizer tokens = new TextTokenizer();
+        private final LongWritable out_key = new LongWritable();
+        private final LongWritable out_value = new LongWritable();
+
+        public void map(final LongWritable key, final Text value, final OutputCollector<LongWritable, LongWritable> output, final Reporter reporter) throws IOException {
+            tokens.reset(value);
+            if (tokens.isComment())                       // ignore comments in edge file
+                return;
+
+            if (tokens.numFields() < 2)
+                return;
+
+            out_key.set(tokens.nextLong());
+            out_value.set(tokens.nextLong());
+            output.collect(out_key, out_value);
+        }
+    }
+
+    public static class RedStage1 extends MapReduceBase implements Reducer<LongWritable, LongWritable, LongWritable, Text> {
+        private final LongWritable out_key = new LongWritable();
+        private final Text out_value = new Text();
+        private long[] dsts = new long[16];
+
+        public void reduce(final LongWritable key, final Iterator<LongWritable> values, final OutputCollector<LongWritable, Text> output, final Reporter reporter) throws IOException {
+            int outdegree = 0;
+            while (values.hasNext()) {
+                if (outdegree == dsts.length)
+                    dsts = Arrays.copyOf(dsts, dsts.length * 2);
+                dsts[outdegree++] = values.next().get();
+            }
+
+            String suffix = "\t" + (1.0 / outdegree);
+            for (int i = 0; i < outdegree; i++) {
+                out_key.set(dsts[i]);
+                out_value.set(key.get() + suffix);
+                output.collect(out_key, out_value);
+            }
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    // command line interface
+    //////////////////////////////////////////////////////////////////////
+    protected Path edge_path = null;
+    protected Path output_path = null;
+    protected int nreducers = 1;
+
+    // Main entry point.
+    public static void main(final String[] args) throws Exception {
+        final int result = ToolRunner.run(new Configuration(), new PagerankPrep(), args);
+
+        System.exit(result);
+    }
+
+    // Print the command-line usage text.
+    protected static int printUsage() {
+        System.out.println("PagerankPrep <edge_path> <output_path> <# of reducers>");
+
+        ToolRunner.printGenericCommandUsage(System.out);
+
+        return -1;
+    }
+
+    // submit the map/reduce job.
+    public int run(final String[] args) throws Exception {
+        if (args.length != 3) {
+            return printUsage();
+        }
+
+        edge_path = new Path(args[0]);
+        output_path = new Path(args[1]);
+        nreducers = Integer.parseInt(args[2]);
+
+        System.out.println("\n-----===[PEGASUS: A Peta-Scale Graph Mining System]===-----\n");
+        System.out.println("[PEGASUS] Column-normalizing the edges for PageRank. Reducers = " + nreducers);
+
+        final FileSystem fs = FileSystem.get(getConf());
+        fs.delete(output_path, true);
+
+        JobClient.runJob(configStage1());
+
+        System.out.println("\n[PEGASUS] The normalized matrix is saved in the HDFS " + output_path + " as\n\"row_id	col_id	value\" format, for MatvecPrep.\n");
+
+        return 0;
+    }
+
+    // Configure pass1
+    protected JobConf configStage1() throws Exception {
+        final JobConf conf = new JobConf(getConf(), PagerankPrep.class);
+        conf.setJobName("data-piqid.pegasus.PagerankPrep_pass1");
+
+        conf.setMapperClass(MapStage1.class);
+        conf.setReducerClass(RedStage1.class);
+
+        FileInputFormat.setInputPaths(conf, edge_path);
+        FileOutputFormat.setOutputPath(conf, output_path);
+
+        conf.setNumReduceTasks(nreducers);
+
+        conf.setMapOutputKeyClass(LongWritable.class);
+        conf.setMapOutputValueClass(LongWritable.class);
+        conf.setOutputKeyClass(LongWritable.class);
+        conf.setOutputValueClass(Text.class);
+
+        return conf;
+    }
+}
@@ -0,0 +1,142 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: SkewPartitioner.java
+ - Partitioner of the edge blocks for the map-side join of ConCmptBlock, which
+   spreads the edge blocks of a heavy block column over several partitions,
+   by block row. Every other block goes to its home partition, where
+   HashPartitioner puts the vector block of the column.
+   Heavy columns, with more than 1/(# of partitions) of the nonzeros, are found
+   by sampling the edge blocks, and passed to the tasks in "heavy_columns" as
+   "column:slices,column:slices,...".
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapred.FileInputFormat;
+import org.apache.hadoop.mapred.InputSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.Partitioner;
+import org.apache.hadoop.mapred.RecordReader;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapred.SequenceFileInputFormat;
+
+public class SkewPartitioner implements Partitioner<LongWritable, MatVecWritable> {
+    public static final int SAMPLE_SPLITS = 100;
+    public static final int SAMPLE_RECORDS = 10000;    // per split
+
+    private Map<Long, Integer> heavy_columns;
+
+    public void configure(JobConf job) {
+        heavy_columns = getHeavyColumns(job);
+    }
+
+    public int getPartition(LongWritable key, MatVecWritable value, int numPartitions) {
+        int home = homePartition(key.get(), numPartitions);
+        Integer slices = heavy_columns.get(key.get());
+        if (slices == null || !(value.get() instanceof BlockWritable))
+            return home;
+
+        long block_row = ((BlockWritable) value.get()).block_row;
+        int slice = (int) ((block_row ^ (block_row >>> 32)) & Integer.MAX_VALUE) % slices;
+        return (home + slice) % numPartitions;
+    }
+
+    // the partition of HashPartitioner for a LongWritable key.
+    public static int homePartition(long key, int numPartitions) {
+        return ((int) (key ^ (key >>> 32)) & Integer.MAX_VALUE) % numPartitions;
+    }
+
+    public static Map<Long, Integer> getHeavyColumns(JobConf job) {
+        return parse(job.get("heavy_columns", ""));
+    }
+
+    public static Map<Long, Integer> parse(String spec) {
+        Map<Long, Integer> heavy = new HashMap<Long, Integer>();
+        if (spec.length() == 0)
+            return heavy;
+
+        for (String column : spec.split(",")) {
+            int pos = column.indexOf(':');
+            heavy.put(Long.parseLong(column.substring(0, pos)), Integer.parseInt(column.substring(pos + 1)));
+        }
+        return heavy;
+    }
+
+    public static String format(Map<Long, Integer> heavy) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Long, Integer> entry : new TreeMap<Long, Integer>(heavy).entrySet()) {
+            if (sb.length() > 0)
+                sb.append(',');
+            sb.append(entry.getKey()).append(':').append(entry.getValue());
+        }
+        return sb.toString();
+    }
+
+    // estimate the share of the nonzeros of every block column from the first records
+    // of up to SAMPLE_SPLITS splits of the edge blocks, and split the heavy columns.
+    public static Map<Long, Integer> sample(JobConf conf, Path[] edge_paths, int num_partitions) throws IOException {
+        Map<Long, Integer> heavy = new HashMap<Long, Integer>();
+        if (num_partitions <= 1)
+            return heavy;
+
+        JobConf job = new JobConf(conf);
+        FileInputFormat.setInputPaths(job, edge_paths);
+        SequenceFileInputFormat<LongWritable, Writable> input_format = new SequenceFileInputFormat<LongWritable, Writable>();
+        InputSplit[] splits = input_format.getSplits(job, SAMPLE_SPLITS);
+
+        Map<Long, Long> column_nnz = new HashMap<Long, Long>();
+        long total_nnz = 0;
+        int step = Math.max(splits.length / SAMPLE_SPLITS, 1);
+        for (int i = 0; i < splits.length; i += step) {
+            RecordReader<LongWritable, Writable> reader = input_format.getRecordReader(splits[i], job, Reporter.NULL);
+            LongWritable key = reader.createKey();
+            Writable value = reader.createValue();
+            for (int n = 0; n < SAMPLE_RECORDS && reader.next(key, value); n++) {
+                Writable cur_value = MatVecWritable.unwrap(value);
+                if (!(cur_value instanceof BlockWritable))
+                    continue;
+
+                BlockWritable block = (BlockWritable) cur_value;
+                Long nnz = column_nnz.get(block.block_col);
+                column_nnz.put(block.block_col, (nnz == null ? 0 : nnz) + block.nnz);
+                total_nnz += block.nnz;
+            }
+            reader.close();
+        }
+
+        // a column with more than the average partition load gets one slice per average load.
+        double partition_nnz = (double) total_nnz / num_partitions;
+        for (Map.Entry<Long, Long> entry : column_nnz.entrySet()) {
+            if (entry.getValue() > partition_nnz) {
+                int slices = (int) Math.min(num_partitions, Math.ceil(entry.getValue() / partition_nnz));
+                if (slices > 1)
+                    heavy.put(entry.getKey(), slices);
+            }
+        }
+
+        return heavy;
+    }
+}
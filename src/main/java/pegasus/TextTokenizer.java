@@ -0,0 +1,164 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: TextTokenizer.java
+ - Parses the tab separated fields of a text record in place, straight from
+   the bytes of a Text. No String is created per record or per field, so the
+   mappers that read edge files and vectors do not allocate while parsing.
+   One instance per task, reset() for each record.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+import org.apache.hadoop.io.Text;
+
+public class TextTokenizer {
+    public static final byte[] V = {'v'};
+    public static final byte[] MSF = {'m', 's', 'f'};
+
+    private byte[] bytes;
+    private int length;
+    private int pos;
+
+    // sign and up to 19 digits, for format().
+    private final byte[] digits = new byte[20];
+
+    public TextTokenizer reset(Text text) {
+        return reset(text.getBytes(), text.getLength());
+    }
+
+    public TextTokenizer reset(byte[] bytes, int length) {
+        this.bytes = bytes;
+        this.length = length;
+        pos = 0;
+        return this;
+    }
+
+    // a comment line of an edge file.
+    public boolean isComment() {
+        return length > 0 && bytes[0] == '#';
+    }
+
+    // number of fields, counted like String.split("\t"): trailing empty fields are dropped,
+    // but an empty record is one empty field.
+    public int numFields() {
+        if (length == 0)
+            return 1;
+        int fields = 0, count = 0;
+        int start = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || bytes[i] == '\t') {
+                count++;
+                if (i > start)
+                    fields = count;
+                start = i + 1;
+            }
+        }
+        return fields;
+    }
+
+    public boolean hasNext() {
+        return pos < length;
+    }
+
+    // true if the current field starts with c, e.g. 'v' for a vector element.
+    public boolean startsWith(char c) {
+        return pos < length && bytes[pos] == c;
+    }
+
+    // skip a prefix of the current field, e.g. "msf".
+    public void skip(int n) {
+        pos = Math.min(pos + n, length);
+    }
+
+    public void skipField() {
+        pos = fieldEnd() + 1;
+    }
+
+    // parse the current field as a decimal long and move to the next field.
+    public long nextLong() {
+        int end = fieldEnd();
+        int i = pos;
+        boolean negative = false;
+        if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+        long result;
+        if (i == end || end - i > 18) {
+            result = Long.parseLong(field(end));      // empty, or may overflow: let parseLong decide
+            pos = end + 1;
+            return result;
+        }
+
+        result = 0;
+        for (; i < end; i++) {
+            int d = bytes[i] - '0';
+            if (d < 0 || d > 9)
+                throw new NumberFormatException("For input string: \"" + field(end) + "\"");
+            result = result * 10 + d;
+        }
+        pos = end + 1;
+        return negative ? -result : result;
+    }
+
+    public int nextInt() {
+        long result = nextLong();
+        if (result < Integer.MIN_VALUE || result > Integer.MAX_VALUE)
+            throw new NumberFormatException("Value out of range. Value:" + result);
+        return (int) result;
+    }
+
+    // real values are rare(only the real matrix of MatvecPrep), parsed by Double.parseDouble.
+    public double nextDouble() {
+        int end = fieldEnd();
+        double result = Double.parseDouble(field(end));
+        pos = end + 1;
+        return result;
+    }
+
+    // copy the rest of the record, from the current field, to out.
+    public void rest(Text out) {
+        out.set(bytes, pos, Math.max(length - pos, 0));
+    }
+
+    // out = prefix + value, e.g. "v12" or "msf12", without a String.
+    public void format(Text out, byte[] prefix, long value) {
+        int i = digits.length;
+        long v = value < 0 ? value : -value;          // negative, so Long.MIN_VALUE fits
+        do {
+            digits[--i] = (byte) ('0' - (v % 10));
+            v /= 10;
+        } while (v != 0);
+        if (value < 0)
+            digits[--i] = '-';
+
+        out.set(prefix, 0, prefix.length);
+        out.append(digits, i, digits.length - i);
+    }
+
+    private int fieldEnd() {
+        int end = pos;
+        while (end < length && bytes[end] != '\t')
+            end++;
+        return end;
+    }
+
+    private String field(int end) {
+        return new String(bytes, pos, Math.max(end - pos, 0));
+    }
+}
@@ -0,0 +1,129 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: VectorWritable.java
+ - Binary form of a vector block: (IN-BLOCK-INDEX VALUE)s plus the kind/status
+   bytes that the text format used to carry as the "msi", "moi", "msf" prefix.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+public class VectorWritable implements Writable {
+    // kind : second character of the legacy prefix
+    public static final byte SELF = 's';        // the vector block itself
+    public static final byte PARTIAL = 'o';     // partial result of a block multiplication
+
+    // status : third character of the legacy prefix
+    public static final byte INITIAL = 'c';     // initial vector
+    public static final byte INCOMPLETE = 'i';  // changed in the last iteration
+    public static final byte FINISHED = 'f';    // unchanged in the last iteration
+
+    public byte kind = SELF;
+    public byte status = INCOMPLETE;
+    public int size = 0;
+    public int[] rows;
+    public long[] vals;
+
+    public VectorWritable() {
+        this(16);
+    }
+
+    public VectorWritable(int capacity) {
+        rows = new int[capacity];
+        vals = new long[capacity];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    // append an element. elements should be added in increasing row order.
+    public void add(int row, long val) {
+        if (size == rows.length)
+            grow(size + 1);
+
+        rows[size] = row;
+        vals[size] = val;
+        size++;
+    }
+
+    public void set(VectorWritable other) {
+        kind = other.kind;
+        status = other.status;
+        size = 0;
+        if (rows.length < other.size)
+            grow(other.size);
+        System.arraycopy(other.rows, 0, rows, 0, other.size);
+        System.arraycopy(other.vals, 0, vals, 0, other.size);
+        size = other.size;
+    }
+
+    private void grow(int min_capacity) {
+        int capacity = Math.max(min_capacity, rows.length * 2);
+        rows = Arrays.copyOf(rows, capacity);
+        vals = Arrays.copyOf(vals, capacity);
+    }
+
+    // legacy text prefix. ex) msi, moi, msf
+    public String prefix() {
+        return "m" + (char) kind + (char) status;
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeByte(kind);
+        out.writeByte(status);
+        WritableUtils.writeVInt(out, size);
+        for (int i = 0; i < size; i++) {
+            WritableUtils.writeVInt(out, rows[i]);
+            WritableUtils.writeVLong(out, vals[i]);
+        }
+    }
+
+    public void readFields(DataInput in) throws IOException {
+        kind = in.readByte();
+        status = in.readByte();
+        int n = WritableUtils.readVInt(in);
+        size = 0;
+        if (rows.length < n)
+            grow(n);
+        for (int i = 0; i < n; i++) {
+            rows[i] = WritableUtils.readVInt(in);
+            vals[i] = WritableUtils.readVLong(in);
+        }
+        size = n;
+    }
+
+    // same layout as the legacy text format. ex) msi0 1 1 1
+    public String toString() {
+        StringBuilder sb = new StringBuilder(prefix());
+        for (int i = 0; i < size; i++) {
+            if (i > 0)
+                sb.append(' ');
+            sb.append(rows[i]).append(' ').append(vals[i]);
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,262 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: BlockLayoutGen.java
+ - generate variable-size block boundaries from the degrees of the nodes.
+   Consecutive node ids are packed into a block until it holds about
+   <edges per block> matrix elements, or <max block width> nodes, so that
+   dense ranges get narrow blocks and sparse ranges wide ones.
+   The output is used by MatvecPrep, ConCmptIVGen and ConCmptBlock.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus.matvec;
+
+import java.io.*;
+import java.util.*;
+
+import org.apache.hadoop.conf.*;
+import org.apache.hadoop.fs.*;
+import org.apache.hadoop.io.*;
+import org.apache.hadoop.mapred.*;
+import org.apache.hadoop.util.*;
+
+import pegasus.BlockLayout;
+import pegasus.TextTokenizer;
+
+public class BlockLayoutGen extends Configured implements Tool {
+    //////////////////////////////////////////////////////////////////////
+    // STAGE 1: count the matrix elements of each node, both ends of an edge
+    //          as MatvecPrep with makesym. The reducers get contiguous node
+    //          ranges, so the part files are in node order.
+    //  - Input: edge file, ROWID   TAB   COLID
+    //  - Output: NODEID   TAB   DEGREE
+    //////////////////////////////////////////////////////////////////////
+    public static class MapStage1 extends MapReduceBase implements Mapper<LongWritable, Text, LongWritable, LongWritable> {
+        long number_nodes;
+
+        private final TextTokenizer tokens = new TextTokenizer();
+        private final LongWritable out_key = new LongWritable();
+        private final LongWritable one = new LongWritable(1);
+
+        public void configure(JobConf job) {
+            number_nodes = Long.parseLong(job.get("number_nodes"));
+
+            System.out.println("MapStage1: number_nodes = " + number_nodes);
+        }
+
+        public void map(final LongWritable key, final Text value, final OutputCollector<LongWritable, LongWritable> output, final Reporter reporter) throws IOException {
+            tokens.reset(value);
+            if (tokens.isComment())                       // ignore comments in edge file
+                return;
+
+            if (tokens.numFields() < 2)
+                return;
+
+            long row_id = tokens.nextLong();
+            if (tokens.startsWith('v'))
+                return;
+            long col_id = tokens.nextLong();
+            if (row_id >= number_nodes || col_id >= number_nodes)
+                return;
+
+            out_key.set(row_id);
+            output.collect(out_key, one);
+            out_key.set(col_id);
+            output.collect(out_key, one);
+        }
+    }
+
+    public static class RedStage1 extends MapReduceBase implements Reducer<LongWritable, LongWritable, LongWritable, LongWritable> {
+        private final LongWritable out_value = new LongWritable();
+
+        public void reduce(final LongWritable key, final Iterator<LongWritable> values, final OutputCollector<LongWritable, LongWritable> output, final Reporter reporter) throws IOException {
+            long degree = 0;
+            while (values.hasNext())
+                degree += values.next().get();
+
+            out_value.set(degree);
+            output.collect(key, out_value);
+        }
+    }
+
+    public static class RangePartitioner<V> implements Partitioner<LongWritable, V> {
+        long number_nodes;
+
+        public void configure(JobConf job) {
+            number_nodes = Long.parseLong(job.get("number_nodes"));
+        }
+
+        public int getPartition(LongWritable key, V value, int numPartitions) {
+            return (int) ((double) key.get() / number_nodes * numPartitions);
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    // STAGE 2: cut the node range into blocks, in the driver.
+    //////////////////////////////////////////////////////////////////////
+    static class Cutter {
+        final long number_nodes;
+        final int max_width;
+        final long edges_per_block;
+
+        long[] starts = new long[1024];
+        int num_blocks = 0;
+        long next_node = 0;     // first node not placed yet
+        int width = 0;          // of the current block
+        long edges = 0;         // of the current block
+
+        Cutter(long number_nodes, int max_width, long edges_per_block) {
+            this.number_nodes = number_nodes;
+            this.max_width = max_width;
+            this.edges_per_block = edges_per_block;
+            startBlock(0);
+        }
+
+        void startBlock(long node) {
+            if (num_blocks == starts.length)
+                starts = Arrays.copyOf(starts, num_blocks * 2);
+            starts[num_blocks++] = node;
+            width = 0;
+            edges = 0;
+        }
+
+        // place the nodes up to 'node', which have no edges.
+        void skipTo(long node) {
+            while (next_node < node) {
+                long take = Math.min(node - next_node, max_width - width);
+                width += take;
+                next_node += take;
+                if (width == max_width && next_node < number_nodes)
+                    startBlock(next_node);
+            }
+        }
+
+        void add(long node, long degree) {
+            skipTo(node);
+            if (width > 0 && edges + degree > edges_per_block)
+                startBlock(node);
+
+            width++;
+            edges += degree;
+            next_node = node + 1;
+            if (width == max_width && next_node < number_nodes)
+                startBlock(next_node);
+        }
+
+        BlockLayout finish() {
+            skipTo(number_nodes);
+            long[] result = Arrays.copyOf(starts, num_blocks + 1);
+            result[num_blocks] = number_nodes;
+            return BlockLayout.variable(result);
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    // command line interface
+    //////////////////////////////////////////////////////////////////////
+    protected Path edge_path = null;
+    protected Path layout_path = null;
+    protected Path degree_path = null;
+    protected long number_nodes = 0;
+    protected int max_width = 1;
+    protected long edges_per_block = 1;
+    protected int nreducer = 1;
+
+    // Main entry point.
+    public static void main(final String[] args) throws Exception {
+        final int result = ToolRunner.run(new Configuration(), new BlockLayoutGen(), args);
+
+        System.exit(result);
+    }
+
+    // Print the command-line usage text.
+    protected static int printUsage() {
+        System.out.println("BlockLayoutGen <edge_path> <layout_path> <# of nodes> <max block width> <edges per block> <# of reducer>");
+
+        ToolRunner.printGenericCommandUsage(System.out);
+
+        return -1;
+    }
+
+    // submit the map/reduce job.
+    public int run(final String[] args) throws Exception {
+        if (args.length != 6) {
+            return printUsage();
+        }
+
+        edge_path = new Path(args[0]);
+        layout_path = new Path(args[1]);
+        degree_path = new Path(args[1] + "_degree");
+        number_nodes = Long.parseLong(args[2]);
+        max_width = Integer.parseInt(args[3]);
+        edges_per_block = Long.parseLong(args[4]);
+        nreducer = Integer.parseInt(args[5]);
+
+        System.out.println("\n-----===[PEGASUS: A Peta-Scale Graph Mining System]===-----\n");
+        System.out.println("[PEGASUS] Generating the block layout. Max block width = " + max_width + ", edges per block = " + edges_per_block + "\n");
+
+        final FileSystem fs = FileSystem.get(getConf());
+        JobClient.runJob(configStage1(fs));
+
+        // read the degrees in node order, and cut.
+        Cutter cutter = new Cutter(number_nodes, max_width, edges_per_block);
+        FileStatus[] parts = fs.globStatus(new Path(degree_path, "part-*"));
+        Arrays.sort(parts);
+        LongWritable node = new LongWritable();
+        LongWritable degree = new LongWritable();
+        for (FileStatus part : parts) {
+            SequenceFile.Reader reader = new SequenceFile.Reader(fs, part.getPath(), getConf());
+            while (reader.next(node, degree))
+                cutter.add(node.get(), degree.get());
+            reader.close();
+        }
+
+        BlockLayout layout = cutter.finish();
+        layout.write(fs, layout_path);
+        fs.delete(degree_path, true);
+
+        System.out.println("\n[PEGASUS] " + layout.numBlocks() + " blocks, max width = " + layout.maxWidth() + ".");
+        System.out.println("[PEGASUS] Block layout is saved in the HDFS " + args[1] + "\n");
+
+        return 0;
+    }
+
+    // Configure pass1
+    protected JobConf configStage1(FileSystem fs) throws Exception {
+        final JobConf conf = new JobConf(getConf(), BlockLayoutGen.class);
+        conf.set("number_nodes", "" + number_nodes);
+        conf.setJobName("data-piqid.pegasus.BlockLayoutGen_Stage1");
+
+        conf.setMapperClass(MapStage1.class);
+        conf.setCombinerClass(RedStage1.class);
+        conf.setReducerClass(RedStage1.class);
+        conf.setPartitionerClass(RangePartitioner.class);
+
+        fs.delete(degree_path, true);
+
+        FileInputFormat.setInputPaths(conf, edge_path);
+        FileOutputFormat.setOutputPath(conf, degree_path);
+        conf.setOutputFormat(SequenceFileOutputFormat.class);
+
+        conf.setNumReduceTasks(nreducer);
+
+        conf.setOutputKeyClass(LongWritable.class);
+        conf.setOutputValueClass(LongWritable.class);
+
+        return conf;
+    }
+}
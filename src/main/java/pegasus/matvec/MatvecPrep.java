@@ -32,147 +32,152 @@ import org.apache.hadoop.io.compress.SnappyCodec;
 import org.apache.hadoop.mapred.*;
 import org.apache.hadoop.util.*;
 
+import pegasus.BlockLayout;
+import pegasus.BlockWritable;
+import pegasus.MatVecWritable;
+import pegasus.TextTokenizer;
+import pegasus.VectorWritable;
+
 public class MatvecPrep extends Configured implements Tool {
     //////////////////////////////////////////////////////////////////////
-    // STAGE 1: convert vectors and edges to block format
-    //		(a) (vector)  ROWID		vVALUE    =>    BLOCKID	IN-BLOCK-INDEX VALUE
+    // STAGE 1: convert vectors and edges to block format.
+    //          The output is a SequenceFile of BLOCKID(or BLOCK-ROW) => MatVecWritable.
+    //		(a) (vector)  ROWID		vVALUE    =>    (BLOCKID, -1, IN-BLOCK-INDEX, 0)	IN-BLOCK-INDEX VALUE
     //      (b) (real matrix)  ROWID		COLID		VALUE
-    //            =>  BLOCK-ROW		BLOCK-COL		IN-BLOCK-ROW IN-BLOCK-COL VALUE
+    //            =>  (BLOCK-ROW, BLOCK-COL, IN-BLOCK-COL, IN-BLOCK-ROW)		IN-BLOCK-COL IN-BLOCK-ROW VALUE
     //      (c) (0-1 matrix)  ROWID		COLID
-    //            =>  BLOCK-ROW		BLOCK-COL		IN-BLOCK-ROW IN-BLOCK-COL VALUE
+    //            =>  (BLOCK-ROW, BLOCK-COL, IN-BLOCK-COL, IN-BLOCK-ROW)		IN-BLOCK-COL IN-BLOCK-ROW
+    //          The shuffle sorts the elements of a block by MvPrepKey, so the reducer
+    //          streams them into the output block without buffering or sorting.
     //////////////////////////////////////////////////////////////////////
-    public static class MapStage1 extends MapReduceBase implements Mapper<LongWritable, Text, Text, Text> {
+    public static class MapStage1 extends MapReduceBase implements Mapper<LongWritable, Text, MvPrepKey, MvPrepValue> {
         int block_size;
         long matrix_row;
         int makesym;
+        BlockLayout layout;
+
+        private final TextTokenizer tokens = new TextTokenizer();
+        private final MvPrepKey out_key = new MvPrepKey();
+        private final MvPrepValue out_value = new MvPrepValue();
 
         public void configure(JobConf job) {
             block_size = Integer.parseInt(job.get("block_size"));
             matrix_row = Long.parseLong(job.get("matrix_row"));
             makesym = Integer.parseInt(job.get("makesym"));
+            layout = BlockLayout.configure(job, matrix_row, block_size);
 
-            System.out.println("MapStage1: block_size = " + block_size + ", matrix_row=" + matrix_row + ", makesym = " + makesym);
+            System.out.println("MapStage1: block_size = " + block_size + ", matrix_row=" + matrix_row + ", makesym = " + makesym + ", blocks = " + layout.numBlocks());
         }
 
-        public void map(final LongWritable key, final Text value, final OutputCollector<Text, Text> output, final Reporter reporter) throws IOException {
-            String line_text = value.toString();
-            if (line_text.startsWith("#"))                // ignore comments in edge file
+        public void map(final LongWritable key, final Text value, final OutputCollector<MvPrepKey, MvPrepValue> output, final Reporter reporter) throws IOException {
+            tokens.reset(value);
+            if (tokens.isComment())                       // ignore comments in edge file
                 return;
 
-            final String[] line = line_text.split("\t");
-            if (line.length < 2)
+            int fields = tokens.numFields();
+            if (fields < 2)
                 return;
 
-            if (line[1].charAt(0) == 'v') {
+            long row_id = tokens.nextLong();
+            if (tokens.startsWith('v')) {
                 // (vector)  ROWID		vVALUE    =>    BLOCKID	IN-BLOCK-INDEX VALUE
-                long row_id = Long.parseLong(line[0]);
-                long block_id = row_id / block_size;
-                long in_block_index = row_id % block_size;
+                long block_id = layout.blockOf(row_id);
+                int in_block_index = layout.indexOf(row_id, block_id);
 
-                output.collect(new Text("" + block_id), new Text("" + in_block_index + " " + line[1].substring(1)));
+                tokens.skip(1);
+                out_key.set(block_id, -1, in_block_index, 0);
+                out_value.setVector(in_block_index, tokens.nextLong());
+                output.collect(out_key, out_value);
             } else {
-                long row_id = Long.parseLong(line[0]);
-                long col_id = Long.parseLong(line[1]);
-                long block_rowid = row_id / block_size;
-                long block_colid = col_id / block_size;
-                long in_block_row = col_id % block_size;    // trick : transpose
-                long in_block_col = row_id % block_size; // trick : transpose
-
-                if (line.length == 3) {
-                    //TODO: JEROME, this can probably be remove, we don't have any real matrix...
+                long col_id = tokens.nextLong();
+                long block_rowid = layout.blockOf(row_id);
+                long block_colid = layout.blockOf(col_id);
+                int in_block_row = layout.indexOf(row_id, block_rowid);
+                int in_block_col = layout.indexOf(col_id, block_colid);
+
+                // the elements of a block are sorted by col, then by row.
+                out_key.set(block_rowid, block_colid, in_block_col, in_block_row);
+
+                if (fields == 3) {
+                    // the normalized matrix of PagerankPrep, the input of PagerankBlock, goes through here.
                     //      (real matrix)  ROWID		COLID		VALUE
-                    //            =>  BLOCK-ROW		BLOCK-COL		IN-BLOCK-ROW IN-BLOCK-COL VALUE
-                    String elem_val;
-                    if (line[2].charAt(0) == 'v')
-                        elem_val = line[2].substring(1);
-                    else
-                        elem_val = line[2];
+                    //            =>  BLOCK-ROW		BLOCK-COL		IN-BLOCK-COL IN-BLOCK-ROW VALUE
+                    if (tokens.startsWith('v'))
+                        tokens.skip(1);
 
-                    output.collect(new Text("" + block_rowid + "\t" + block_colid), new Text("" + in_block_row + " " + in_block_col + " " + line[2]));
+                    out_value.setReal(in_block_col, in_block_row, tokens.nextDouble());
+                    output.collect(out_key, out_value);
                 } else {
                     //      (0-1 matrix)  ROWID		COLID
-                    //            =>  BLOCK-ROW		BLOCK-COL		IN-BLOCK-ROW IN-BLOCK-COL
-                    output.collect(new Text("" + block_rowid + "\t" + block_colid), new Text("" + in_block_row + " " + in_block_col));
-
-                    if (makesym == 1)    // output transposed entry
-                        output.collect(new Text("" + block_colid + "\t" + block_rowid), new Text("" + in_block_col + " " + in_block_row));
+                    //            =>  BLOCK-ROW		BLOCK-COL		IN-BLOCK-COL IN-BLOCK-ROW
+                    out_value.setBinary(in_block_col, in_block_row);
+                    output.collect(out_key, out_value);
+
+                    if (makesym == 1) {    // output transposed entry
+                        out_key.set(block_colid, block_rowid, in_block_row, in_block_col);
+                        out_value.setBinary(in_block_row, in_block_col);
+                        output.collect(out_key, out_value);
+                    }
                 }
             }
         }
 
     }
 
-
-    static class MvPrepComparator implements Comparator {
-        public int compare(Object o1, Object o2) {
-            String s1 = o1.toString();
-            String s2 = o2.toString();
-
-            int pos1 = s1.indexOf(' ');
-            int pos2 = s2.indexOf(' ');
-
-            int val1 = Integer.parseInt(s1.substring(0, pos1));
-            int val2 = Integer.parseInt(s2.substring(0, pos2));
-
-            return (val1 - val2);
-        }
-
-        public boolean equals(Object o1, Object o2) {
-            String s1 = o1.toString();
-            String s2 = o2.toString();
-
-            int pos1 = s1.indexOf(' ');
-            int pos2 = s2.indexOf(' ');
-
-            int val1 = Integer.parseInt(s1.substring(0, pos1));
-            int val2 = Integer.parseInt(s2.substring(0, pos2));
-
-            if (val1 == val2)
-                return true;
-            else
-                return false;
-        }
-    }
-
-    public static class RedStage1 extends MapReduceBase implements Reducer<Text, Text, Text, Text> {
-        String out_prefix = "";
-        MvPrepComparator mpc = new MvPrepComparator();
+    public static class RedStage1 extends MapReduceBase implements Reducer<MvPrepKey, MvPrepValue, LongWritable, MatVecWritable> {
+        private final LongWritable out_key = new LongWritable();
+        private final VectorWritable out_vector = new VectorWritable();
+        private final BlockWritable out_block = new BlockWritable();
+        private final MatVecWritable out_value = new MatVecWritable();
 
         public void configure(JobConf job) {
-            out_prefix = job.get("out_prefix");
+            String out_prefix = job.get("out_prefix");
+
+            // the prefix(ex. msc) becomes the kind and status of the output vectors.
+            if (out_prefix != null && out_prefix.length() == 3) {
+                out_vector.kind = (byte) out_prefix.charAt(1);
+                out_vector.status = (byte) out_prefix.charAt(2);
+            } else {
+                out_vector.kind = VectorWritable.SELF;
+                out_vector.status = VectorWritable.INITIAL;
+            }
 
             System.out.println("RedStage1: out_prefix = " + out_prefix);
         }
 
-        public void reduce(final Text key, final Iterator<Text> values, final OutputCollector<Text, Text> output, final Reporter reporter) throws IOException {
-            String out_value = "";
-            ArrayList<String> value_al = new ArrayList<String>();
-
-            while (values.hasNext()) {
+        // the values of a block arrive sorted by (IN-BLOCK-COL, IN-BLOCK-ROW), or by IN-BLOCK-INDEX for vectors.
+        // the key is not updated while iterating, so the indices are read from the values.
+        public void reduce(final MvPrepKey key, final Iterator<MvPrepValue> values, final OutputCollector<LongWritable, MatVecWritable> output, final Reporter reporter) throws IOException {
+            if (key.isVector()) {
                 // vector: key=BLOCKID, value= IN-BLOCK-INDEX VALUE
-                // matrix: key=BLOCK-ROW		BLOCK-COL, value=IN-BLOCK-ROW IN-BLOCK-COL VALUE
+                out_vector.clear();
+                while (values.hasNext()) {
+                    MvPrepValue cur_value = values.next();
+                    out_vector.add(cur_value.index, cur_value.long_val);
+                }
 
-                String value_text = values.next().toString();
-                value_al.add(value_text);
-            }
+                out_key.set(key.block_row);
+                out_value.set(out_vector);
+            } else {
+                // matrix: key=BLOCK-ROW		BLOCK-COL, value=IN-BLOCK-COL IN-BLOCK-ROW VALUE
+                out_block.clear();
+                out_block.block_row = key.block_row;
+                out_block.block_col = key.block_col;
 
-            Collections.sort(value_al, mpc);
+                while (values.hasNext()) {
+                    MvPrepValue cur_value = values.next();
 
-            Iterator<String> iter = value_al.iterator();
-            while (iter.hasNext()) {
-                String cur_val = iter.next();
+                    if (cur_value.type == MvPrepValue.REAL)
+                        out_block.add(cur_value.sub_index, cur_value.index, cur_value.double_val);
+                    else
+                        out_block.add(cur_value.sub_index, cur_value.index);
+                }
 
-                if (out_value.length() != 0)
-                    out_value += " ";
-                out_value += cur_val;
+                out_key.set(out_block.block_row);
+                out_value.set(out_block);
             }
 
-            value_al.clear();
-
-            if (out_prefix != null)
-                output.collect(key, new Text(out_prefix + out_value));
-            else
-                output.collect(key, new Text(out_value));
+            output.collect(out_key, out_value);
         }
     }
 
@@ -186,6 +191,7 @@ public class MatvecPrep extends Configured implements Tool {
     protected int nreducer = 1;
     protected String output_prefix;
     protected int makesym = 0;
+    protected String layout_path = null;
 
     // Main entry point.
     public static void main(final String[] args) throws Exception {
@@ -196,7 +202,7 @@ public class MatvecPrep extends Configured implements Tool {
 
     // Print the command-line usage text.
     protected static int printUsage() {
-        System.out.println("MatvecPrep <edge_path> <outputedge_path> <# of row> <block width> <# of reducer> <out_prefix or null> <makesym or nosym>");
+        System.out.println("MatvecPrep <edge_path> <outputedge_path> <# of row> <block width> <# of reducer> <out_prefix or null> <makesym or nosym> [<block layout path>]");
 
         ToolRunner.printGenericCommandUsage(System.out);
 
@@ -205,7 +211,7 @@ public class MatvecPrep extends Configured implements Tool {
 
     // submit the map/reduce job.
     public int run(final String[] args) throws Exception {
-        if (args.length != 7) {
+        if (args.length != 7 && args.length != 8) {
             return printUsage();
         }
 
@@ -225,6 +231,10 @@ public class MatvecPrep extends Configured implements Tool {
         else
             makesym = 0;
 
+        // variable-size blocks: the block width is ignored, the layout gives the blocks.
+        if (args.length == 8)
+            layout_path = args[7];
+
         System.out.println("\n-----===[PEGASUS: A Peta-Scale Graph Mining System]===-----\n");
         System.out.println("[PEGASUS] Converting the adjacency matrix to block format. Output_prefix = " + output_prefix + ", makesym = " + makesym + ", block width=" + block_size + "\n");
 
@@ -245,6 +255,8 @@ public class MatvecPrep extends Configured implements Tool {
         conf.set("matrix_row", "" + number_nodes);
         conf.set("out_prefix", "" + out_prefix);
         conf.set("makesym", "" + makesym);
+        if (layout_path != null)
+            conf.set("block_layout", layout_path);
         conf.setJobName("data-piqid.pegasus.MatvecPrep_Stage1");
 
         conf.setMapperClass(MapStage1.class);
@@ -255,16 +267,22 @@ public class MatvecPrep extends Configured implements Tool {
 
         FileInputFormat.setInputPaths(conf, edge_path);
         FileOutputFormat.setOutputPath(conf, output_path);
+        conf.setOutputFormat(SequenceFileOutputFormat.class);
         FileOutputFormat.setCompressOutput(conf, true);
         FileOutputFormat.setOutputCompressorClass(conf, SnappyCodec.class);
+        SequenceFileOutputFormat.setOutputCompressionType(conf, SequenceFile.CompressionType.BLOCK);
 
         int num_reduce_tasks = nreducer;
 
         conf.setNumReduceTasks(num_reduce_tasks);
 
-        conf.setOutputKeyClass(Text.class);
-        conf.setOutputValueClass(Text.class);
-        conf.setMapOutputValueClass(Text.class);
+        conf.setMapOutputKeyClass(MvPrepKey.class);
+        conf.setMapOutputValueClass(MvPrepValue.class);
+        conf.setPartitionerClass(MvPrepKey.BlockPartitioner.class);
+        conf.setOutputKeyComparatorClass(MvPrepKey.Comparator.class);
+        conf.setOutputValueGroupingComparator(MvPrepKey.BlockGroupingComparator.class);
+        conf.setOutputKeyClass(LongWritable.class);
+        conf.setOutputValueClass(MatVecWritable.class);
 
         return conf;
     }
@@ -0,0 +1,162 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: MvPrepKey.java
+ - Composite map output key of MatvecPrep: (BLOCK-ROW, BLOCK-COL, index, sub_index).
+   Partitioned and grouped by block, sorted by the in-block indices, so that
+   the reducer receives the elements of a block already in block order.
+   block_col is -1 for vectors.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus.matvec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.Partitioner;
+
+public class MvPrepKey implements WritableComparable<MvPrepKey> {
+    public long block_row;
+    public long block_col;
+    public int index;        // in-block col of a matrix element, in-block index of a vector element
+    public int sub_index;    // in-block row of a matrix element, 0 for a vector element
+
+    public void set(long block_row, long block_col, int index, int sub_index) {
+        this.block_row = block_row;
+        this.block_col = block_col;
+        this.index = index;
+        this.sub_index = sub_index;
+    }
+
+    public boolean isVector() {
+        return block_col < 0;
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeLong(block_row);
+        out.writeLong(block_col);
+        out.writeInt(index);
+        out.writeInt(sub_index);
+    }
+
+    public void readFields(DataInput in) throws IOException {
+        block_row = in.readLong();
+        block_col = in.readLong();
+        index = in.readInt();
+        sub_index = in.readInt();
+    }
+
+    public int compareTo(MvPrepKey o) {
+        int cmp = compareBlock(block_row, block_col, o.block_row, o.block_col);
+        if (cmp != 0)
+            return cmp;
+        if (index != o.index)
+            return index < o.index ? -1 : 1;
+        if (sub_index != o.sub_index)
+            return sub_index < o.sub_index ? -1 : 1;
+        return 0;
+    }
+
+    static int compareBlock(long row1, long col1, long row2, long col2) {
+        if (row1 != row2)
+            return row1 < row2 ? -1 : 1;
+        if (col1 != col2)
+            return col1 < col2 ? -1 : 1;
+        return 0;
+    }
+
+    public boolean equals(Object o) {
+        if (!(o instanceof MvPrepKey))
+            return false;
+
+        return compareTo((MvPrepKey) o) == 0;
+    }
+
+    public int hashCode() {
+        return (blockHash() * 31 + index) * 31 + sub_index;
+    }
+
+    int blockHash() {
+        long h = block_row * 31 + block_col;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    public String toString() {
+        return block_row + "\t" + block_col + "\t" + index + " " + sub_index;
+    }
+
+    // sort by (block_row, block_col, index, sub_index) on the serialized bytes.
+    public static class Comparator extends WritableComparator {
+        public Comparator() {
+            super(MvPrepKey.class);
+        }
+
+        public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            int cmp = compareBlock(readLong(b1, s1), readLong(b1, s1 + 8), readLong(b2, s2), readLong(b2, s2 + 8));
+            if (cmp != 0)
+                return cmp;
+
+            int i1 = readInt(b1, s1 + 16);
+            int i2 = readInt(b2, s2 + 16);
+            if (i1 != i2)
+                return i1 < i2 ? -1 : 1;
+
+            i1 = readInt(b1, s1 + 20);
+            i2 = readInt(b2, s2 + 20);
+            if (i1 != i2)
+                return i1 < i2 ? -1 : 1;
+            return 0;
+        }
+    }
+
+    static {
+        WritableComparator.define(MvPrepKey.class, new Comparator());
+    }
+
+    // group by block only.
+    public static class BlockGroupingComparator extends WritableComparator {
+        public BlockGroupingComparator() {
+            super(MvPrepKey.class);
+        }
+
+        public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            return compareBlock(readLong(b1, s1), readLong(b1, s1 + 8), readLong(b2, s2), readLong(b2, s2 + 8));
+        }
+
+        // the reduce side groups the deserialized keys.
+        @SuppressWarnings("rawtypes")
+        public int compare(WritableComparable a, WritableComparable b) {
+            MvPrepKey k1 = (MvPrepKey) a;
+            MvPrepKey k2 = (MvPrepKey) b;
+            return compareBlock(k1.block_row, k1.block_col, k2.block_row, k2.block_col);
+        }
+    }
+
+    // partition by block only.
+    public static class BlockPartitioner<V> implements Partitioner<MvPrepKey, V> {
+        public void configure(JobConf job) {
+        }
+
+        public int getPartition(MvPrepKey key, V value, int numPartitions) {
+            return (key.blockHash() & Integer.MAX_VALUE) % numPartitions;
+        }
+    }
+}
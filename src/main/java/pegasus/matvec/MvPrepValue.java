@@ -0,0 +1,94 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: MvPrepValue.java
+ - Map output value of MatvecPrep: one vector or matrix element.
+   The old API reducer does not update its key while iterating over a group,
+   so the in-block indices travel in the value as well as in the MvPrepKey.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus.matvec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+public class MvPrepValue implements Writable {
+    public static final byte VECTOR = 0;    // index, long_val
+    public static final byte BINARY = 1;    // index(col), sub_index(row)
+    public static final byte REAL = 2;      // index(col), sub_index(row), double_val
+
+    public byte type;
+    public int index;
+    public int sub_index;
+    public long long_val;
+    public double double_val;
+
+    public void setVector(int index, long val) {
+        this.type = VECTOR;
+        this.index = index;
+        this.long_val = val;
+    }
+
+    public void setBinary(int col, int row) {
+        this.type = BINARY;
+        this.index = col;
+        this.sub_index = row;
+    }
+
+    public void setReal(int col, int row, double val) {
+        this.type = REAL;
+        this.index = col;
+        this.sub_index = row;
+        this.double_val = val;
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeByte(type);
+        WritableUtils.writeVInt(out, index);
+        if (type == VECTOR) {
+            WritableUtils.writeVLong(out, long_val);
+        } else {
+            WritableUtils.writeVInt(out, sub_index);
+            if (type == REAL)
+                out.writeDouble(double_val);
+        }
+    }
+
+    public void readFields(DataInput in) throws IOException {
+        type = in.readByte();
+        index = WritableUtils.readVInt(in);
+        if (type == VECTOR) {
+            long_val = WritableUtils.readVLong(in);
+        } else {
+            sub_index = WritableUtils.readVInt(in);
+            if (type == REAL)
+                double_val = in.readDouble();
+        }
+    }
+
+    public String toString() {
+        if (type == VECTOR)
+            return index + " " + long_val;
+        if (type == REAL)
+            return index + " " + sub_index + " " + double_val;
+        return index + " " + sub_index;
+    }
+}
@@ -0,0 +1,513 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: NodeRelabel.java
+ - renumber the nodes by decreasing degree before MatvecPrep, so that the
+   high degree nodes, which hold most of the edges, share the first blocks.
+   Writes the relabeled edge file, and the id maps:
+       <map_path>/forward : old_id => new_id
+       <map_path>/reverse : new_id => old_id
+   ConCmptRestoreIds translates the result back to the old ids.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus.matvec;
+
+import java.io.*;
+import java.util.*;
+
+import org.apache.hadoop.conf.*;
+import org.apache.hadoop.fs.*;
+import org.apache.hadoop.io.*;
+import org.apache.hadoop.io.compress.SnappyCodec;
+import org.apache.hadoop.mapred.*;
+import org.apache.hadoop.mapred.lib.MultipleInputs;
+import org.apache.hadoop.mapred.lib.MultipleOutputs;
+import org.apache.hadoop.mapred.lib.NLineInputFormat;
+import org.apache.hadoop.util.*;
+
+import pegasus.LongPairWritable;
+import pegasus.TextTokenizer;
+
+public class NodeRelabel extends Configured implements Tool {
+    //////////////////////////////////////////////////////////////////////
+    // STAGE 1: degree of every node in [0, number_nodes), counting both ends
+    //          of an edge as MatvecPrep with makesym, and the degree histogram
+    //          of every reducer.
+    //  - Input: edge file, node range commands (start, end)
+    //  - Output: NODEID   TAB   DEGREE in part-NNNNN,
+    //            DEGREE   TAB   COUNT in hist-r-NNNNN
+    //////////////////////////////////////////////////////////////////////
+    public static class MapStage1Edge extends MapReduceBase implements Mapper<LongWritable, Text, LongWritable, LongWritable> {
+        long number_nodes;
+
+        private final TextTokenizer tokens = new TextTokenizer();
+        private final long[] edge = new long[2];
+        private final LongWritable out_key = new LongWritable();
+        private final LongWritable one = new LongWritable(1);
+
+        public void configure(JobConf job) {
+            number_nodes = Long.parseLong(job.get("number_nodes"));
+        }
+
+        public void map(final LongWritable key, final Text value, final OutputCollector<LongWritable, LongWritable> output, final Reporter reporter) throws IOException {
+            if (!parseEdge(value, tokens, number_nodes, edge))
+                return;
+
+            out_key.set(edge[0]);
+            output.collect(out_key, one);
+            out_key.set(edge[1]);
+            output.collect(out_key, one);
+        }
+    }
+
+    public static class MapStage1Range extends MapReduceBase implements Mapper<LongWritable, Text, LongWritable, LongWritable> {
+        private final TextTokenizer tokens = new TextTokenizer();
+        private final LongWritable out_key = new LongWritable();
+        private final LongWritable zero = new LongWritable(0);
+
+        // input : start_node   TAB   end_node, one line per map task.
+        public void map(final LongWritable key, final Text value, final OutputCollector<LongWritable, LongWritable> output, final Reporter reporter) throws IOException {
+            tokens.reset(value);
+            long start_node = tokens.nextLong();
+            long end_node = tokens.nextLong();
+
+            for (long i = start_node; i <= end_node; i++) {
+                out_key.set(i);
+                output.collect(out_key, zero);
+                if ((i & 0xfffff) == 0)
+                    reporter.progress();
+            }
+        }
+    }
+
+    public static class CombStage1 extends MapReduceBase implements Reducer<LongWritable, LongWritable, LongWritable, LongWritable> {
+        private final LongWritable out_value = new LongWritable();
+
+        public void reduce(final LongWritable key, final Iterator<LongWritable> values, final OutputCollector<LongWritable, LongWritable> output, final Reporter reporter) throws IOException {
+            long degree = 0;
+            while (values.hasNext())
+                degree += values.next().get();
+
+            out_value.set(degree);
+            output.collect(key, out_value);
+        }
+    }
+
+    public static class RedStage1 extends MapReduceBase implements Reducer<LongWritable, LongWritable, LongWritable, LongWritable> {
+        private final LongWritable out_value = new LongWritable();
+        private final Map<Long, Long> histogram = new HashMap<Long, Long>();
+        private MultipleOutputs mos;
+        private Reporter reporter;
+
+        public void configure(JobConf job) {
+            mos = new MultipleOutputs(job);
+        }
+
+        public void reduce(final LongWritable key, final Iterator<LongWritable> values, final OutputCollector<LongWritable, LongWritable> output, final Reporter reporter) throws IOException {
+            long degree = 0;
+            while (values.hasNext())
+                degree += values.next().get();
+
+            Long count = histogram.get(degree);
+            histogram.put(degree, count == null ? 1 : count + 1);
+
+            out_value.set(degree);
+            output.collect(key, out_value);
+            this.reporter = reporter;
+        }
+
+        @SuppressWarnings("unchecked")
+        public void close() throws IOException {
+            if (reporter != null) {
+                OutputCollector<LongWritable, LongWritable> hist_output = mos.getCollector("hist", reporter);
+                LongWritable hist_key = new LongWritable();
+                for (Map.Entry<Long, Long> entry : histogram.entrySet()) {
+                    hist_key.set(entry.getKey());
+                    out_value.set(entry.getValue());
+                    hist_output.collect(hist_key, out_value);
+                }
+            }
+            mos.close();
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    // STAGE 2: number the nodes. Map-only, one map task per part file of STAGE 1.
+    //          The nodes of degree d in part p get the ids from offset(p, d) on,
+    //          computed by the driver from the histograms.
+    //  - Input: NODEID   TAB   DEGREE
+    //  - Output: OLD-ID   TAB   NEW-ID in part-NNNNN,
+    //            NEW-ID   TAB   OLD-ID in reverse-m-NNNNN
+    //////////////////////////////////////////////////////////////////////
+    public static class MapStage2 extends MapReduceBase implements Mapper<LongWritable, LongWritable, LongWritable, LongWritable> {
+        private final Map<Long, Long> next_id = new HashMap<Long, Long>();    // by degree
+        private final LongWritable new_id = new LongWritable();
+        private MultipleOutputs mos;
+
+        public void configure(JobConf job) {
+            mos = new MultipleOutputs(job);
+
+            // offsets of the part file of this task
+            String part_name = new Path(job.get("map.input.file")).getName();
+            Path offset_path = new Path(job.get("offset_path"), part_name);
+            try {
+                FileSystem fs = offset_path.getFileSystem(job);
+                BufferedReader in = new BufferedReader(new InputStreamReader(fs.open(offset_path), "UTF-8"));
+                String line;
+                while ((line = in.readLine()) != null) {
+                    final String[] tokens = line.split("\t");
+                    next_id.put(Long.parseLong(tokens[0]), Long.parseLong(tokens[1]));
+                }
+                in.close();
+            } catch (IOException e) {
+                throw new RuntimeException("MapStage2: failed to read " + offset_path, e);
+            }
+
+            System.out.println("MapStage2: " + part_name + ", " + next_id.size() + " degrees");
+        }
+
+        @SuppressWarnings("unchecked")
+        public void map(final LongWritable key, final LongWritable value, final OutputCollector<LongWritable, LongWritable> output, final Reporter reporter) throws IOException {
+            long id = next_id.get(value.get());
+            next_id.put(value.get(), id + 1);
+
+            new_id.set(id);
+            output.collect(key, new_id);
+            mos.getCollector("reverse", reporter).collect(new_id, key);
+        }
+
+        public void close() throws IOException {
+            mos.close();
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    // STAGE 3: relabel the edges, one end per pass. The id map of a node
+    //          sorts before its edges, so nothing is buffered.
+    //  - Input: forward map, and the edges keyed by the end to relabel
+    //  - Output: OTHER-END   TAB   NEW-ID, then NEW-SRC   TAB   NEW-DST as text
+    //////////////////////////////////////////////////////////////////////
+    public static class MapStage3Map extends MapReduceBase implements Mapper<LongWritable, LongWritable, LongPairWritable, LongPairWritable> {
+        private final LongPairWritable out_key = new LongPairWritable();
+        private final LongPairWritable out_value = new LongPairWritable();
+
+        public void map(final LongWritable key, final LongWritable value, final OutputCollector<LongPairWritable, LongPairWritable> output, final Reporter reporter) throws IOException {
+            out_key.set(key.get(), 0);
+            out_value.set(0, value.get());
+            output.collect(out_key, out_value);
+        }
+    }
+
+    // pass 1: edges in the edge file, keyed by the source.
+    public static class MapStage3Edge extends MapReduceBase implements Mapper<LongWritable, Text, LongPairWritable, LongPairWritable> {
+        long number_nodes;
+
+        private final TextTokenizer tokens = new TextTokenizer();
+        private final long[] edge = new long[2];
+        private final LongPairWritable out_key = new LongPairWritable();
+        private final LongPairWritable out_value = new LongPairWritable();
+
+        public void configure(JobConf job) {
+            number_nodes = Long.parseLong(job.get("number_nodes"));
+        }
+
+        public void map(final LongWritable key, final Text value, final OutputCollector<LongPairWritable, LongPairWritable> output, final Reporter reporter) throws IOException {
+            if (!parseEdge(value, tokens, number_nodes, edge))
+                return;
+
+            out_key.set(edge[0], 1);
+            out_value.set(1, edge[1]);
+            output.collect(out_key, out_value);
+        }
+    }
+
+    // pass 2: (DST, NEW-SRC) from pass 1, keyed by the destination.
+    public static class MapStage3Half extends MapReduceBase implements Mapper<LongWritable, LongWritable, LongPairWritable, LongPairWritable> {
+        private final LongPairWritable out_key = new LongPairWritable();
+        private final LongPairWritable out_value = new LongPairWritable();
+
+        public void map(final LongWritable key, final LongWritable value, final OutputCollector<LongPairWritable, LongPairWritable> output, final Reporter reporter) throws IOException {
+            out_key.set(key.get(), 1);
+            out_value.set(1, value.get());
+            output.collect(out_key, out_value);
+        }
+    }
+
+    // values: (0, NEW-ID) first, then (1, OTHER-END) for every edge.
+    // the output is (OTHER-END, NEW-ID) in both passes: (DST, NEW-SRC), then (NEW-SRC, NEW-DST).
+    public static class RedStage3 extends MapReduceBase implements Reducer<LongPairWritable, LongPairWritable, LongWritable, LongWritable> {
+        private final LongWritable out_key = new LongWritable();
+        private final LongWritable out_value = new LongWritable();
+
+        public void reduce(final LongPairWritable key, final Iterator<LongPairWritable> values, final OutputCollector<LongWritable, LongWritable> output, final Reporter reporter) throws IOException {
+            LongPairWritable first = values.next();
+            if (first.first != 0)
+                return;    // not a node. skipped by parseEdge.
+            long new_id = first.second;
+
+            out_value.set(new_id);
+            while (values.hasNext()) {
+                out_key.set(values.next().second);
+                output.collect(out_key, out_value);
+            }
+        }
+    }
+
+    // edge line "ROWID   TAB   COLID" with both ends in [0, number_nodes), into edge.
+    // returns false for comments, vector elements and out of range nodes.
+    static boolean parseEdge(Text value, TextTokenizer tokens, long number_nodes, long[] edge) {
+        tokens.reset(value);
+        if (tokens.isComment())                           // ignore comments in edge file
+            return false;
+
+        if (tokens.numFields() < 2)
+            return false;
+
+        edge[0] = tokens.nextLong();
+        if (tokens.startsWith('v'))
+            return false;
+        edge[1] = tokens.nextLong();
+        return edge[0] < number_nodes && edge[1] < number_nodes;
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    // command line interface
+    //////////////////////////////////////////////////////////////////////
+    protected Path edge_path = null;
+    protected Path output_path = null;
+    protected Path map_path = null;
+    protected Path range_path = null;
+    protected Path degree_path = null;
+    protected Path offset_path = null;
+    protected Path half_path = null;
+    protected long number_nodes = 0;
+    protected int nreducer = 1;
+
+    // Main entry point.
+    public static void main(final String[] args) throws Exception {
+        final int result = ToolRunner.run(new Configuration(), new NodeRelabel(), args);
+
+        System.exit(result);
+    }
+
+    // Print the command-line usage text.
+    protected static int printUsage() {
+        System.out.println("NodeRelabel <edge_path> <relabeled_edge_path> <map_path> <# of nodes> <# of reducer>");
+
+        ToolRunner.printGenericCommandUsage(System.out);
+
+        return -1;
+    }
+
+    // submit the map/reduce job.
+    public int run(final String[] args) throws Exception {
+        if (args.length != 5) {
+            return printUsage();
+        }
+
+        edge_path = new Path(args[0]);
+        output_path = new Path(args[1]);
+        map_path = new Path(args[2]);
+        range_path = new Path(args[2] + "_range");
+        degree_path = new Path(args[2] + "_degree");
+        offset_path = new Path(args[2] + "_offset");
+        half_path = new Path(args[1] + "_half");
+        number_nodes = Long.parseLong(args[3]);
+        nreducer = Integer.parseInt(args[4]);
+
+        System.out.println("\n-----===[PEGASUS: A Peta-Scale Graph Mining System]===-----\n");
+        System.out.println("[PEGASUS] Relabeling the nodes by decreasing degree. Number of nodes = " + number_nodes + "\n");
+
+        final FileSystem fs = FileSystem.get(getConf());
+        fs.delete(map_path, true);
+        fs.delete(output_path, true);
+
+        writeRanges(fs);
+        JobClient.runJob(configStage1());
+        writeOffsets(fs);
+        JobClient.runJob(configStage2());
+
+        // STAGE 2 writes both maps in <map_path>/forward. move the reverse map.
+        Path reverse_path = new Path(map_path, "reverse");
+        fs.mkdirs(reverse_path);
+        for (FileStatus file : fs.globStatus(new Path(map_path, "forward/reverse-*")))
+            fs.rename(file.getPath(), new Path(reverse_path, file.getPath().getName()));
+
+        JobClient.runJob(configStage3(edge_path, half_path, 1));
+        JobClient.runJob(configStage3(half_path, output_path, 2));
+
+        fs.delete(range_path, true);
+        fs.delete(degree_path, true);
+        fs.delete(offset_path, true);
+        fs.delete(half_path, true);
+
+        System.out.println("\n[PEGASUS] Relabeling finished.");
+        System.out.println("[PEGASUS] Relabeled edges are saved in the HDFS " + args[1] + ", id maps in " + args[2] + "\n");
+
+        return 0;
+    }
+
+    // node range commands for STAGE 1, one per reducer.
+    protected void writeRanges(FileSystem fs) throws IOException {
+        BufferedWriter out = new BufferedWriter(new OutputStreamWriter(fs.create(new Path(range_path, "ranges"), true), "UTF-8"));
+        long step = number_nodes / nreducer;
+        for (int i = 0; i < nreducer; i++) {
+            long start_node = i * step;
+            long end_node = (i < nreducer - 1) ? step * (i + 1) - 1 : number_nodes - 1;
+            if (start_node <= end_node)
+                out.write(start_node + "\t" + end_node + "\n");
+        }
+        out.close();
+    }
+
+    // first new id of every (part file, degree): the nodes of higher degree,
+    // then the nodes of the same degree in the earlier part files.
+    protected void writeOffsets(FileSystem fs) throws IOException {
+        FileStatus[] part_files = fs.globStatus(new Path(degree_path, "part-*"));
+        Arrays.sort(part_files);
+
+        // an empty reducer writes no histogram.
+        List<Map<Long, Long>> histograms = new ArrayList<Map<Long, Long>>();
+        TreeMap<Long, Long> total = new TreeMap<Long, Long>(Collections.reverseOrder());
+        LongWritable degree = new LongWritable();
+        LongWritable count = new LongWritable();
+        for (FileStatus file : part_files) {
+            Map<Long, Long> histogram = new HashMap<Long, Long>();
+            Path hist_path = new Path(degree_path, "hist-r-" + file.getPath().getName().substring("part-".length()));
+            if (fs.exists(hist_path)) {
+                SequenceFile.Reader reader = new SequenceFile.Reader(fs, hist_path, getConf());
+                while (reader.next(degree, count)) {
+                    histogram.put(degree.get(), count.get());
+                    Long sum = total.get(degree.get());
+                    total.put(degree.get(), (sum == null ? 0 : sum) + count.get());
+                }
+                reader.close();
+            }
+            histograms.add(histogram);
+        }
+
+        // decreasing degree
+        Map<Long, Long> next = new HashMap<Long, Long>();
+        long id = 0;
+        for (Map.Entry<Long, Long> entry : total.entrySet()) {
+            next.put(entry.getKey(), id);
+            id += entry.getValue();
+        }
+
+        fs.delete(offset_path, true);
+        for (int p = 0; p < part_files.length; p++) {
+            String part_name = part_files[p].getPath().getName();
+            BufferedWriter out = new BufferedWriter(new OutputStreamWriter(fs.create(new Path(offset_path, part_name), true), "UTF-8"));
+            for (Map.Entry<Long, Long> entry : histograms.get(p).entrySet()) {
+                long start = next.get(entry.getKey());
+                out.write(entry.getKey() + "\t" + start + "\n");
+                next.put(entry.getKey(), start + entry.getValue());
+            }
+            out.close();
+        }
+
+        System.out.println("Numbering " + id + " nodes, " + total.size() + " distinct degrees, max degree = " + (total.isEmpty() ? 0 : total.firstKey()));
+    }
+
+    // Configure pass1
+    protected JobConf configStage1() throws Exception {
+        final JobConf conf = new JobConf(getConf(), NodeRelabel.class);
+        conf.set("number_nodes", "" + number_nodes);
+        conf.setJobName("data-piqid.pegasus.NodeRelabel_Stage1");
+
+        MultipleInputs.addInputPath(conf, edge_path, TextInputFormat.class, MapStage1Edge.class);
+        // the ranges file is tiny, but every range expands to millions of nodes: one map task per range.
+        MultipleInputs.addInputPath(conf, range_path, NLineInputFormat.class, MapStage1Range.class);
+        conf.setInt("mapred.line.input.format.linespermap", 1);
+        conf.setCombinerClass(CombStage1.class);
+        conf.setReducerClass(RedStage1.class);
+
+        FileSystem.get(getConf()).delete(degree_path, true);
+        FileOutputFormat.setOutputPath(conf, degree_path);
+        conf.setOutputFormat(SequenceFileOutputFormat.class);
+        MultipleOutputs.addNamedOutput(conf, "hist", SequenceFileOutputFormat.class, LongWritable.class, LongWritable.class);
+
+        conf.setNumReduceTasks(nreducer);
+
+        conf.setOutputKeyClass(LongWritable.class);
+        conf.setOutputValueClass(LongWritable.class);
+
+        return conf;
+    }
+
+    // Configure pass2
+    protected JobConf configStage2() throws Exception {
+        final JobConf conf = new JobConf(getConf(), NodeRelabel.class);
+        conf.set("offset_path", offset_path.toString());
+        conf.setJobName("data-piqid.pegasus.NodeRelabel_Stage2");
+
+        conf.setMapperClass(MapStage2.class);
+
+        conf.setInputFormat(SequenceFileInputFormat.class);
+        conf.setLong("mapred.min.split.size", Long.MAX_VALUE);    // one map task per part file
+        FileInputFormat.setInputPaths(conf, new Path(degree_path, "part-*"));
+        setMapOutput(conf, new Path(map_path, "forward"));
+        MultipleOutputs.addNamedOutput(conf, "reverse", SequenceFileOutputFormat.class, LongWritable.class, LongWritable.class);
+
+        conf.setNumReduceTasks(0);        //This is essential for map-only tasks.
+
+        conf.setOutputKeyClass(LongWritable.class);
+        conf.setOutputValueClass(LongWritable.class);
+
+        return conf;
+    }
+
+    // Configure pass3
+    protected JobConf configStage3(Path in_path, Path out_path, int pass) throws Exception {
+        final JobConf conf = new JobConf(getConf(), NodeRelabel.class);
+        conf.set("number_nodes", "" + number_nodes);
+        conf.setJobName("data-piqid.pegasus.NodeRelabel_Stage3_" + pass);
+
+        MultipleInputs.addInputPath(conf, new Path(map_path, "forward"), SequenceFileInputFormat.class, MapStage3Map.class);
+        if (pass == 1)
+            MultipleInputs.addInputPath(conf, in_path, TextInputFormat.class, MapStage3Edge.class);
+        else
+            MultipleInputs.addInputPath(conf, in_path, SequenceFileInputFormat.class, MapStage3Half.class);
+        conf.setReducerClass(RedStage3.class);
+
+        if (pass == 1) {
+            setMapOutput(conf, out_path);
+        } else {
+            FileOutputFormat.setOutputPath(conf, out_path);
+            FileOutputFormat.setCompressOutput(conf, true);
+            FileOutputFormat.setOutputCompressorClass(conf, SnappyCodec.class);
+        }
+
+        conf.setNumReduceTasks(nreducer);
+
+        LongPairWritable.setSecondarySort(conf);
+        conf.setMapOutputValueClass(LongPairWritable.class);
+        conf.setOutputKeyClass(LongWritable.class);
+        conf.setOutputValueClass(LongWritable.class);
+
+        return conf;
+    }
+
+    // Write pairs as a block-compressed SequenceFile.
+    protected static void setMapOutput(JobConf conf, Path path) {
+        conf.setOutputFormat(SequenceFileOutputFormat.class);
+        FileOutputFormat.setOutputPath(conf, path);
+        FileOutputFormat.setCompressOutput(conf, true);
+        FileOutputFormat.setOutputCompressorClass(conf, SnappyCodec.class);
+        SequenceFileOutputFormat.setOutputCompressionType(conf, SequenceFile.CompressionType.BLOCK);
+    }
+}
@@ -0,0 +1,127 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: BitsetBlockTest.java
+ - The bitset kernel against the decoded kernel, for BITMAP and decoded
+   blocks.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BitsetBlockTest {
+
+    static DenseLongVector reference(BlockWritable block, DenseLongVector vector) {
+        DenseLongVector expected = new DenseLongVector(vector.width);
+        expected.copyFrom(vector);
+        block.decode();
+        GIMV.minBlockVector(block.rows, block.cols, 0, block.nnz, vector, expected);
+        return expected;
+    }
+
+    @Test
+    public void testIsDense() throws IOException {
+        Random rand = new Random(3);
+        assertTrue(BitsetBlock.isDense(BlockWritableTest.randomBlock(rand, 64, 0.5)));
+        assertTrue(BitsetBlock.isDense(BlockWritableTest.roundTrip(BlockWritableTest.randomBlock(rand, 64, 0.5))));
+        assertFalse(BitsetBlock.isDense(new BlockWritable()));
+
+        BlockWritable sparse = BlockWritableTest.sortedBlock(new int[][] { {0, 0}, {255, 255} });
+        assertFalse(BitsetBlock.isDense(sparse));
+        assertFalse(BitsetBlock.isDense(BlockWritableTest.roundTrip(sparse)));
+    }
+
+    // the scratch is reused across blocks of different shapes, loaded from either form.
+    @Test
+    public void testKernel() throws IOException {
+        Random rand = new Random(5);
+        BitsetBlock dense = new BitsetBlock();
+        int[] widths = { 1, 63, 64, 65, 130 };
+        for (int t = 0; t < 50; t++) {
+            int width = widths[t % widths.length];
+            BlockWritable block = BlockWritableTest.randomBlock(rand, width, 0.2 + rand.nextDouble() * 0.6);
+            if (block.nnz == 0)
+                continue;
+            DenseLongVector vector = BlockWritableTest.randomVector(rand, width);
+            DenseLongVector expected = reference(block, vector);
+
+            DenseLongVector out = new DenseLongVector(width);
+            BlockWritable encoded = BlockWritableTest.roundTrip(block);
+            if (encoded.encoding == BlockWritable.BITMAP) {
+                out.copyFrom(vector);
+                dense.vectorChanged();
+                GIMV.minBlockVector(encoded, vector, out, dense);
+                BlockWritableTest.assertSameVector(expected, out);
+            }
+
+            dense.load(block);
+            dense.vectorChanged();
+            out.copyFrom(vector);
+            GIMV.minBitsetBlockVector(dense, vector, out);
+            BlockWritableTest.assertSameVector(expected, out);
+        }
+    }
+
+    // values of 2^32 and more are ordered by the comparator instead of the packed keys.
+    @Test
+    public void testLargeValues() {
+        BlockWritable block = new BlockWritable();
+        for (int c = 0; c < 8; c++)
+            for (int r = 0; r < 8; r++)
+                if ((r + c) % 3 != 0)
+                    block.add(r, c);
+        DenseLongVector vector = new DenseLongVector(8);
+        vector.set(0, 1L << 40);
+        vector.set(1, 1L << 33);
+        vector.set(2, Long.MAX_VALUE);
+        vector.set(5, 3);
+
+        BitsetBlock dense = new BitsetBlock();
+        dense.load(block);
+        DenseLongVector out = new DenseLongVector(8);
+        out.copyFrom(vector);
+        GIMV.minBitsetBlockVector(dense, vector, out);
+        BlockWritableTest.assertSameVector(reference(block, vector), out);
+    }
+
+    @Test
+    public void testRecursive() throws IOException {
+        Random rand = new Random(7);
+        BitsetBlock dense = new BitsetBlock();
+        for (int t = 0; t < 20; t++) {
+            int width = 40 + rand.nextInt(100);
+            BlockWritable block = BlockWritableTest.randomBlock(rand, width, 0.02 + rand.nextDouble() * 0.2);
+            if (block.nnz == 0)
+                continue;
+            DenseLongVector vector = BlockWritableTest.randomVector(rand, width);
+
+            DenseLongVector expected = GIMV.minBlockVectorRecursive(block.rows, block.cols, 0, block.nnz, vector,
+                    new DenseLongVector(width), new DenseLongVector(width), width);
+            DenseLongVector actual = GIMV.minBlockVectorRecursive(BlockWritableTest.roundTrip(block), vector,
+                    new DenseLongVector(width), new DenseLongVector(width), width, dense);
+            BlockWritableTest.assertSameVector(expected, actual);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: BlockWritableTest.java
+ - Round trips of the block encodings, and the encoded kernels against
+   the decoded one.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BlockWritableTest {
+
+    static BlockWritable roundTrip(BlockWritable block) throws IOException {
+        DataOutputBuffer out = new DataOutputBuffer();
+        block.write(out);
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(out.getData(), out.getLength());
+        BlockWritable copy = new BlockWritable();
+        copy.readFields(in);
+        return copy;
+    }
+
+    // the elements as sorted (col, row) pairs.
+    static TreeSet<Long> elements(BlockWritable block) {
+        block.decode();
+        TreeSet<Long> set = new TreeSet<Long>();
+        for (int i = 0; i < block.nnz; i++)
+            set.add(((long) block.cols[i] << 32) | block.rows[i]);
+        return set;
+    }
+
+    // a block with the given (row, col) pairs, sorted by (col, row) as MatvecPrep writes them.
+    static BlockWritable sortedBlock(int[][] elems) {
+        TreeSet<Long> set = new TreeSet<Long>();
+        for (int[] e : elems)
+            set.add(((long) e[1] << 32) | e[0]);
+        BlockWritable block = new BlockWritable();
+        for (long e : set)
+            block.add((int) (e & 0xffffffffL), (int) (e >>> 32));
+        return block;
+    }
+
+    static BlockWritable randomBlock(Random rand, int width, double density) {
+        BlockWritable block = new BlockWritable();
+        for (int c = 0; c < width; c++)
+            for (int r = 0; r < width; r++)
+                if (rand.nextDouble() < density)
+                    block.add(r, c);
+        return block;
+    }
+
+    static DenseLongVector randomVector(Random rand, int width) {
+        DenseLongVector v = new DenseLongVector(width);
+        for (int i = 0; i < width; i++)
+            if (rand.nextInt(3) != 0)
+                v.set(i, rand.nextInt(1000));
+        return v;
+    }
+
+    static void assertSameVector(DenseLongVector expected, DenseLongVector actual) {
+        assertEquals(expected.width, actual.width);
+        for (int i = 0; i < expected.width; i++) {
+            assertEquals("present " + i, expected.isSet(i), actual.isSet(i));
+            if (expected.isSet(i))
+                assertEquals("value " + i, expected.get(i), actual.get(i));
+        }
+    }
+
+    private void checkRoundTrip(BlockWritable block, byte encoding) throws IOException {
+        block.block_row = 7;
+        block.block_col = 1L << 40;
+        TreeSet<Long> expected = elements(block);
+        BlockWritable copy = roundTrip(block);
+        assertEquals(encoding, copy.encoding);
+        assertEquals(7, copy.block_row);
+        assertEquals(1L << 40, copy.block_col);
+        assertEquals(block.nnz, copy.nnz);
+        assertEquals(expected, elements(copy));
+
+        // an encoded block is written back as is
+        BlockWritable again = roundTrip(roundTrip(block));
+        assertEquals(encoding, again.encoding);
+        assertEquals(expected, elements(again));
+    }
+
+    @Test
+    public void testEmptyBlock() throws IOException {
+        checkRoundTrip(new BlockWritable(), BlockWritable.COO);
+    }
+
+    @Test
+    public void testCooUnsorted() throws IOException {
+        BlockWritable block = new BlockWritable();
+        block.add(5, 3);
+        block.add(0, 0);
+        block.add(1048575, 1048575);
+        block.add(2, 3);
+        checkRoundTrip(block, BlockWritable.COO);
+    }
+
+    @Test
+    public void testCooValues() throws IOException {
+        BlockWritable block = new BlockWritable();
+        block.add(0, 1, 0.5);
+        block.add(3, 2, -1.25);
+        block.add(15, 15, 1e300);
+        BlockWritable copy = roundTrip(block);
+        assertEquals(BlockWritable.COO_VALUES, copy.encoding);
+        assertTrue(copy.hasValues());
+        assertEquals(3, copy.nnz);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(block.rows[i], copy.rows[i]);
+            assertEquals(block.cols[i], copy.cols[i]);
+            assertEquals(block.vals[i], copy.vals[i], 0.0);
+        }
+    }
+
+    @Test
+    public void testSparse() throws IOException {
+        // a few far apart elements of a wide block, with the maximum in-block index and an empty row
+        int max = (1 << 20) - 1;
+        BlockWritable block = sortedBlock(new int[][] { {0, 0}, {max, 0}, {2, 9}, {max, max}, {0, max}, {300000, 1000} });
+        checkRoundTrip(block, BlockWritable.SPARSE);
+        assertTrue(roundTrip(block).isEncoded());
+    }
+
+    @Test
+    public void testBitmap() throws IOException {
+        // 70 rows, not a multiple of 64. row 3 is full, row 4 is empty, the last index is 69.
+        int width = 70;
+        Random rand = new Random(1);
+        BlockWritable block = new BlockWritable();
+        for (int c = 0; c < width; c++)
+            for (int r = 0; r < width; r++)
+                if (r == 3 || (r != 4 && rand.nextInt(3) == 0) || (r == width - 1 && c == width - 1))
+                    block.add(r, c);
+        checkRoundTrip(block, BlockWritable.BITMAP);
+    }
+
+    @Test
+    public void testBitmapFullBlock() throws IOException {
+        BlockWritable block = new BlockWritable();
+        for (int c = 0; c < 128; c++)
+            for (int r = 0; r < 128; r++)
+                block.add(r, c);
+        checkRoundTrip(block, BlockWritable.BITMAP);
+    }
+
+    @Test
+    public void testDuplicatesAreNotBitmap() throws IOException {
+        BlockWritable block = new BlockWritable();
+        for (int c = 0; c < 16; c++)
+            for (int r = 0; r < 16; r++) {
+                block.add(r, c);
+                if (r == 0)
+                    block.add(r, c);
+            }
+        BlockWritable copy = roundTrip(block);
+        assertEquals(BlockWritable.SPARSE, copy.encoding);
+        assertEquals(block.nnz, copy.nnz);
+    }
+
+    // every encoded kernel gives the same result as the decoded one, on the same random block.
+    private void checkKernel(int width, double density, byte encoding) throws IOException {
+        Random rand = new Random(width * 31 + (long) (density * 1000));
+        for (int t = 0; t < 20; t++) {
+            BlockWritable block = randomBlock(rand, width, density);
+            if (block.nnz == 0)
+                continue;
+            DenseLongVector vector = randomVector(rand, width);
+
+            DenseLongVector expected = new DenseLongVector(width);
+            expected.copyFrom(vector);
+            GIMV.minBlockVector(block.rows, block.cols, 0, block.nnz, vector, expected);
+
+            BlockWritable encoded = roundTrip(block);
+            assertEquals(encoding, encoded.encoding);
+            assertTrue(encoded.isEncoded());
+            DenseLongVector out = new DenseLongVector(width);
+            out.copyFrom(vector);
+            GIMV.minBlockVector(encoded, vector, out);
+            assertSameVector(expected, out);
+
+            // the block is still encoded, the kernel did not decode it
+            assertTrue(encoded.isEncoded());
+            encoded.decode();
+            assertFalse(encoded.isEncoded());
+            out.copyFrom(vector);
+            GIMV.minBlockVector(encoded, vector, out);
+            assertSameVector(expected, out);
+        }
+    }
+
+    @Test
+    public void testSparseKernel() throws IOException {
+        checkKernel(256, 0.005, BlockWritable.SPARSE);
+    }
+
+    @Test
+    public void testBitmapKernel() throws IOException {
+        checkKernel(64, 0.3, BlockWritable.BITMAP);
+        checkKernel(100, 0.5, BlockWritable.BITMAP);
+    }
+}
@@ -0,0 +1,135 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: ComponentStoreTest.java
+ - Export a small run with ConCmptExport and look it up with ComponentStore.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.util.ToolRunner;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ComponentStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void write(File file, String text) throws IOException {
+        file.getParentFile().mkdirs();
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        out.write(text);
+        out.close();
+    }
+
+    // 8 nodes, node 5 is missing. components 0 = {0, 1, 2, 6}, 3 = {3, 4}, 7 = {7}.
+    // the curbm parts are not sorted by node, and the summary is split in two sorted parts.
+    private File export() throws Exception {
+        File curbm = folder.newFolder("concmpt_curbm");
+        write(new File(curbm, "part-00000"), "6\tmsf0\n7\tmsf7\n0\tmsf0\n1\tmsf0\n\n2\tmsf0\n");
+        write(new File(curbm, "part-00001"), "3\tmsf3\n4\tmsf3\n");
+        File summary = folder.newFolder("concmpt_summaryout");
+        write(new File(summary, "part-00000"), "0\t4\n7\t1\n");
+        write(new File(summary, "part-00001"), "3\t2\n");
+
+        File store = new File(folder.getRoot(), "components.bin");
+        String[] args = { curbm.getPath(), summary.getPath(), store.getPath(), "8" };
+        assertEquals(0, ToolRunner.run(new Configuration(), new ConCmptExport(), args));
+        assertTrue(store.exists());
+        return store;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        ComponentStore store = new ComponentStore(export());
+        try {
+            assertEquals(8, store.number_nodes);
+            assertEquals(3, store.number_components);
+
+            long[] expected = { 0, 0, 0, 3, 3, -1, 0, 7 };
+            for (int i = 0; i < expected.length; i++)
+                assertEquals("node " + i, expected[i], store.component(i));
+            assertEquals(-1, store.component(-1));
+            assertEquals(-1, store.component(8));
+
+            long[] nodes = { 7, 5, 100, 3 };
+            long[] out = new long[5];
+            out[4] = 42;
+            store.components(nodes, out, 4);
+            assertArrayEquals(new long[] { 7, -1, -1, 3, 42 }, out);
+
+            assertEquals(4, store.size(0));
+            assertEquals(2, store.size(3));
+            assertEquals(1, store.size(7));
+            assertEquals(0, store.size(1));
+            assertEquals(0, store.size(-1));
+            assertEquals(0, store.size(8));
+
+            assertEquals(4, store.componentSize(6));
+            assertEquals(2, store.componentSize(4));
+            assertEquals(0, store.componentSize(5));
+            assertEquals(0, store.componentSize(9));
+        } finally {
+            store.close();
+        }
+    }
+
+    private static void assertRejected(File file) {
+        try {
+            new ComponentStore(file).close();
+            fail(file + " should be rejected");
+        } catch (IOException e) {
+        }
+    }
+
+    @Test
+    public void testTruncated() throws Exception {
+        File store = export();
+        RandomAccessFile file = new RandomAccessFile(store, "rw");
+        file.setLength(file.length() - 8);
+        file.close();
+        assertRejected(store);
+
+        file = new RandomAccessFile(store, "rw");
+        file.setLength(ComponentStore.HEADER_SIZE - 1);
+        file.close();
+        assertRejected(store);
+    }
+
+    @Test
+    public void testWrongMagic() throws Exception {
+        File store = export();
+        RandomAccessFile file = new RandomAccessFile(store, "rw");
+        file.writeInt(ComponentStore.MAGIC + 1);
+        file.close();
+        assertRejected(store);
+    }
+}
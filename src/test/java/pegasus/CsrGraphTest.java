@@ -0,0 +1,168 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: CsrGraphTest.java
+ - Convert small edge files with CsrConvert, read them back with CsrGraph,
+   and build the blocked matrix of ConCmptLocal from them.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.util.ToolRunner;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CsrGraphTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // 6 nodes: a comment, a self loop, a duplicate edge, an empty line and out of range ids.
+    private static final long[][] EDGES = { {0, 1}, {1, 0}, {2, 2}, {3, 1}, {5, 0}, {3, 1}, {4, 3}, {6, 1}, {1, 7}, {-1, 2} };
+    private static final int NODES = 6;
+
+    private File convert(long[][] edges, int number_nodes, boolean makesym) throws Exception {
+        File edge_dir = folder.newFolder();
+        Writer out = new OutputStreamWriter(new FileOutputStream(new File(edge_dir, "edges")), "UTF-8");
+        out.write("# FromNodeId\tToNodeId\n\n");
+        for (long[] edge : edges)
+            out.write(edge[0] + "\t" + edge[1] + "\n");
+        out.close();
+
+        File csr = new File(folder.getRoot(), "graph" + (makesym ? "_sym" : "") + ".csr");
+        String[] args = { edge_dir.getPath(), csr.getPath(), "" + number_nodes, makesym ? "makesym" : "nosym" };
+        assertEquals(0, ToolRunner.run(new Configuration(), new CsrConvert(), args));
+        return csr;
+    }
+
+    // the sorted neighbors of every node, as CsrConvert should store them.
+    private static List<List<Integer>> adjacency(long[][] edges, int number_nodes, boolean makesym) {
+        List<List<Integer>> adj = new ArrayList<List<Integer>>();
+        for (int n = 0; n < number_nodes; n++)
+            adj.add(new ArrayList<Integer>());
+        for (long[] edge : edges) {
+            if (edge[0] < 0 || edge[0] >= number_nodes || edge[1] < 0 || edge[1] >= number_nodes)
+                continue;
+            adj.get((int) edge[0]).add((int) edge[1]);
+            if (makesym && edge[0] != edge[1])
+                adj.get((int) edge[1]).add((int) edge[0]);
+        }
+        for (List<Integer> neighbors : adj)
+            Collections.sort(neighbors);
+        return adj;
+    }
+
+    private static void checkGraph(CsrGraph graph, List<List<Integer>> adj) {
+        long offset = 0;
+        for (int n = 0; n < adj.size(); n++) {
+            List<Integer> expected = adj.get(n);
+            assertEquals("offset of " + n, offset, graph.offset(n));
+            assertEquals("degree of " + n, expected.size(), graph.degree(n));
+            for (int k = 0; k < expected.size(); k++)
+                assertEquals("neighbor " + k + " of " + n, expected.get(k).intValue(), graph.neighbor(offset + k));
+
+            int[] dst = new int[expected.size()];
+            assertEquals(expected.size(), graph.neighbors(n, dst));
+            for (int k = 1; k < dst.length; k++)
+                assertTrue(dst[k - 1] <= dst[k]);
+            offset += expected.size();
+        }
+        assertEquals(offset, graph.offset(adj.size()));
+        assertEquals(offset, graph.number_edges);
+    }
+
+    @Test
+    public void testConvert() throws Exception {
+        CsrGraph graph = new CsrGraph(convert(EDGES, NODES, false));
+        try {
+            assertFalse(graph.isSymmetric());
+            assertEquals(NODES, graph.number_nodes);
+            assertEquals(7, graph.number_edges);
+            checkGraph(graph, adjacency(EDGES, NODES, false));
+        } finally {
+            graph.close();
+        }
+    }
+
+    @Test
+    public void testConvertMakesym() throws Exception {
+        CsrGraph graph = new CsrGraph(convert(EDGES, NODES, true));
+        try {
+            assertTrue(graph.isSymmetric());
+            assertEquals(13, graph.number_edges);    // the self loop once
+            checkGraph(graph, adjacency(EDGES, NODES, true));
+        } finally {
+            graph.close();
+        }
+    }
+
+    private static void assertSameMatrix(ConCmptLocal.BlockMatrix expected, ConCmptLocal.BlockMatrix actual) {
+        assertEquals(expected.num_block_rows, actual.num_block_rows);
+        assertArrayEquals(expected.row_start, actual.row_start);
+        assertArrayEquals(expected.block_start, actual.block_start);
+        assertArrayEquals(expected.block_col, actual.block_col);
+        assertArrayEquals(expected.rows, actual.rows);
+        assertArrayEquals(expected.cols, actual.cols);
+    }
+
+    // the matrix of a symmetric CSR graph is built from its neighbor array, and must be the matrix
+    // of the same elements given as an edge list.
+    @Test
+    public void testBlockMatrix() throws Exception {
+        Random rand = new Random(13);
+        int number_nodes = 100;
+        long[][] edges = new long[300][];
+        for (int e = 0; e < edges.length; e++)
+            edges[e] = new long[] { rand.nextInt(number_nodes), rand.nextInt(number_nodes) };
+        edges[0] = new long[] { 7, 7 };
+
+        CsrGraph graph = new CsrGraph(convert(edges, number_nodes, true));
+        try {
+            ConCmptLocal.EdgeList list = new ConCmptLocal.EdgeList();
+            List<List<Integer>> adj = adjacency(edges, number_nodes, true);
+            for (int n = 0; n < number_nodes; n++)
+                for (int dst : adj.get(n))
+                    list.add(n, dst);
+
+            BlockLayout[] layouts = {
+                BlockLayout.uniform(number_nodes, 16),
+                BlockLayout.uniform(number_nodes, 1),
+                BlockLayout.variable(new long[] { 0, 3, 40, 41, 64, 100 }),
+            };
+            for (BlockLayout layout : layouts)
+                assertSameMatrix(ConCmptLocal.BlockMatrix.build(list, layout), ConCmptLocal.BlockMatrix.build(graph, layout));
+        } finally {
+            graph.close();
+        }
+    }
+}
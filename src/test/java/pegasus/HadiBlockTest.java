@@ -0,0 +1,57 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: HadiBlockTest.java
+ - The effective diameter interpolation of HadiBlock.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class HadiBlockTest {
+
+    private static double effectiveDiameter(Long... neighborhood) {
+        return HadiBlock.effectiveDiameter(Arrays.asList(neighborhood));
+    }
+
+    // N(0) is already 90% of N(max hop): no interpolation below hop 0.
+    @Test
+    public void testHopZero() {
+        assertEquals(0.0, effectiveDiameter(10L), 0.0);
+        assertEquals(0.0, effectiveDiameter(95L, 98L, 100L), 0.0);
+        assertEquals(0.0, effectiveDiameter(90L, 100L), 0.0);
+    }
+
+    // N(2) is exactly 90% of N(3): the diameter is 2, not 1.something or 3.
+    @Test
+    public void testExactHit() {
+        assertEquals(2.0, effectiveDiameter(10L, 50L, 90L, 100L), 1e-12);
+        assertEquals(1.0, effectiveDiameter(10L, 90L, 100L), 1e-12);
+    }
+
+    // 90% of N(2) = 90 is between N(1) = 50 and N(2) = 100: 1 + (90 - 50) / (100 - 50).
+    @Test
+    public void testInterpolated() {
+        assertEquals(1.8, effectiveDiameter(10L, 50L, 100L), 1e-12);
+        assertEquals(3.5, effectiveDiameter(1L, 2L, 4L, 8L, 10L, 10L), 1e-12);
+    }
+}
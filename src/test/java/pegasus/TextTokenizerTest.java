@@ -0,0 +1,190 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: TextTokenizerTest.java
+ - TextTokenizer against the String.split("\t") and Long.parseLong path it
+   replaces.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TextTokenizerTest {
+
+    private static final String[] RECORDS = {
+        "",
+        "1",
+        "1\t2",
+        "1\t2\t",
+        "1\t2\t\t\t",
+        "\t",
+        "\t\t",
+        "\t1",
+        "1\t\t2",
+        "1\t2\t3\t0.5",
+        "0\tv12",
+        "-5\t+7\t-0",
+        "9223372036854775807\t-9223372036854775808\t00000000000000000000042",
+    };
+
+    private final TextTokenizer tokens = new TextTokenizer();
+
+    @Test
+    public void testNumFields() {
+        for (String record : RECORDS)
+            assertEquals("\"" + record + "\"", record.split("\t").length, tokens.reset(new Text(record)).numFields());
+    }
+
+    // every field which parseLong accepts is parsed the same, and the others are rejected.
+    @Test
+    public void testNextLong() {
+        for (String record : RECORDS) {
+            String[] line = record.split("\t", -1);
+            tokens.reset(new Text(record));
+            for (String field : line) {
+                Long expected = null;
+                try {
+                    expected = Long.parseLong(field);
+                } catch (NumberFormatException e) {
+                }
+
+                if (expected == null) {
+                    if (field.startsWith("v")) {
+                        tokens.skipField();
+                        continue;
+                    }
+                    try {
+                        tokens.nextLong();
+                        fail("\"" + field + "\" of \"" + record + "\" should not parse");
+                    } catch (NumberFormatException e) {
+                        tokens.skipField();
+                    }
+                } else {
+                    assertEquals("\"" + record + "\"", expected.longValue(), tokens.nextLong());
+                }
+            }
+            assertFalse(tokens.hasNext());
+        }
+    }
+
+    @Test
+    public void testInvalidNumbers() {
+        String[] invalid = { "12a", "-", "+", "1.5", " 1", "9223372036854775808", "-9223372036854775809", "99999999999999999999" };
+        for (String field : invalid) {
+            try {
+                tokens.reset(new Text(field + "\t1")).nextLong();
+                fail("\"" + field + "\" should not parse");
+            } catch (NumberFormatException e) {
+            }
+        }
+    }
+
+    @Test
+    public void testComment() {
+        assertTrue(tokens.reset(new Text("# FromNodeId\tToNodeId")).isComment());
+        assertTrue(tokens.reset(new Text("#")).isComment());
+        assertFalse(tokens.reset(new Text("1\t# 2")).isComment());
+        assertFalse(tokens.reset(new Text("")).isComment());
+    }
+
+    // vector elements: "id TAB v<value>" and "id TAB msf<value>".
+    @Test
+    public void testPrefixes() {
+        tokens.reset(new Text("3\tv-17"));
+        assertFalse(tokens.startsWith('v'));
+        assertEquals(3, tokens.nextLong());
+        assertTrue(tokens.startsWith('v'));
+        tokens.skip(1);
+        assertEquals(-17, tokens.nextLong());
+        assertFalse(tokens.hasNext());
+
+        tokens.reset(new Text("12\tmsf4"));
+        tokens.skipField();
+        tokens.skip(3);
+        assertEquals(4, tokens.nextLong());
+    }
+
+    // set a reused Text like a LineReader does, keeping its backing array.
+    private static void set(Text text, String record) {
+        byte[] bytes = record.getBytes();
+        text.set(bytes, 0, bytes.length);
+    }
+
+    // a reused Text keeps its larger backing array: only the first getLength() bytes are parsed.
+    @Test
+    public void testReusedText() {
+        Text text = new Text("123456\t789012\t345678\t1");
+        set(text, "5\t6");
+        assertTrue(text.getBytes().length > text.getLength());
+
+        tokens.reset(text);
+        assertEquals(2, tokens.numFields());
+        assertEquals(5, tokens.nextLong());
+        assertEquals(6, tokens.nextLong());
+        assertFalse(tokens.hasNext());
+
+        set(text, "7\t8\t");
+        tokens.reset(text);
+        assertEquals(2, tokens.numFields());
+        tokens.skipField();
+        Text rest = new Text();
+        tokens.rest(rest);
+        assertEquals("8\t", rest.toString());
+
+        set(text, "");
+        assertEquals("".split("\t").length, tokens.reset(text).numFields());
+        assertFalse(tokens.reset(text).isComment());
+    }
+
+    @Test
+    public void testNextDouble() {
+        tokens.reset(new Text("1\t2\t0.25\t-1e3"));
+        assertEquals(1, tokens.nextInt());
+        assertEquals(2, tokens.nextInt());
+        assertEquals(0.25, tokens.nextDouble(), 0.0);
+        assertEquals(-1e3, tokens.nextDouble(), 0.0);
+    }
+
+    @Test
+    public void testNextIntRange() {
+        try {
+            tokens.reset(new Text("2147483648")).nextInt();
+            fail();
+        } catch (NumberFormatException e) {
+        }
+        assertEquals(Integer.MIN_VALUE, tokens.reset(new Text("-2147483648")).nextInt());
+    }
+
+    @Test
+    public void testFormat() {
+        long[] values = { 0, 1, -1, 9, 10, 1234567890123L, -42, Long.MAX_VALUE, Long.MIN_VALUE };
+        Text out = new Text("a long previous value of the reused Text");
+        for (long value : values) {
+            tokens.format(out, TextTokenizer.V, value);
+            assertEquals("v" + value, out.toString());
+            tokens.format(out, TextTokenizer.MSF, value);
+            assertEquals("msf" + value, out.toString());
+        }
+    }
+}
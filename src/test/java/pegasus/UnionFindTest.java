@@ -0,0 +1,79 @@
+/***********************************************************************
+ PEGASUS: Peta-Scale Graph Mining System
+ Authors: U Kang, Duen Horng Chau, and Christos Faloutsos
+
+ This software is licensed under Apache License, Version 2.0 (the  "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ -------------------------------------------------------------------------
+ File: UnionFindTest.java
+ - UnionFind, and the one-pass diagonal block multiplication against the
+   recursive one on symmetric blocks.
+ Version: 2.0
+ ***********************************************************************/
+
+package pegasus;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class UnionFindTest {
+
+    @Test
+    public void testUnionFind() {
+        UnionFind uf = new UnionFind(10);
+        uf.union(0, 1);
+        uf.union(2, 3);
+        uf.union(1, 3);
+        uf.union(7, 8);
+        assertEquals(uf.find(0), uf.find(2));
+        assertEquals(uf.find(3), uf.find(1));
+        assertEquals(uf.find(7), uf.find(8));
+        assertTrue(uf.find(0) != uf.find(7));
+        assertEquals(9, uf.find(9));
+
+        uf.reset();
+        for (int i = 0; i < 10; i++)
+            assertEquals(i, uf.find(i));
+    }
+
+    // a random symmetric block, as built with makesym.
+    static BlockWritable symmetricBlock(Random rand, int width, int edges) {
+        int[][] elems = new int[edges * 2][];
+        for (int e = 0; e < edges; e++) {
+            int a = rand.nextInt(width);
+            int b = rand.nextInt(width);
+            elems[2 * e] = new int[] { a, b };
+            elems[2 * e + 1] = new int[] { b, a };
+        }
+        return BlockWritableTest.sortedBlock(elems);
+    }
+
+    @Test
+    public void testFixpoint() {
+        Random rand = new Random(11);
+        for (int t = 0; t < 50; t++) {
+            int width = 1 + rand.nextInt(200);
+            BlockWritable block = symmetricBlock(rand, width, rand.nextInt(width + 1));
+            DenseLongVector vector = BlockWritableTest.randomVector(rand, width);
+
+            DenseLongVector expected = GIMV.minBlockVectorRecursive(block.rows, block.cols, 0, block.nnz, vector,
+                    new DenseLongVector(width), new DenseLongVector(width), width);
+            DenseLongVector out = new DenseLongVector(width);
+            GIMV.minBlockVectorUnionFind(block, vector, out, new UnionFind(width), new DenseLongVector(width));
+            BlockWritableTest.assertSameVector(expected, out);
+        }
+    }
+}